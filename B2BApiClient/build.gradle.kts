@@ -6,6 +6,7 @@
 
 plugins {
     id("de.denkunddachte.b2biutils.java-library-conventions")
+    id("me.champeau.jmh") version "0.7.1"
 }
 
 dependencies {
@@ -30,3 +31,15 @@ dependencies {
     /* grab hostkey (SshKnownHostKey.java)*/
     implementation("com.github.mwiede:jsch:0.2.7")
 }
+
+/* JMH benchmarks (src/jmh): gradlew :B2BApiClient:jmh [-PjmhIncludes=Mailbox] */
+jmh {
+    jmhVersion.set("1.36")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    if (project.hasProperty("jmhIncludes")) {
+        includes.set(listOf(project.property("jmhIncludes").toString()))
+    }
+}
@@ -0,0 +1,115 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Loads benchmark fixtures from <code>src/jmh/resources/fixtures</code>. The fixtures are synthetic placeholders in the
+ * format returned by the server (REST API and DD_API_WS), not sample responses. Larger payloads are built by repeating
+ * the fixture rows. Replace them with (anonymized) responses of a real installation for representative results.
+ */
+public final class Fixtures {
+  public static final String    WSAPI_MAILBOXES_XML   = "wsapi-mailboxes.xml";
+  public static final String    WSAPI_MAILBOXES_JSON  = "wsapi-mailboxes.json";
+  public static final String    REST_MAILBOXES        = "rest-mailboxes.json";
+  public static final String    REST_WORKFLOWMONITORS = "rest-workflowmonitors.json";
+  public static final String    SSH_PUBLIC_KEYS       = "ssh-public-keys.txt";
+
+  private static final Pattern  ROW                   = Pattern.compile("<row>.*?</row>", Pattern.DOTALL);
+  private static final Pattern  ROW_ID                = Pattern.compile("<id>(\\d+)</id>");
+
+  private Fixtures() {
+  }
+
+  public static byte[] loadBytes(String name) {
+    return loadResource("fixtures/" + name);
+  }
+
+  /**
+   * @return content of any classpath resource (e.g. BPMLs in main resources)
+   */
+  public static byte[] loadResource(String resource) {
+    try (InputStream is = Fixtures.class.getClassLoader().getResourceAsStream(resource)) {
+      if (is == null) {
+        throw new IllegalArgumentException("Fixture " + resource + " not found!");
+      }
+      return IOUtils.toByteArray(is);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not read fixture " + resource + "!", e);
+    }
+  }
+
+  public static String load(String name) {
+    return new String(loadBytes(name), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return WS API XML response (/result/row) with <code>rows</code> rows, ids are made unique when rows are repeated
+   */
+  public static String wsApiXml(String name, int rows) {
+    Matcher       m      = ROW.matcher(load(name));
+    StringBuilder sample = new StringBuilder();
+    int           count  = 0;
+    while (m.find()) {
+      sample.append(m.group()).append('\n');
+      count++;
+    }
+    if (count == 0) {
+      throw new IllegalArgumentException("Fixture " + name + " contains no rows!");
+    }
+    StringBuilder sb = new StringBuilder(sample.length() * (rows / count + 1)).append("<result>\n");
+    for (int n = 0, pass = 0; n < rows; pass++) {
+      Matcher r = ROW.matcher(sample);
+      while (n < rows && r.find()) {
+        String row = r.group();
+        if (pass > 0) {
+          Matcher id = ROW_ID.matcher(row);
+          if (id.find()) {
+            row = id.replaceFirst("<id>" + (Long.parseLong(id.group(1)) + pass * 1_000_000L) + "</id>");
+          }
+        }
+        sb.append("  ").append(row).append('\n');
+        n++;
+      }
+    }
+    return sb.append("</result>\n").toString();
+  }
+
+  /**
+   * @return WS API JSON response (<code>{"result":{"row":[...]}}</code>) with <code>rows</code> rows
+   */
+  public static String wsApiJson(String name, int rows) {
+    JSONArray sample = new JSONObject(load(name)).getJSONObject("result").getJSONArray("row");
+    JSONArray result = new JSONArray();
+    for (int n = 0; n < rows; n++) {
+      JSONObject row = new JSONObject(sample.getJSONObject(n % sample.length()).toString());
+      if (n >= sample.length() && row.has("id")) {
+        row.put("id", row.getLong("id") + (n / sample.length()) * 1_000_000L);
+      }
+      result.put(row);
+    }
+    return new JSONObject().put("result", new JSONObject().put("row", result)).toString();
+  }
+}
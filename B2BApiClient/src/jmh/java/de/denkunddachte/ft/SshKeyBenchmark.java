@@ -0,0 +1,95 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.ft;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.denkunddachte.benchmark.Fixtures;
+
+/**
+ * SSH public key parsing and digests. hashCode()/equals() compute the SHA-256 digest, so key sets and key comparisons
+ * in LDAP/B2Bi key sync are dominated by {@link SshKey#getDigest()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SshKeyBenchmark {
+  private final List<String> keyStrings = new ArrayList<>();
+  private final List<SshKey> keys       = new ArrayList<>();
+
+  @Setup
+  public void setup() {
+    for (String line : Fixtures.load(Fixtures.SSH_PUBLIC_KEYS).split("\n")) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      try {
+        keys.add(new SshKey(line));
+        keyStrings.add(line);
+      } catch (InvalidKeyException e) {
+        // key type not supported by this JVM
+      }
+    }
+  }
+
+  @Benchmark
+  public void parseKey(Blackhole bh) throws InvalidKeyException {
+    for (String k : keyStrings) {
+      bh.consume(new SshKey(k));
+    }
+  }
+
+  @Benchmark
+  public void sha256Digest(Blackhole bh) {
+    for (SshKey k : keys) {
+      bh.consume(k.getDigest());
+    }
+  }
+
+  @Benchmark
+  public void md5Digest(Blackhole bh) throws NoSuchAlgorithmException {
+    for (SshKey k : keys) {
+      bh.consume(k.getMD5Digest());
+    }
+  }
+
+  @Benchmark
+  public void keyDigestInfo(Blackhole bh) {
+    for (SshKey k : keys) {
+      bh.consume(k.getKeyDigestInfo("SHA-256"));
+    }
+  }
+
+  @Benchmark
+  public Set<SshKey> hashSetOfKeys() {
+    return new HashSet<>(keys);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.sfgapi;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.denkunddachte.benchmark.Fixtures;
+import de.denkunddachte.sfgapi.ApiClient.ResponseType;
+
+/**
+ * JSON hot paths of REST and WS API listings: parsing (getJSON/getJSONArray), WS API unwrapping (parseWsApiJSON,
+ * compared to the former substring based unwrapping), timestamp conversion and object mapping (WorkFlowMonitor.readJSON).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonMappingBenchmark {
+  @Param({ "250", "5000" })
+  int                  rows;
+
+  private String       restMailboxes;
+  private String       lastMailboxPath;
+  private String       wsApiMailboxes;
+  private String       workflowMonitors;
+  private List<String> timestamps;
+  private JSONArray    workflowMonitorArray;
+
+  @Setup
+  public void setup() {
+    restMailboxes = Fixtures.load(Fixtures.REST_MAILBOXES);
+    JSONArray mbx = new JSONArray(restMailboxes);
+    lastMailboxPath = mbx.getJSONObject(mbx.length() - 1).getString("path");
+    wsApiMailboxes = Fixtures.wsApiJson(Fixtures.WSAPI_MAILBOXES_JSON, rows);
+    workflowMonitors = Fixtures.load(Fixtures.REST_WORKFLOWMONITORS);
+    workflowMonitorArray = new JSONArray(workflowMonitors);
+    timestamps = new ArrayList<>();
+    for (int i = 0; i < workflowMonitorArray.length(); i++) {
+      timestamps.add(workflowMonitorArray.getJSONObject(i).getString("deadline"));
+    }
+  }
+
+  @Benchmark
+  public JSONArray getJSONArray() {
+    return ApiClient.getJSONArray(restMailboxes);
+  }
+
+  @Benchmark
+  public JSONObject getJSONWithKeyMatch() {
+    // worst case: match is the last element
+    return ApiClient.getJSON(restMailboxes, "path", lastMailboxPath, false);
+  }
+
+  @Benchmark
+  public Object parseWsApiJSON() {
+    return ApiClient.parseWsApiJSON(new StringReader(wsApiMailboxes), ResponseType.JSON_ARRAY);
+  }
+
+  @Benchmark
+  public JSONArray substringConvertAndParseJSONFromWsApi() {
+    return ApiClient.getJSONArray(substringConvert(wsApiMailboxes));
+  }
+
+  @Benchmark
+  public void toOffsetDateTime(Blackhole bh) {
+    for (String ts : timestamps) {
+      bh.consume(ApiClient.toOffsetDateTime(ts));
+    }
+  }
+
+  @Benchmark
+  public void workFlowMonitorReadJSON(Blackhole bh) {
+    for (int i = 0; i < workflowMonitorArray.length(); i++) {
+      bh.consume(new WorkFlowMonitor(workflowMonitorArray.getJSONObject(i)));
+    }
+  }
+
+  @Benchmark
+  public void workFlowMonitorParseAndReadJSON(Blackhole bh) {
+    JSONArray a = ApiClient.getJSONArray(workflowMonitors);
+    for (int i = 0; i < a.length(); i++) {
+      bh.consume(new WorkFlowMonitor(a.getJSONObject(i)));
+    }
+  }
+
+  // baseline: substring based unwrapping of {"result":{"row":[...]}} used before parseWsApiJSON
+  private static String substringConvert(String json) {
+    if (json.length() < 13 || !json.substring(0, (json.length() < 20 ? json.length() : 19)).contains("\"result\"")) {
+      return json;
+    }
+    if (!json.contains("\"row\"")) {
+      return "[]";
+    }
+    int p1 = json.indexOf('[');
+    if (p1 > -1 && p1 <= 32) {
+      return json.substring(p1, json.lastIndexOf(']') + 1);
+    }
+    p1 = json.indexOf('{', json.indexOf('{', 1) + 1);
+    return "[" + json.substring(p1, json.lastIndexOf('}', json.lastIndexOf('}', json.length() - 2) - 1) + 1) + "]";
+  }
+}
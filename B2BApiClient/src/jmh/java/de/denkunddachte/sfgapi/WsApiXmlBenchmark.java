@@ -0,0 +1,102 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.sfgapi;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import de.denkunddachte.benchmark.Fixtures;
+import de.denkunddachte.exception.ApiException;
+
+/**
+ * DD_API_WS XML responses: streaming row mapping with {@link WsApiRowReader} as done in Mailbox.findAllWithWSApi,
+ * compared to the former DOM parsing and XPath row mapping. The XPath mapping grows quadratically with the number of
+ * rows (~8s for 1000 rows), so larger row counts are not included by default.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WsApiXmlBenchmark {
+  private static final String[] FIELDS = { "id", "path", "description", "permission", "mailboxType", "users", "groups" };
+
+  @Param({ "250", "1000" })
+  int              rows;
+
+  private byte[]   xml;
+  private Document doc;
+
+  @Setup
+  public void setup() throws ApiException {
+    xml = Fixtures.wsApiXml(Fixtures.WSAPI_MAILBOXES_XML, rows).getBytes(StandardCharsets.UTF_8);
+    doc = ApiClient.parseXml(new String(xml, StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public List<Mailbox> mailboxStreamMapping() throws ApiException {
+    return WsApiRowReader.readAll(new ByteArrayInputStream(xml), Mailbox::fromWsApi);
+  }
+
+  @Benchmark
+  public Document parseXml() throws ApiException {
+    return ApiClient.parseXml(new String(xml, StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public List<String[]> mailboxXPathMapping() throws XPathExpressionException {
+    return fromDocument(doc);
+  }
+
+  @Benchmark
+  public List<String[]> mailboxParseAndXPathMapping() throws ApiException, XPathExpressionException {
+    return fromDocument(ApiClient.parseXml(new String(xml, StandardCharsets.UTF_8)));
+  }
+
+  // baseline: DOM + XPath field extraction used before WsApiRowReader
+  private static List<String[]> fromDocument(Document xmlDoc) throws XPathExpressionException {
+    List<String[]> result = new ArrayList<>();
+    XPath          xpath  = XPathFactory.newInstance().newXPath();
+    NodeList       nl     = (NodeList) xpath.compile("/result/row").evaluate(xmlDoc, XPathConstants.NODESET);
+    for (int i = 0; i < nl.getLength(); i++) {
+      Node     n      = nl.item(i);
+      String[] fields = new String[FIELDS.length];
+      for (int f = 0; f < FIELDS.length; f++) {
+        fields[f] = (String) xpath.evaluate("./" + FIELDS[f], n, XPathConstants.STRING);
+      }
+      result.add(fields);
+    }
+    return result;
+  }
+}
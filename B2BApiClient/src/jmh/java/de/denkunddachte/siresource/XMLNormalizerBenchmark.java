@@ -0,0 +1,61 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.siresource;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.denkunddachte.benchmark.Fixtures;
+import de.denkunddachte.exception.ApiException;
+
+/**
+ * BPML hashing used to compare WFD versions (XMLNormalizer.createHash). The BPMLs shipped with the API client are used
+ * as fixtures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class XMLNormalizerBenchmark {
+  @Param({ "DD_API_WS.bpml", "DD_XAPI_WS.bpml" })
+  String                bpml;
+
+  private byte[]        data;
+  private XMLNormalizer normalizer;
+
+  @Setup
+  public void setup() throws ApiException {
+    data = Fixtures.loadResource(bpml);
+    normalizer = new XMLNormalizer();
+  }
+
+  @Benchmark
+  public String createHash() throws ApiException {
+    return normalizer.createHash(data);
+  }
+
+  @Benchmark
+  public String normalizeString() throws ApiException {
+    return normalizer.normalizeString(data);
+  }
+}
@@ -0,0 +1,37 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.exception;
+
+/**
+ * Wraps an {@link ApiException} where checked exceptions can not be thrown (iterators, streams, lambdas).
+ */
+public class UncheckedApiException extends RuntimeException {
+
+	private static final long serialVersionUID = 4409185532706158812L;
+
+	public UncheckedApiException(ApiException cause) {
+		super(cause.getMessage(), cause);
+	}
+
+	public UncheckedApiException(String msg, ApiException cause) {
+		super(msg, cause);
+	}
+
+	@Override
+	public synchronized ApiException getCause() {
+		return (ApiException) super.getCause();
+	}
+}
@@ -0,0 +1,76 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.jpa;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+import de.denkunddachte.util.ApiStats;
+
+/**
+ * Records executed queries (per entity and query type) and commits in {@link ApiStats}. Queries that fail are not
+ * recorded, EclipseLink does not send a post event for them.
+ */
+class JpaStatsListener extends SessionEventAdapter {
+  private static final int                     MAX_PENDING = 1000;
+  private final ThreadLocal<Map<Object, Long>> started     = ThreadLocal.withInitial(IdentityHashMap::new);
+
+  @Override
+  public void preExecuteQuery(SessionEvent event) {
+    start(event.getQuery());
+  }
+
+  @Override
+  public void postExecuteQuery(SessionEvent event) {
+    DatabaseQuery q = event.getQuery();
+    if (q != null) {
+      String op = q.getClass().getSimpleName();
+      stop(q, q.getReferenceClass() != null ? q.getReferenceClass().getSimpleName() : "sql", op.endsWith("Query") ? op.substring(0, op.length() - 5) : op);
+    }
+  }
+
+  @Override
+  public void preCommitUnitOfWork(SessionEvent event) {
+    start(event.getSession());
+  }
+
+  @Override
+  public void postCommitUnitOfWork(SessionEvent event) {
+    stop(event.getSession(), "transaction", "commit");
+  }
+
+  private void start(Object key) {
+    if (key != null) {
+      Map<Object, Long> m = started.get();
+      // entries of failed queries are never removed
+      if (m.size() >= MAX_PENDING) {
+        m.clear();
+      }
+      m.put(key, System.nanoTime());
+    }
+  }
+
+  private void stop(Object key, String entity, String operation) {
+    Long start = started.get().remove(key);
+    if (start != null) {
+      ApiStats.getInstance().record(ApiStats.JPA, entity, operation, System.nanoTime() - start, false);
+    }
+  }
+}
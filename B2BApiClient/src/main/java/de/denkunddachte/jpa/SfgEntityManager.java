@@ -29,7 +29,9 @@ import jakarta.persistence.Persistence;
 import javax.sql.DataSource;
 
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.eclipse.persistence.jpa.JpaHelper;
 import org.eclipse.persistence.logging.SessionLog;
+import org.eclipse.persistence.sessions.DatabaseSession;
 
 import de.denkunddachte.util.ApiConfig;
 import de.denkunddachte.exception.ApiException;
@@ -96,6 +98,10 @@ public class SfgEntityManager {
     props.put(LOGGING_PARAMETERS, apiConfig.getEclipseLinkLogParams());
     props.put(SESSION_EVENT_LISTENER_CLASS, apiConfig.getEclipseLinkSessionEventListener());
     emf = Persistence.createEntityManagerFactory(SfgEntityManager.PERSISTENCE_UNIT, props);
+    DatabaseSession session = JpaHelper.getDatabaseSession(emf);
+    if (session != null) {
+      session.getEventManager().addListener(new JpaStatsListener());
+    }
   }
 
   public EntityManager getEntityManager() {
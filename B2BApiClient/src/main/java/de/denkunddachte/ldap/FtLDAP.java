@@ -40,6 +40,7 @@ import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
 
 import de.denkunddachte.util.ApiConfig;
+import de.denkunddachte.util.ApiStats;
 import de.denkunddachte.exception.ApiException;
 
 public class FtLDAP {
@@ -104,7 +105,7 @@ public class FtLDAP {
       attrs.put(oc);
       attrs.put(SN, getSnString(ldapuser));
       try {
-        ctx.createSubcontext(ldapuser.getDn(), attrs);
+        timed("add", () -> ctx.createSubcontext(ldapuser.getDn(), attrs));
         LOGGER.log(Level.FINE, "Created user {0}.", ldapuser);
         result = true;
       } catch (NamingException e) {
@@ -119,7 +120,10 @@ public class FtLDAP {
   public boolean deleteUser(LDAPUser user) throws NamingException {
     boolean result = false;
     if (getUser(user.getDn()) != null) {
-      ctx.destroySubcontext(user.getDn());
+      timed("delete", () -> {
+        ctx.destroySubcontext(user.getDn());
+        return null;
+      });
       result = true;
     } else {
       LOGGER.log(Level.WARNING, "User DN {0} does not exits!", user.getDn());
@@ -130,7 +134,10 @@ public class FtLDAP {
   public boolean deleteUser(String dn) throws NamingException {
     boolean result = false;
     if (getUser(dn) != null) {
-      ctx.destroySubcontext(dn);
+      timed("delete", () -> {
+        ctx.destroySubcontext(dn);
+        return null;
+      });
       result = true;
     } else {
       LOGGER.log(Level.WARNING, "User DN {0} does not exits!", dn);
@@ -172,7 +179,7 @@ public class FtLDAP {
       p = Pattern.compile(caseSensitive ? "cn=" + regexPattern : "(?i)cn=" + regexPattern);
     }
     try {
-      NamingEnumeration<?> e = ctx.search(base, "(objectClass=inetOrgPerson)", getSimpleSearchControls());
+      NamingEnumeration<?> e = timed("search", () -> ctx.search(base, "(objectClass=inetOrgPerson)", getSimpleSearchControls()));
       while (e.hasMoreElements()) {
         SearchResult sr = (SearchResult) e.nextElement();
         if (p != null && !p.matcher(sr.getName()).matches()) {
@@ -219,7 +226,10 @@ public class FtLDAP {
         mods[i] = modifications.get(i);
       }
       LOGGER.log(Level.FINER, "modifications={0}", modifications);
-      ctx.modifyAttributes(ldapuser.getDn(), mods);
+      timed("modify", () -> {
+        ctx.modifyAttributes(ldapuser.getDn(), mods);
+        return null;
+      });
       LOGGER.log(Level.FINE, "Updated {0} attributes in {1}.", new Object[] { modifications.size(), ldapuser.getDn() });
       result = true;
     } else {
@@ -316,10 +326,31 @@ public class FtLDAP {
     return mi;
   }
 
+  @FunctionalInterface
+  private interface LdapOperation<T> {
+    T run() throws NamingException;
+  }
+
+  // record LDAP operation in ApiStats (a missing DN is not counted as error)
+  private static <T> T timed(String operation, LdapOperation<T> op) throws NamingException {
+    ApiStats.Timer t     = ApiStats.getInstance().start(ApiStats.LDAP, "users", operation);
+    boolean        error = true;
+    try {
+      T result = op.run();
+      error = false;
+      return result;
+    } catch (NameNotFoundException e) {
+      error = false;
+      throw e;
+    } finally {
+      t.stop(error);
+    }
+  }
+
   private SearchResult getUserItem(String dn) throws NamingException {
     SearchResult result = null;
     try {
-      NamingEnumeration<?> e = ctx.search(dn, "(objectclass=inetOrgPerson)", getSimpleSearchControls());
+      NamingEnumeration<?> e = timed("lookup", () -> ctx.search(dn, "(objectclass=inetOrgPerson)", getSimpleSearchControls()));
       while (e.hasMoreElements()) {
         if (result != null) {
           LOGGER.log(Level.SEVERE, "Found multiple DN: {0}", dn);
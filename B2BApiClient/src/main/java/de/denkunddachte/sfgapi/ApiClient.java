@@ -16,19 +16,22 @@
 package de.denkunddachte.sfgapi;
 
 import de.denkunddachte.util.ApiConfig;
+import de.denkunddachte.util.ApiResponse;
+import de.denkunddachte.util.ApiStats;
 import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
 import de.denkunddachte.ft.Exportable;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.http.HttpEntity;
-import org.apache.http.client.config.RequestConfig;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.client.methods.*;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -47,7 +50,6 @@ import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.time.OffsetDateTime;
@@ -55,13 +57,28 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.TimeUnit;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class ApiClient implements Exportable {
   private static final Logger    LOGGER                     = Logger.getLogger(ApiClient.class.getName());
@@ -93,9 +110,12 @@ public abstract class ApiClient implements Exportable {
   // internal
   private boolean                refreshRequired;
   private JSONObject             origJSON;
+  private ApiResponse            response;
   protected static ApiConfig     apicfg                     = null;
-  private static int             apiReturnCode;
-  private static String          apiErrorMsg;
+  private static final ThreadLocal<ApiResponse> lastResponse = new ThreadLocal<>();
+  private static final ThreadLocal<Boolean>     asyncCall    = new ThreadLocal<>();
+  private static ExecutorService pageExecutor;
+  private static WsApiBatcher    wsApiBatcher;
 
   static {
     try {
@@ -111,8 +131,13 @@ public abstract class ApiClient implements Exportable {
     GET, POST, PUT, DELETE
   }
 
+  @FunctionalInterface
+  public interface ApiCall<T> {
+    T call() throws ApiException;
+  }
+
   public enum ResponseType {
-    RAW, XML, JSON, JSON_ARRAY
+    RAW, JSON, JSON_ARRAY
   }
 
   protected void init() {
@@ -210,22 +235,61 @@ public abstract class ApiClient implements Exportable {
     return true;
   }
 
+  /**
+   * Result of the last create(), update(), delete() or refresh() executed on this object. Other than
+   * {@link #getLastResponse()}, the result is bound to the object and not to the calling thread, so it can be used with
+   * the async variants.
+   * 
+   * @return result envelope or null, if no request was executed
+   */
+  public ApiResponse getResponse() {
+    return response;
+  }
+
+  protected void setResponse(ApiResponse response) {
+    this.response = response;
+  }
+
+  /**
+   * Result of the last API request executed by the current thread.
+   * 
+   * @return result envelope or null, if the current thread did not execute a request
+   */
+  public static ApiResponse getLastResponse() {
+    return lastResponse.get();
+  }
+
+  /**
+   * HTTP/API return code of the last request executed by the current thread. Use {@link #getLastResponse()} or
+   * {@link #getResponse()} with new code.
+   */
   public static int getApiReturnCode() {
-    return apiReturnCode;
+    ApiResponse r = lastResponse.get();
+    return r == null ? 0 : r.getHttpCode();
   }
 
+  /**
+   * API error message of the last request executed by the current thread. Use {@link #getLastResponse()} or
+   * {@link #getResponse()} with new code.
+   */
   public static String getApiErrorMsg() {
-    return apiErrorMsg;
+    ApiResponse r = lastResponse.get();
+    return r == null ? null : r.getErrorMsg();
   }
 
   protected static void clearApiError() {
-    apiErrorMsg = null;
-    apiReturnCode = 0;
+    lastResponse.remove();
   }
 
   protected static void setApiError(int code, String error) {
-    apiErrorMsg = error;
-    apiReturnCode = code;
+    ApiResponse r = lastResponse.get();
+    if (r == null) {
+      r = new ApiResponse(null, null);
+      r.complete();
+      lastResponse.set(r);
+    }
+    r.setStatus(code, r.getHttpCode() == code ? r.getReason() : null);
+    r.setErrorMsg(error);
   }
 
   public void refresh() throws ApiException {
@@ -246,6 +310,7 @@ public abstract class ApiClient implements Exportable {
     } else {
       try (CloseableHttpResponse response = executeRequest(createRequest(RequestType.GET, new URI(this.href), null))) {
         JSONObject json = getJSON(getJSONResponse(response));
+        this.response = getLastResponse();
         if (json == null || json.has(ERROR_CODE)) {
           throw new ApiException("Could not refresh object " + this.getClass().getName() + " object with id " + getId() + ": "
               + (json != null ? json.getString(ERROR_DESCRIPTION) : "null") + "!");
@@ -298,50 +363,129 @@ public abstract class ApiClient implements Exportable {
     return httpRequest;
   }
 
+  /**
+   * Execute request. A new {@link ApiResponse} envelope for the current thread is created (see
+   * {@link #getLastResponse()}), it is completed when the response is read with {@link #getJSONResponse(CloseableHttpResponse)}
+   * or {@link #readResponse(HttpEntity)}.
+   */
   protected static CloseableHttpResponse executeRequest(HttpRequestBase request) throws ApiException {
     LOGGER.log(Level.FINEST, "Enter: request={0}", request);
-    final RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(300 * 60 * 1000).setConnectionRequestTimeout(300 * 60 * 1000)
-        .setSocketTimeout(300 * 60 * 1000).setContentCompressionEnabled(false).build();
-    apicfg.getHttpClientConnectionManager().closeExpiredConnections();
-    apicfg.getHttpClientConnectionManager().closeIdleConnections(30, TimeUnit.SECONDS);
-    CloseableHttpClient httpclient = HttpClientBuilder.create().setConnectionManager(apicfg.getHttpClientConnectionManager())
-        .setRetryHandler(new DefaultHttpRequestRetryHandler(apicfg.getApiRequestRetries(), false)).setDefaultRequestConfig(requestConfig).build();
-    clearApiError();
+    ApiResponse r = new ApiResponse(request.getMethod(), request.getURI().toString());
+    if (request instanceof HttpEntityEnclosingRequest && ((HttpEntityEnclosingRequest) request).getEntity() != null) {
+      r.setBytesSent(Math.max(0, ((HttpEntityEnclosingRequest) request).getEntity().getContentLength()));
+    }
+    String svcName = getRequestServiceName(request);
+    r.setStats(ApiStats.SFGAPI, svcName);
+    lastResponse.set(r);
 
     try {
-      return httpclient.execute(request);
+      CloseableHttpResponse response = apicfg.getResilience().execute(apicfg.getHttpClient(), request, svcName);
+      r.setStatus(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
+      return response;
     } catch (IOException e) {
+      r.setErrorMsg(e.getMessage());
+      r.complete();
       throw new ApiException("Error executing HTTP request: " + request + ": " + e.getMessage(), e);
+    } catch (ApiException e) {
+      r.setErrorMsg(e.getMessage());
+      r.complete();
+      throw e;
+    }
+  }
+
+  /*
+   * REST API service (first path segment after base URI) or WS API name ("ws:" + api parameter) of request.
+   */
+  private static String getRequestServiceName(HttpRequestBase request) {
+    String uri = request.getURI().toString();
+    if (apicfg.getWsApiBaseURI() != null && uri.startsWith(apicfg.getWsApiBaseURI())) {
+      int p = uri.indexOf("api=");
+      if (p > -1) {
+        int e = uri.indexOf('&', p);
+        return "ws:" + uri.substring(p + 4, e > -1 ? e : uri.length());
+      }
+      return "ws:";
     }
+    if (apicfg.getApiBaseURI() != null && uri.startsWith(apicfg.getApiBaseURI())) {
+      uri = uri.substring(apicfg.getApiBaseURI().length());
+    }
+    return getBaseServiceName(uri);
+  }
+
+  private static String getBaseServiceName(String svcName) {
+    while (svcName.startsWith(SLASH)) {
+      svcName = svcName.substring(1);
+    }
+    int e = svcName.indexOf('/');
+    int q = svcName.indexOf('?');
+    if (e < 0 || (q > -1 && q < e)) {
+      e = q;
+    }
+    return e > -1 ? svcName.substring(0, e) : svcName;
+  }
+
+  /**
+   * Open response content and count bytes received in the {@link ApiResponse} of the current thread. The envelope is
+   * completed when the stream is closed.
+   */
+  protected static InputStream readResponse(HttpEntity entity) throws IOException {
+    final ApiResponse r = lastResponse.get();
+    return new CountingInputStream(entity.getContent()) {
+      @Override
+      protected synchronized void afterRead(int n) {
+        super.afterRead(n);
+        if (r != null) {
+          r.setBytesReceived(getByteCount());
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        super.close();
+        if (r != null) {
+          r.complete();
+        }
+      }
+    };
   }
 
   protected static String getJSONResponse(CloseableHttpResponse response) throws ApiException {
-    int    httpCode   = response.getStatusLine().getStatusCode();
-    String httpReason = response.getStatusLine().getReasonPhrase();
-    apiReturnCode = httpCode;
+    int         httpCode   = response.getStatusLine().getStatusCode();
+    String      httpReason = response.getStatusLine().getReasonPhrase();
+    ApiResponse r          = lastResponse.get();
+    if (r == null) {
+      r = new ApiResponse(null, null);
+      lastResponse.set(r);
+    }
+    r.setStatus(httpCode, httpReason);
     LOGGER.log(Level.FINEST, "Enter: response={0}, httpCode={1}, httpReason={2}", new Object[] { response, httpCode, httpReason });
     if (httpCode != 200 && httpCode != 201 && httpCode != 400 && httpCode != 404) {
+      r.setErrorMsg("HTTP " + httpCode + " " + httpReason);
+      r.complete();
       throw new ApiException("HTTP " + httpCode + " " + httpReason);
     }
 
     HttpEntity entity     = response.getEntity();
     String     jsonString = null;
-    try {
-      jsonString = IOUtils.toString(entity.getContent(), StandardCharsets.UTF_8.name());
+    try (InputStream is = readResponse(entity)) {
+      jsonString = IOUtils.toString(is, StandardCharsets.UTF_8.name());
     } catch (IOException e) {
+      r.setErrorMsg(e.getMessage());
       throw new ApiException(e);
+    } finally {
+      r.complete();
     }
     if (httpCode == 400 || httpCode == 404) {
       LOGGER.log(Level.FINE, "Response: httpCode={0}, httpReason={1}, jsonString={2}", new Object[] { httpCode, httpReason, jsonString });
       if (jsonString.charAt(0) == '{') {
         JSONObject o = new JSONObject(jsonString);
-        apiErrorMsg = o.getString(ERROR_DESCRIPTION);
+        r.setErrorMsg(o.getString(ERROR_DESCRIPTION));
       } else {
         JSONObject o = new JSONObject();
         o.put(ERROR_CODE, httpCode);
         o.put(ERROR_DESCRIPTION, "HTTP" + httpCode + "/" + httpReason);
         jsonString = o.toString(2);
-        apiErrorMsg = httpReason;
+        r.setErrorMsg(httpReason);
       }
     }
     LOGGER.log(Level.FINEST, "Return: jsonString={0}", jsonString);
@@ -362,87 +506,240 @@ public abstract class ApiClient implements Exportable {
   }
 
   /*
-   * WS API returns JSON created from XML with /result/row structure (-> {"result":{"row": [ or { ...).
-   * Remove the /result/row tiers from JSON string.
+   * WS API returns JSON created from XML with /result/row structure (-> {"result":{"row": [ or { ...). Parse the JSON value
+   * from the reader and remove the /result/row tiers (package-private for benchmarks).
    */
-  private static String convertJSONFromWsApi(String json, ResponseType type) {
-    if (json.length() < 13 || !json.substring(0, (json.length() < 20 ? json.length() : 19)).contains("\"result\"")) {
-      return json;
-    }
-    if (!json.contains("\"row\"") && type == ResponseType.JSON_ARRAY) {
-      return "[]";
+  static Object parseWsApiJSON(Reader rd, ResponseType type) {
+    return unwrapWsApiJSON(nextValue(new JSONTokener(rd)), type);
+  }
+
+  // next JSON value or null if there is no more input
+  private static Object nextValue(JSONTokener t) {
+    if (t.nextClean() == 0) {
+      return null;
     }
-    int p1 = json.indexOf('[');
-    int p2 = json.length() - 1;
+    t.back();
+    return t.nextValue();
+  }
 
-    if (p1 > -1 && p1 <= 32) {
-      return json.substring(p1, json.lastIndexOf(']') + 1);
+  /*
+   * Rows are returned as JSONArray for JSON_ARRAY (a single row object is wrapped, no rows is an empty array), otherwise
+   * as returned by the API (row object or row array). Values without "result" wrapper (e.g. errors) are not changed.
+   */
+  static Object unwrapWsApiJSON(Object json, ResponseType type) {
+    if (!(json instanceof JSONObject) || !((JSONObject) json).has("result")) {
+      return (json == null && type == ResponseType.JSON_ARRAY) ? new JSONArray() : json;
+    }
+    Object result = ((JSONObject) json).get("result");
+    Object rows   = result instanceof JSONObject ? ((JSONObject) result).opt("row") : null;
+    if (rows == null) {
+      if (type == ResponseType.JSON_ARRAY) {
+        return new JSONArray();
+      }
+      return result instanceof JSONObject ? result : new JSONObject();
+    }
+    if (type == ResponseType.JSON_ARRAY && !(rows instanceof JSONArray)) {
+      return new JSONArray().put(rows);
     }
-    p1 = 0;
+    return rows;
+  }
 
-    int i = 2;
-    while (i-- > 0) {
-      p1 = json.indexOf('{', p1 + 1);
-      p2 = json.lastIndexOf('}', p2 - 1);
+  /*
+   * Read JSON response like getJSONResponse(), but parse the value while reading the response stream.
+   */
+  private static Object readJSONResponse(CloseableHttpResponse response) throws ApiException {
+    int         httpCode   = response.getStatusLine().getStatusCode();
+    String      httpReason = response.getStatusLine().getReasonPhrase();
+    ApiResponse r          = lastResponse.get();
+    if (r == null) {
+      r = new ApiResponse(null, null);
+      lastResponse.set(r);
     }
-    if (type == ResponseType.JSON_ARRAY) {
-      return "[" + json.substring(p1, p2 + 1) + "]";
-    } else {
-      return json.substring(p1, p2 + 1);
+    r.setStatus(httpCode, httpReason);
+    Object json = null;
+    try (Reader rd = new BufferedReader(new InputStreamReader(readResponse(response.getEntity()), StandardCharsets.UTF_8))) {
+      json = nextValue(new JSONTokener(rd));
+    } catch (JSONException e) {
+      if (httpCode != 400 && httpCode != 404) {
+        r.setErrorMsg(e.getMessage());
+        throw new ApiException(e);
+      }
+    } catch (IOException e) {
+      r.setErrorMsg(e.getMessage());
+      throw new ApiException(e);
+    } finally {
+      r.complete();
     }
+    if (httpCode == 400 || httpCode == 404) {
+      if (json instanceof JSONObject) {
+        r.setErrorMsg(((JSONObject) json).optString(ERROR_DESCRIPTION, httpReason));
+      } else {
+        JSONObject o = new JSONObject();
+        o.put(ERROR_CODE, httpCode);
+        o.put(ERROR_DESCRIPTION, "HTTP" + httpCode + "/" + httpReason);
+        json = o;
+        r.setErrorMsg(httpReason);
+      }
+      LOGGER.log(Level.FINE, "Response: httpCode={0}, httpReason={1}, json={2}", new Object[] { httpCode, httpReason, json });
+    }
+    return json;
   }
 
-  private static Object getWithWsApi(final String svcName, final String parameter, ResponseType responseFormat) throws ApiException {
+  private static Object getParsedJSONFromWsApi(final String svcName, final String parameter, ResponseType type) throws ApiException {
     LOGGER.log(Level.FINEST, "Enter: svcName={0}, parameter={1}", new Object[] { svcName, parameter });
-    Object  ret     = null;
-    boolean getJSON = responseFormat == ResponseType.JSON || responseFormat == ResponseType.JSON_ARRAY;
+    if (apicfg.getWsApiBatchWindow() > 0 && WsApiBatcher.isBatchable(svcName) && !getWsApiBatcher().isDisabled()) {
+      return getWsApiBatcher().lookup(svcName, parameter, type, () -> getSingleParsedJSONFromWsApi(svcName, parameter, type));
+    }
+    return getSingleParsedJSONFromWsApi(svcName, parameter, type);
+  }
+
+  private static Object getSingleParsedJSONFromWsApi(final String svcName, final String parameter, ResponseType type) throws ApiException {
+    try (CloseableHttpResponse response = executeWsApiRequest(svcName, parameter, true)) {
+      return unwrapWsApiJSON(readJSONResponse(response), type);
+    } catch (IOException | URISyntaxException e) {
+      throw new ApiException(e);
+    }
+  }
+
+  /*
+   * Send queries collected by WsApiBatcher (<batch><query id="n"><api>...</api>...</query></batch>) to the batch API.
+   */
+  static Object postWsApiBatch(String batchXml) throws ApiException {
+    LOGGER.log(Level.FINEST, "Enter: batchXml={0}", batchXml);
     try {
-      HttpRequestBase httpRequest = createRequest(RequestType.GET,
-          new URI(apicfg.getWsApiBaseURI() + "?api=" + svcName + (getJSON ? "&json=1" : "") + (parameter == null ? "" : parameter)), null);
-      LOGGER.log(Level.FINEST, "httpRequest={0}", httpRequest);
+      HttpRequestBase httpRequest = createRequest(RequestType.POST, new URI(apicfg.getWsApiBaseURI() + "?api=" + WsApiBatcher.BATCH_API + "&json=1"), null);
+      ((HttpPost) httpRequest).setEntity(new StringEntity(batchXml, ContentType.create("application/xml", StandardCharsets.UTF_8)));
+      httpRequest.setHeader(CONTENT_TYPE, "application/xml");
       try (CloseableHttpResponse response = executeRequest(httpRequest)) {
-        int    httpCode   = response.getStatusLine().getStatusCode();
-        String httpReason = response.getStatusLine().getReasonPhrase();
-        LOGGER.log(Level.FINEST, "Enter: response={0}, httpCode={1}, httpReason={2}", new Object[] { response, httpCode, httpReason });
-        if (httpCode != 200 && httpCode != 201 && httpCode != 400 && httpCode != 404) {
-          throw new ApiException("HTTP " + httpCode + " " + httpReason);
-        }
-        HttpEntity entity = response.getEntity();
-        if (getJSON) {
-          ret = convertJSONFromWsApi(getJSONResponse(response), responseFormat);
-        } else if (responseFormat == ResponseType.XML) {
-          ret = parseXml(new InputSource(entity.getContent()));
-        } else {
-          StringBuilder sb       = new StringBuilder();
-          Charset       encoding = Charset.defaultCharset();
-          if (entity.getContentEncoding() != null) {
-            encoding = Charset.forName(entity.getContentEncoding().getValue());
-          }
-          try (Reader rd = new BufferedReader(new InputStreamReader(entity.getContent(), encoding))) {
-            int c = 0;
-            while ((c = rd.read()) != -1) {
-              sb.append((char) c);
-            }
-          }
-          return sb.toString();
-        }
+        return readJSONResponse(response);
       }
     } catch (IOException | URISyntaxException e) {
       throw new ApiException(e);
     }
-    return ret;
   }
 
-  protected static Document getXmlDocumentFromWsApi(final String svcName, final String parameter) throws ApiException {
-    return (Document) getWithWsApi(svcName, parameter, ResponseType.XML);
+  private static synchronized WsApiBatcher getWsApiBatcher() {
+    if (wsApiBatcher == null) {
+      wsApiBatcher = new WsApiBatcher(apicfg.getWsApiBatchWindow(), apicfg.getWsApiBatchSize());
+    }
+    return wsApiBatcher;
+  }
+
+  private static CloseableHttpResponse executeWsApiRequest(final String svcName, final String parameter, boolean getJSON)
+      throws ApiException, URISyntaxException, IOException {
+    HttpRequestBase httpRequest = createRequest(RequestType.GET,
+        new URI(apicfg.getWsApiBaseURI() + "?api=" + svcName + (getJSON ? "&json=1" : "") + (parameter == null ? "" : parameter)), null);
+    LOGGER.log(Level.FINEST, "httpRequest={0}", httpRequest);
+    CloseableHttpResponse response   = executeRequest(httpRequest);
+    int                   httpCode   = response.getStatusLine().getStatusCode();
+    String                httpReason = response.getStatusLine().getReasonPhrase();
+    LOGGER.log(Level.FINEST, "Enter: response={0}, httpCode={1}, httpReason={2}", new Object[] { response, httpCode, httpReason });
+    if (httpCode != 200 && httpCode != 201 && httpCode != 400 && httpCode != 404) {
+      response.close();
+      throw new ApiException("HTTP " + httpCode + " " + httpReason);
+    }
+    return response;
+  }
+
+  /**
+   * Get WS API listing (/result/row) and map rows while reading the response (see {@link WsApiRowReader}).
+   */
+  protected static <T> List<T> getRowsFromWsApi(final String svcName, final String parameter, WsApiRowReader.RowMapper<T> mapper) throws ApiException {
+    List<T> result = new ArrayList<>();
+    readRowsFromWsApi(svcName, parameter, mapper, result::add);
+    return result;
+  }
+
+  /**
+   * Get WS API listing (/result/row) and pass mapped rows to <code>consumer</code> while reading the response. Only the
+   * current row is held in memory.
+   *
+   * @return number of rows read
+   */
+  protected static <T> int readRowsFromWsApi(final String svcName, final String parameter, WsApiRowReader.RowMapper<T> mapper,
+      Consumer<? super T> consumer) throws ApiException {
+    LOGGER.log(Level.FINEST, "Enter: svcName={0}, parameter={1}", new Object[] { svcName, parameter });
+    try (CloseableHttpResponse response = executeWsApiRequest(svcName, parameter, false); InputStream is = readResponse(response.getEntity())) {
+      int rows = WsApiRowReader.read(is, mapper, consumer);
+      LOGGER.log(Level.FINER, "Read {0} rows from WS API {1}.", new Object[] { rows, svcName });
+      return rows;
+    } catch (IOException | URISyntaxException e) {
+      throw new ApiException(e);
+    }
+  }
+
+  /**
+   * Stream WS API listing (/result/row): rows are mapped while the stream is consumed, only the current row is held in
+   * memory. The stream must be closed to release the HTTP connection, read errors are thrown as
+   * {@link UncheckedApiException}.
+   */
+  protected static <T> Stream<T> streamRowsFromWsApi(final String svcName, final String parameter, WsApiRowReader.RowMapper<T> mapper)
+      throws ApiException {
+    LOGGER.log(Level.FINEST, "Enter: svcName={0}, parameter={1}", new Object[] { svcName, parameter });
+    CloseableHttpResponse response = null;
+    try {
+      response = executeWsApiRequest(svcName, parameter, false);
+      final CloseableHttpResponse         r  = response;
+      final InputStream                   is = readResponse(response.getEntity());
+      final WsApiRowReader.RowIterator<T> it = WsApiRowReader.iterator(is, mapper);
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(() -> {
+        it.close();
+        LOGGER.log(Level.FINER, "Read {0} rows from WS API {1}.", new Object[] { it.getRowCount(), svcName });
+        IOUtils.closeQuietly(is, r);
+      });
+    } catch (IOException | URISyntaxException | ApiException e) {
+      IOUtils.closeQuietly(response);
+      throw e instanceof ApiException ? (ApiException) e : new ApiException(e);
+    }
   }
 
   protected static String getFromWsApi(final String svcName, final String parameter) throws ApiException {
-    return (String) getWithWsApi(svcName, parameter, ResponseType.RAW);
+    LOGGER.log(Level.FINEST, "Enter: svcName={0}, parameter={1}", new Object[] { svcName, parameter });
+    try (CloseableHttpResponse response = executeWsApiRequest(svcName, parameter, false)) {
+      HttpEntity    entity   = response.getEntity();
+      StringBuilder sb       = new StringBuilder();
+      Charset       encoding = Charset.defaultCharset();
+      if (entity.getContentEncoding() != null) {
+        encoding = Charset.forName(entity.getContentEncoding().getValue());
+      }
+      try (Reader rd = new BufferedReader(new InputStreamReader(readResponse(entity), encoding))) {
+        int c = 0;
+        while ((c = rd.read()) != -1) {
+          sb.append((char) c);
+        }
+      }
+      return sb.toString();
+    } catch (IOException | URISyntaxException e) {
+      throw new ApiException(e);
+    }
   }
 
   protected static String getJSONFromWsApi(final String svcName, final String parameter, boolean jsonArray) throws ApiException {
-    return (String) getWithWsApi(svcName, parameter, (jsonArray ? ResponseType.JSON_ARRAY : ResponseType.JSON));
+    Object json = getParsedJSONFromWsApi(svcName, parameter, (jsonArray ? ResponseType.JSON_ARRAY : ResponseType.JSON));
+    return json == null ? "" : json.toString();
+  }
+
+  /**
+   * @return WS API rows; empty if the API returned no rows or HTTP 400/404
+   */
+  protected static JSONArray getJSONArrayFromWsApi(final String svcName, final String parameter) throws ApiException {
+    try {
+      return toJSONArray(getParsedJSONFromWsApi(svcName, parameter, ResponseType.JSON_ARRAY));
+    } catch (JSONException e) {
+      throw new ApiException(e);
+    }
+  }
+
+  /**
+   * @return WS API result row (first row if the API returned several) or error object ({@value #ERROR_CODE},
+   *         {@value #ERROR_DESCRIPTION}); null if the response was empty
+   */
+  protected static JSONObject getJSONObjectFromWsApi(final String svcName, final String parameter) throws ApiException {
+    try {
+      return toJSONObject(getParsedJSONFromWsApi(svcName, parameter, ResponseType.JSON), null, null, false);
+    } catch (JSONException e) {
+      throw new ApiException(e);
+    }
   }
 
   protected static String get(final String svcName) throws ApiException {
@@ -511,38 +808,42 @@ public abstract class ApiClient implements Exportable {
 
   protected static String get(final String svcName, final Map<String, Object> parameters) throws ApiException, UnsupportedEncodingException {
     if (parameters != null) {
-      int           i  = 0;
-      StringBuilder sb = new StringBuilder();
-      sb.append('?');
-      for (Entry<String, Object> e : parameters.entrySet()) {
-        if (e.getValue() == null)
-          continue;
-        if (i++ > 0)
-          sb.append('&');
-        switch (e.getKey()) {
-        case "offset":
-          sb.append("_range=").append(e.getValue()).append('-').append((int) e.getValue() + API_RANGESIZE - 1);
-          e.setValue((int) e.getValue() + API_RANGESIZE); // next offset -> 1000
-          break;
-        case "includeFields":
-          sb.append("_include=").append(urlEncode(getCommaSeparatedList(e)));
-          break;
-        case "excludeFields":
-          sb.append("_exclude=").append(urlEncode(getCommaSeparatedList(e)));
-          break;
-        case "sort":
-          sb.append("_sort=").append(urlEncode(getCommaSeparatedList(e)));
-          break;
-        default:
-          sb.append(e.getKey()).append('=').append(urlEncode(String.valueOf(e.getValue())));
-        }
-      }
-      return get(svcName, sb.toString());
+      return get(svcName, getQueryString(parameters));
     } else {
       return get(svcName);
     }
   }
 
+  protected static String getQueryString(final Map<String, Object> parameters) throws ApiException, UnsupportedEncodingException {
+    int           i  = 0;
+    StringBuilder sb = new StringBuilder();
+    sb.append('?');
+    for (Entry<String, Object> e : parameters.entrySet()) {
+      if (e.getValue() == null)
+        continue;
+      if (i++ > 0)
+        sb.append('&');
+      switch (e.getKey()) {
+      case "offset":
+        sb.append("_range=").append(e.getValue()).append('-').append((int) e.getValue() + API_RANGESIZE - 1);
+        e.setValue((int) e.getValue() + API_RANGESIZE); // next offset -> 1000
+        break;
+      case "includeFields":
+        sb.append("_include=").append(urlEncode(getCommaSeparatedList(e)));
+        break;
+      case "excludeFields":
+        sb.append("_exclude=").append(urlEncode(getCommaSeparatedList(e)));
+        break;
+      case "sort":
+        sb.append("_sort=").append(urlEncode(getCommaSeparatedList(e)));
+        break;
+      default:
+        sb.append(e.getKey()).append('=').append(urlEncode(String.valueOf(e.getValue())));
+      }
+    }
+    return sb.toString();
+  }
+
   protected static String get(final String svcName, final String parameter) throws ApiException {
     String result = getFromCache(svcName, parameter);
     if (result == null) {
@@ -559,6 +860,201 @@ public abstract class ApiClient implements Exportable {
     return result;
   }
 
+  /**
+   * Get all rows of a REST API listing using <code>_range</code> pages of API_RANGESIZE rows. The parameter map contains the
+   * start offset ("offset") and the query parameters as used with {@link #get(String, Map)}. The first page is requested
+   * synchronously; only if it is full, up to sfgapi.prefetchPages following pages are requested concurrently. Rows are
+   * returned in order, paging stops with the first page containing less than API_RANGESIZE rows.
+   * 
+   * @param svcName
+   *          REST API service
+   * @param parameters
+   *          query parameters
+   * @return rows of all pages
+   * @throws ApiException
+   * @throws UnsupportedEncodingException
+   */
+  protected static JSONArray getAll(final String svcName, final Map<String, Object> parameters) throws ApiException, UnsupportedEncodingException {
+    final JSONArray result   = new JSONArray();
+    final int       prefetch = Math.max(1, apicfg.getApiPrefetchPages());
+    int             offset   = parameters.get("offset") instanceof Integer ? (int) parameters.get("offset") : 0;
+    boolean         lastPage = false;
+    // short listings cost one request: prefetch only after a full first page
+    int             batch    = 1;
+    while (!lastPage) {
+      List<Future<JSONArray>> pages = new ArrayList<>(batch);
+      for (int i = 0; i < batch; i++) {
+        final Map<String, Object> pageParams = new LinkedHashMap<>(parameters);
+        pageParams.put("offset", offset);
+        offset += API_RANGESIZE;
+        FutureTask<JSONArray> page = new FutureTask<>(() -> getJSONArray(get(svcName, pageParams)));
+        if (batch == 1) {
+          page.run();
+        } else {
+          getPageExecutor().execute(page);
+        }
+        pages.add(page);
+      }
+      try {
+        for (Future<JSONArray> page : pages) {
+          if (lastPage) {
+            page.cancel(false);
+          } else {
+            JSONArray rows = page.get();
+            result.putAll(rows);
+            lastPage = rows.length() < API_RANGESIZE;
+          }
+        }
+      } catch (InterruptedException e) {
+        pages.forEach(f -> f.cancel(false));
+        Thread.currentThread().interrupt();
+        throw new ApiException("Interrupted while fetching pages of " + svcName + "!", e);
+      } catch (ExecutionException e) {
+        pages.forEach(f -> f.cancel(false));
+        if (e.getCause() instanceof ApiException) {
+          throw (ApiException) e.getCause();
+        } else if (e.getCause() instanceof UnsupportedEncodingException) {
+          throw (UnsupportedEncodingException) e.getCause();
+        } else if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new ApiException(e.getCause());
+      }
+      batch = prefetch;
+    }
+    LOGGER.log(Level.FINER, "Got {0} rows from {1} (prefetch={2}, rangeSize={3}).", new Object[] { result.length(), svcName, prefetch, API_RANGESIZE });
+    return result;
+  }
+
+  /**
+   * Stream all rows of a REST API listing. Other than {@link #getAll(String, Map)}, the response is not read into memory
+   * but parsed row by row from the response stream, the next <code>_range</code> page is requested when the current page
+   * is exhausted. Results are not cached. The returned stream must be closed to release the HTTP connection, API errors are
+   * thrown as {@link UncheckedApiException}.
+   * 
+   * @param svcName
+   *          REST API service
+   * @param parameters
+   *          query parameters (with "offset" for paged results)
+   * @param mapper
+   *          creates object from JSON row (rows mapped to null are skipped)
+   * @return stream of objects
+   */
+  protected static <T> Stream<T> streamAll(final String svcName, final Map<String, Object> parameters, final ApiResultIterator.RowMapper<T> mapper) {
+    return streamAll(svcName, parameters, true, mapper);
+  }
+
+  protected static <T> Stream<T> streamAll(final String svcName, final Map<String, Object> parameters, final boolean paged,
+      final ApiResultIterator.RowMapper<T> mapper) {
+    final ApiResultIterator<T> it = new ApiResultIterator<>(svcName, parameters, paged, mapper);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(it::close);
+  }
+
+  private static synchronized ExecutorService getPageExecutor() {
+    if (pageExecutor == null) {
+      final AtomicInteger threadNum = new AtomicInteger();
+      pageExecutor = Executors.newFixedThreadPool(Math.max(1, apicfg.getApiPrefetchPages()), r -> {
+        Thread t = new Thread(r, "api-pager-" + threadNum.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    return pageExecutor;
+  }
+
+  /**
+   * Run API call asynchronously using the executor configured in {@link ApiConfig#getAsyncExecutor()}. If the call fails,
+   * the future completes exceptionally with the {@link ApiException}.
+   * 
+   * @param call
+   *          API call
+   * @return future result of call
+   */
+  public static <T> CompletableFuture<T> async(final ApiCall<T> call) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      apicfg.getAsyncExecutor().execute(() -> {
+        asyncCall.set(Boolean.TRUE);
+        try {
+          result.complete(call.call());
+        } catch (Exception e) {
+          result.completeExceptionally(e);
+        } finally {
+          asyncCall.remove();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      result.completeExceptionally(new ApiException("Could not schedule async API call!", e));
+    }
+    return result;
+  }
+
+  /**
+   * @return true if the current thread runs an API call submitted with {@link #async(ApiCall)}
+   */
+  protected static boolean isAsyncCall() {
+    return asyncCall.get() != null;
+  }
+
+  /**
+   * Refresh objects that require it (see {@link #isRefreshRequired()}) concurrently on the async executor, so at most
+   * {@link ApiConfig#ASYNC_THREADS} requests run at the same time. Returns when all objects are refreshed. When called
+   * from an async API call (e.g. findAllAsync()), the objects are refreshed in the current thread, because waiting for
+   * other calls on the same bounded executor may deadlock.
+   * 
+   * @param objects
+   *          objects to refresh
+   * @throws ApiException
+   *           first error if objects could not be refreshed
+   */
+  public static void refreshAll(Collection<? extends ApiClient> objects) throws ApiException {
+    if (isAsyncCall()) {
+      for (ApiClient o : objects) {
+        if (o.isRefreshRequired()) {
+          o.refresh();
+        }
+      }
+      return;
+    }
+    List<CompletableFuture<ApiClient>> futures = new ArrayList<>();
+    for (ApiClient o : objects) {
+      if (o.isRefreshRequired()) {
+        futures.add(o.refreshAsync());
+      }
+    }
+    if (futures.isEmpty()) {
+      return;
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      throw new ApiException("Could not refresh objects!", e.getCause() == null ? e : e.getCause());
+    }
+    LOGGER.log(Level.FINER, "Refreshed {0} objects.", futures.size());
+  }
+
+  public CompletableFuture<Boolean> createAsync() {
+    return async(this::create);
+  }
+
+  public CompletableFuture<Boolean> updateAsync() {
+    return async(this::update);
+  }
+
+  public CompletableFuture<Boolean> deleteAsync() {
+    return async(this::delete);
+  }
+
+  public CompletableFuture<ApiClient> refreshAsync() {
+    return async(() -> {
+      refresh();
+      return this;
+    });
+  }
+
   public boolean create() throws ApiException {
     boolean result = false;
     try {
@@ -583,6 +1079,7 @@ public abstract class ApiClient implements Exportable {
       LOGGER.log(Level.INFO, "DRY RUN: Skip operation={0}, service={1}.", new Object[] { "CREATE", svcName });
       LOGGER.log(Level.FINER, "DRY RUN: data: {0}.", data);
       writeCache(svcName, getId(), data.toString());
+      this.response = ApiResponse.of("POST", svcName, 201, "DRY RUN");
       JSONObject o = new JSONObject();
       o.put(LOCATION, "Skipped (DRY RUN)");
       return o.toString();
@@ -592,6 +1089,8 @@ public abstract class ApiClient implements Exportable {
       HttpRequestBase req = createRequest(RequestType.POST, getSvcUri(svcName, null), data.toString());
       try (CloseableHttpResponse response = executeRequest(req)) {
         result = getJSONResponse(response);
+      } finally {
+        this.response = getLastResponse();
       }
     } catch (IllegalStateException | IOException | URISyntaxException e) {
       throw new ApiException(e);
@@ -627,6 +1126,7 @@ public abstract class ApiClient implements Exportable {
       LOGGER.log(Level.INFO, "DRY RUN: Skip operation={0}, service={1}, params={2}.", new Object[] { "CREATE", svcName, parameter });
       LOGGER.log(Level.FINER, "DRY RUN: data: {0}.", data);
       writeCache(svcName, getId(), data.toString());
+      this.response = ApiResponse.of("PUT", getSvcUri(svcName, parameter), 200, "DRY RUN");
       JSONObject o = new JSONObject();
       o.put(ROWS_AFFECTED, 1);
       return o.toString();
@@ -638,6 +1138,8 @@ public abstract class ApiClient implements Exportable {
       try (CloseableHttpResponse response = executeRequest(req)) {
         result = getJSONResponse(response);
         clearCache(svcName);
+      } finally {
+        this.response = getLastResponse();
       }
     } catch (IllegalStateException | IOException | URISyntaxException e) {
       throw new ApiException(e);
@@ -659,33 +1161,15 @@ public abstract class ApiClient implements Exportable {
     return findByKey(svcName, key, null);
   }
 
-  private static File getCacheFile(String svcName, String parameter) {
-    StringBuilder sb = new StringBuilder(svcName);
-    if (parameter != null && !parameter.isEmpty()) {
-      sb.append(SLASH).append(parameter);
-    }
-    try {
-      return new File(apicfg.getCacheDir(), URLEncoder.encode(sb.toString(), "UTF-8"));
-    } catch (UnsupportedEncodingException e) {
-      return null;
-    }
-  }
-
   private static String getFromCache(String svcName, String parameter) {
-    String result = null;
     if (apicfg.isCacheResults()) {
-      File cacheFile = getCacheFile(svcName, parameter);
-      if (cacheFile != null && cacheFile.exists() && cacheFile.lastModified() > (System.currentTimeMillis() - apicfg.getCacheExpiryMillis())) {
-        try (FileInputStream fis = new FileInputStream(cacheFile)) {
-          byte[] d = new byte[(int) cacheFile.length()];
-          fis.read(d);
-          result = new String(d, StandardCharsets.UTF_8.name());
-        } catch (Exception e) {
-          LOGGER.finer("Could not open cache file " + cacheFile + ": " + e.getMessage());
-        }
+      String result = apicfg.getResponseCache().get(svcName, parameter);
+      if (result != null) {
+        ApiStats.getInstance().recordCacheHit(ApiStats.SFGAPI, getBaseServiceName(svcName), "GET");
       }
+      return result;
     }
-    return result;
+    return null;
   }
 
   private static void writeCache(String svcName, String parameter, String data) throws ApiException {
@@ -693,36 +1177,20 @@ public abstract class ApiClient implements Exportable {
       deleteCache(svcName, parameter);
     } else {
       if (apicfg.isCacheResults()) {
-        File cacheFile = getCacheFile(svcName, parameter);
-        if (cacheFile != null) {
-          try (FileOutputStream fos = new FileOutputStream(cacheFile)) {
-            fos.write(data.getBytes(StandardCharsets.UTF_8.name()));
-          } catch (IOException e) {
-            throw new ApiException(e);
-          }
-        }
+        apicfg.getResponseCache().put(svcName, parameter, data);
       }
     }
   }
 
   private static void deleteCache(String svcName, String parameter) throws ApiException {
     if (apicfg.isCacheResults()) {
-      File cacheFile = getCacheFile(svcName, parameter);
-      if (cacheFile != null && cacheFile.exists()) {
-        cacheFile.delete();
-      }
+      apicfg.getResponseCache().remove(svcName, parameter);
     }
   }
 
   protected void clearCache(String svcName) throws IOException {
     if (apicfg.isCacheResults()) {
-      File cacheDir = apicfg.getCacheDir();
-      if (!cacheDir.exists())
-        return;
-      for (File f : cacheDir.listFiles()) {
-        if (f.getName().startsWith(svcName))
-          Files.delete(f.toPath());
-      }
+      apicfg.getResponseCache().invalidate(svcName);
     }
   }
 
@@ -751,6 +1219,7 @@ public abstract class ApiClient implements Exportable {
     if (apicfg.isDryrun()) {
       LOGGER.log(Level.INFO, "DRY RUN: Skip operation={0}, service={1}, params={2}.", new Object[] { "CREATE", svcName, parameter });
       deleteCache(svcName, parameter);
+      this.response = ApiResponse.of("DELETE", getSvcUri(svcName, parameter), 200, "DRY RUN");
       JSONObject o = new JSONObject();
       o.put(ROWS_AFFECTED, 1);
       return o.toString();
@@ -761,6 +1230,8 @@ public abstract class ApiClient implements Exportable {
       try (CloseableHttpResponse response = executeRequest(req)) {
         result = getJSONResponse(response);
         clearCache(svcName);
+      } finally {
+        this.response = getLastResponse();
       }
     } catch (IllegalStateException | IOException | URISyntaxException e) {
       throw new ApiException(e);
@@ -791,24 +1262,45 @@ public abstract class ApiClient implements Exportable {
       if (jsonString.charAt(0) == '[') {
         result = new JSONArray(jsonString);
       } else {
-        JSONObject o = new JSONObject(jsonString);
-        if (o.getInt(ERROR_CODE) != 400 && o.getInt(ERROR_CODE) != 404) {
-          throw new JSONException("Unexpected JSON result for query: " + jsonString);
-        }
+        result = toJSONArray(new JSONObject(jsonString));
       }
     }
     return result;
   }
 
+  // parsed JSON value as array, error objects with HTTP 400/404 are an empty array
+  private static JSONArray toJSONArray(Object json) throws JSONException {
+    if (json instanceof JSONArray) {
+      return (JSONArray) json;
+    }
+    if (json instanceof JSONObject) {
+      JSONObject o = (JSONObject) json;
+      if (o.getInt(ERROR_CODE) != 400 && o.getInt(ERROR_CODE) != 404) {
+        throw new JSONException("Unexpected JSON result for query: " + o);
+      }
+    } else if (json != null) {
+      throw new JSONException("Unexpected JSON result for query: " + json);
+    }
+    return new JSONArray();
+  }
+
   protected static JSONObject getJSON(final String jsonString) throws JSONException {
     return getJSON(jsonString, null, null, false);
   }
 
   protected static JSONObject getJSON(final String jsonString, String key, String matchValue, boolean caseSensitive) throws JSONException {
-    JSONObject result = null;
     if (jsonString != null && !jsonString.isEmpty()) {
-      if (jsonString.charAt(0) == '[') {
-        JSONArray a = new JSONArray(jsonString);
+      return toJSONObject(jsonString.charAt(0) == '[' ? new JSONArray(jsonString) : new JSONObject(jsonString), key, matchValue, caseSensitive);
+    }
+    return null;
+  }
+
+  // parsed JSON value as object, for arrays the first element (matching key/matchValue if key is not null) is returned
+  private static JSONObject toJSONObject(Object json, String key, String matchValue, boolean caseSensitive) throws JSONException {
+    JSONObject result = null;
+    if (json != null) {
+      if (json instanceof JSONArray) {
+        JSONArray a = (JSONArray) json;
         for (int i = 0; i < a.length(); i++) {
           if (key == null || (a.getJSONObject(i).has(key)
               && (caseSensitive ? matchValue.equals(a.getJSONObject(i).getString(key)) : matchValue.equalsIgnoreCase(a.getJSONObject(i).getString(key))))) {
@@ -821,8 +1313,10 @@ public abstract class ApiClient implements Exportable {
           result.put(ERROR_CODE, 404);
           result.put(ERROR_DESCRIPTION, "SFGAPI001: API found " + a.length() + " results but no exact match for: " + matchValue);
         }
+      } else if (json instanceof JSONObject) {
+        result = (JSONObject) json;
       } else {
-        result = new JSONObject(jsonString);
+        throw new JSONException("Unexpected JSON result for query: " + json);
       }
     }
     return result;
@@ -947,7 +1441,7 @@ public abstract class ApiClient implements Exportable {
 
   public static String getWsApiVersion() throws JSONException, ApiException {
     if (useWsApi("version")) {
-      JSONObject o = new JSONObject(getJSONFromWsApi("version", "&json=1", false));
+      JSONObject o = getJSONObjectFromWsApi("version", "&json=1");
       if (o.has("API_VERSION")) {
         return (o.has("API_BP_NAME") ? o.getString("API_BP_NAME") : apicfg.getWsApiBpName()) + "-" + o.getString("API_VERSION");
       }
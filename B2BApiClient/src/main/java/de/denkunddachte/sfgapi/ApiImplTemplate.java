@@ -23,18 +23,9 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import de.denkunddachte.exception.ApiException;
 
@@ -149,13 +140,9 @@ public class ApiImplTemplate extends ApiClient {
 			params.put("offset", 0);
 			params.put("includeFields", includeFields);
 			params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
-			while (true) {
-				JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-				for (int i = 0; i < jsonObjects.length(); i++) {
-					result.add(new ApiImplTemplate(jsonObjects.getJSONObject(i)));
-				}
-				if (jsonObjects.length() < API_RANGESIZE)
-					break;
+			JSONArray jsonObjects = getAll(SVC_NAME, params);
+			for (int i = 0; i < jsonObjects.length(); i++) {
+				result.add(new ApiImplTemplate(jsonObjects.getJSONObject(i)));
 			}
 		} catch (JSONException | UnsupportedEncodingException e) {
 			throw new ApiException(e);
@@ -164,25 +151,16 @@ public class ApiImplTemplate extends ApiClient {
 	}
 
 	private static List<ApiImplTemplate> findAllWithWSApi(String filter) throws ApiException {
-		List<ApiImplTemplate> result = new ArrayList<>();
 		try {
-			Document xmlDoc = getXmlDocumentFromWsApi(SVC_NAME, (filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null));
-			XPathFactory xPathFactory = XPathFactory.newInstance();
-			XPath xpath = xPathFactory.newXPath();
-			XPathExpression expr = xpath.compile("/result/row");
-			NodeList nl = (NodeList) expr.evaluate(xmlDoc, XPathConstants.NODESET);
-
-			for (int i = 0; i < nl.getLength(); i++) {
-				Node n = nl.item(i);
-				ApiImplTemplate item = new ApiImplTemplate((String) xpath.evaluate("./_id", n, XPathConstants.STRING));
+			return getRowsFromWsApi(SVC_NAME, (filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null), row -> {
+				ApiImplTemplate item = new ApiImplTemplate(row.get("_id"));
 				item.setGeneratedId(item.getIdField());
 				LOGGER.log(Level.FINER, "Got item: {0}", item);
-				result.add(item);
-			}
-		} catch (UnsupportedEncodingException | XPathExpressionException e) {
+				return item;
+			});
+		} catch (UnsupportedEncodingException e) {
 			throw new ApiException(e);
 		}
-		return result;
 	}
 
 	// find() and exists() can be implemented in 2 different ways depending on API
@@ -0,0 +1,200 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.sfgapi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
+import de.denkunddachte.sfgapi.ApiClient.RequestType;
+import de.denkunddachte.util.ApiResponse;
+
+/**
+ * Iterates over the rows of a REST API listing while reading the response. Only the current row is held in memory. If
+ * the query parameters contain "offset", the listing is read in <code>_range</code> pages of API_RANGESIZE rows.
+ * 
+ * @param <T>
+ *          result type
+ */
+public class ApiResultIterator<T> implements Iterator<T>, AutoCloseable {
+  private static final Logger       LOGGER = Logger.getLogger(ApiResultIterator.class.getName());
+
+  @FunctionalInterface
+  public interface RowMapper<T> {
+    T map(JSONObject json) throws JSONException, ApiException;
+  }
+
+  private final String              svcName;
+  private final Map<String, Object> parameters;
+  private final RowMapper<T>        mapper;
+  private final boolean             paged;
+  private CloseableHttpResponse     response;
+  private ApiResponse               pageResponse;
+  private JSONTokener               tokener;
+  private int                       rowsInPage;
+  private int                       rowCount;
+  private boolean                   lastPage;
+  private T                         next;
+
+  ApiResultIterator(String svcName, Map<String, Object> parameters, boolean paged, RowMapper<T> mapper) {
+    this.svcName = svcName;
+    this.parameters = new LinkedHashMap<>(parameters);
+    this.mapper = mapper;
+    this.paged = paged && parameters.get("offset") instanceof Integer;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = fetchNext();
+      } catch (ApiException e) {
+        close();
+        throw new UncheckedApiException(e);
+      } catch (JSONException e) {
+        close();
+        throw new UncheckedApiException(new ApiException("Error reading result of " + svcName + " (row " + rowCount + ")!", e));
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    T result = next;
+    next = null;
+    return result;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  private T fetchNext() throws ApiException {
+    while (true) {
+      if (tokener == null) {
+        if (lastPage || !openPage()) {
+          lastPage = true;
+          return null;
+        }
+      }
+      char c = tokener.nextClean();
+      if (rowsInPage > 0) {
+        // expect separator or end of array after a row
+        if (c == ',') {
+          c = tokener.nextClean();
+        } else if (c != ']') {
+          throw tokener.syntaxError("Expected ',' or ']'");
+        }
+      }
+      if (c == ']') {
+        LOGGER.log(Level.FINER, "End of page: svc={0}, rows={1}", new Object[] { svcName, rowsInPage });
+        lastPage = !paged || rowsInPage < ApiClient.API_RANGESIZE;
+        closeResponse(true);
+        continue;
+      }
+      tokener.back();
+      JSONObject row = new JSONObject(tokener);
+      rowsInPage++;
+      rowCount++;
+      T obj = mapper.map(row);
+      if (obj != null) {
+        return obj;
+      }
+    }
+  }
+
+  private boolean openPage() throws ApiException {
+    try {
+      String query = ApiClient.getQueryString(parameters); // increments offset for next page
+      response = ApiClient.executeRequest(ApiClient.createRequest(RequestType.GET, ApiClient.getSvcUri(svcName, query), null));
+      pageResponse = ApiClient.getLastResponse();
+      rowsInPage = 0;
+      int httpCode = response.getStatusLine().getStatusCode();
+      if (httpCode != 200) {
+        // 400/404 mean "no (more) rows", getJSONResponse() sets API error and throws for other codes
+        ApiClient.getJSONArray(ApiClient.getJSONResponse(response));
+        closeResponse(false);
+        return false;
+      }
+      ApiClient.setApiError(httpCode, null);
+      HttpEntity  entity = response.getEntity();
+      InputStream is     = ApiClient.readResponse(entity);
+      Header      enc    = entity.getContentEncoding();
+      if (enc != null && enc.getValue() != null && enc.getValue().toLowerCase().contains("gzip")) {
+        is = new GZIPInputStream(is);
+      }
+      tokener = new JSONTokener(new InputStreamReader(is, StandardCharsets.UTF_8));
+      char c = tokener.nextClean();
+      if (c != '[') {
+        throw new ApiException("Unexpected JSON result for query " + svcName + query + ": expected JSON array, got '" + c + "'!");
+      }
+      return true;
+    } catch (IOException | URISyntaxException | JSONException e) {
+      closeResponse(false);
+      throw new ApiException(e);
+    }
+  }
+
+  private void closeResponse(boolean consume) {
+    tokener = null;
+    if (response != null) {
+      if (consume) {
+        // consume trailing data so that the connection can be reused
+        EntityUtils.consumeQuietly(response.getEntity());
+      }
+      try {
+        response.close();
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "Error closing response: {0}", e.getMessage());
+      }
+      response = null;
+    }
+    if (pageResponse != null) {
+      pageResponse.complete();
+      pageResponse = null;
+    }
+  }
+
+  @Override
+  public void close() {
+    lastPage = true;
+    next = null;
+    closeResponse(false);
+  }
+}
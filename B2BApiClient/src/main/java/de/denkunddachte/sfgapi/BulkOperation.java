@@ -0,0 +1,372 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.sfgapi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.util.ApiConfig;
+import de.denkunddachte.util.ApiResponse;
+
+/**
+ * Runs create(), update() or delete() (or any other action) on a collection of API objects with bounded concurrency.
+ * Rate limiting and retries of single requests (I/O errors, HTTP 429/5xx) are done by the request layer
+ * ({@link de.denkunddachte.util.ApiResilience}, sfgapi.rateLimit, sfgapi.retries). Optionally, objects whose action
+ * still failed with HTTP 429 or 503 (server did not process the request) are retried with exponential backoff; actions
+ * that are not idempotent (CREATE) are not retried on HTTP 502/504, because the server may have processed the request.
+ * Defaults are read from {@link ApiConfig} (sfgapi.bulk.*).
+ *
+ * <pre>
+ * BulkOperation.Report&lt;Mailbox&gt; report = new BulkOperation&lt;Mailbox&gt;(Operation.CREATE).addAll(mailboxes).run();
+ * </pre>
+ *
+ * @param <T>
+ *          API object type
+ */
+public class BulkOperation<T extends ApiClient> {
+  private static final Logger LOGGER = Logger.getLogger(BulkOperation.class.getName());
+
+  public enum Operation {
+    CREATE, UPDATE, DELETE
+  }
+
+  @FunctionalInterface
+  public interface Action<T> {
+    boolean apply(T obj) throws ApiException;
+  }
+
+  private final String        name;
+  private final Action<T>     action;
+  private final boolean       idempotent;
+  private final List<T>       objects = new ArrayList<>();
+  private int                 concurrency;
+  private int                 retries;
+  private long                retryDelay;
+  private Consumer<Result<T>> listener;
+
+  public BulkOperation(Operation operation) {
+    this(operation.name(), getAction(operation), operation != Operation.CREATE);
+  }
+
+  public BulkOperation(String name, Action<T> action) {
+    this(name, action, false);
+  }
+
+  /**
+   * @param name
+   *          name of operation (for logging)
+   * @param action
+   *          action to run for each object
+   * @param idempotent
+   *          action can be repeated if the server may have processed it (HTTP 502/504)
+   */
+  public BulkOperation(String name, Action<T> action, boolean idempotent) {
+    this.name = name;
+    this.action = action;
+    this.idempotent = idempotent;
+    ApiConfig cfg = ApiClient.apicfg;
+    this.concurrency = cfg.getBulkConcurrency();
+    this.retries = cfg.getBulkRetries();
+    this.retryDelay = cfg.getBulkRetryDelay();
+  }
+
+  private static <T extends ApiClient> Action<T> getAction(Operation operation) {
+    switch (operation) {
+    case CREATE:
+      return ApiClient::create;
+    case UPDATE:
+      return ApiClient::update;
+    case DELETE:
+    default:
+      return ApiClient::delete;
+    }
+  }
+
+  public BulkOperation<T> add(T obj) {
+    objects.add(obj);
+    return this;
+  }
+
+  public BulkOperation<T> addAll(Collection<? extends T> objs) {
+    objects.addAll(objs);
+    return this;
+  }
+
+  public int size() {
+    return objects.size();
+  }
+
+  public boolean isEmpty() {
+    return objects.isEmpty();
+  }
+
+  /**
+   * @param concurrency
+   *          max. parallel requests (1: run sequentially in calling thread)
+   */
+  public BulkOperation<T> setConcurrency(int concurrency) {
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  /**
+   * @param retries
+   *          retries of objects that failed with HTTP 429/503 (in addition to the retries of the request layer)
+   */
+  public BulkOperation<T> setRetries(int retries) {
+    this.retries = retries;
+    return this;
+  }
+
+  /**
+   * @param retryDelay
+   *          delay before first retry in ms (doubled with each retry)
+   */
+  public BulkOperation<T> setRetryDelay(long retryDelay) {
+    this.retryDelay = retryDelay;
+    return this;
+  }
+
+  /**
+   * @param listener
+   *          called with the result of each object when it is completed (from worker threads)
+   */
+  public BulkOperation<T> onResult(Consumer<Result<T>> listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  /**
+   * Run the operation on all objects. Failures of single objects do not abort the run, they are reported in the returned
+   * report.
+   *
+   * @return report with results in order of the objects
+   * @throws ApiException
+   *           if interrupted
+   */
+  public Report<T> run() throws ApiException {
+    final long            start   = System.currentTimeMillis();
+    final List<Result<T>> results = new ArrayList<>(objects.size());
+    final int             threads = Math.max(1, Math.min(concurrency, objects.size()));
+    LOGGER.log(Level.FINE, "Start bulk {0} of {1} objects (concurrency={2}, retries={3}).", new Object[] { name, objects.size(), threads, retries });
+    ExecutorService executor = null;
+    try {
+      if (threads == 1) {
+        for (T obj : objects) {
+          results.add(execute(obj));
+        }
+      } else {
+        final AtomicInteger threadNum = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+          Thread t = new Thread(r, "api-bulk-" + threadNum.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+        List<Future<Result<T>>> futures = new ArrayList<>(objects.size());
+        for (T obj : objects) {
+          futures.add(executor.submit(() -> execute(obj)));
+        }
+        for (Future<Result<T>> f : futures) {
+          results.add(f.get());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiException("Bulk " + name + " interrupted!", e);
+    } catch (ExecutionException e) {
+      // execute() catches all exceptions, so this is an Error or bug
+      throw new ApiException("Bulk " + name + " failed: " + e.getCause(), e.getCause());
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+    Report<T> report = new Report<>(name, results, System.currentTimeMillis() - start);
+    LOGGER.log(Level.FINE, "{0}", report);
+    return report;
+  }
+
+  private Result<T> execute(T obj) throws InterruptedException {
+    final long start    = System.currentTimeMillis();
+    int        attempts = 0;
+    boolean    success  = false;
+    Exception  error    = null;
+    while (true) {
+      attempts++;
+      error = null;
+      ApiClient.clearApiError();
+      try {
+        success = action.apply(obj);
+      } catch (ApiException | RuntimeException e) {
+        success = false;
+        error = e;
+      }
+      // HTTP errors are thrown as ApiException: classify by the status of the last response; I/O errors and an open
+      // circuit breaker have no status and were already handled by the request layer
+      if (success || attempts > retries || !isRetryable(ApiClient.getLastResponse(), idempotent)) {
+        break;
+      }
+      long delay = retryDelay << Math.min(attempts - 1, 16);
+      delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+      LOGGER.log(Level.FINE, "Bulk {0}: retry {1} ({2}/{3}) in {4}ms: {5}",
+          new Object[] { name, obj.getId(), attempts, retries, delay, error != null ? error.getMessage() : ApiClient.getApiErrorMsg() });
+      TimeUnit.MILLISECONDS.sleep(delay);
+    }
+    ApiResponse response = obj.getResponse() != null ? obj.getResponse() : ApiClient.getLastResponse();
+    Result<T>   result   = new Result<>(obj, success, attempts, response, error, System.currentTimeMillis() - start);
+    if (!success) {
+      LOGGER.log(Level.FINE, "Bulk {0} failed for {1}: {2}", new Object[] { name, obj.getId(), result.getErrorMsg() });
+    }
+    if (listener != null) {
+      listener.accept(result);
+    }
+    return result;
+  }
+
+  // 429/503: request was not processed; 502/504: request may have been processed
+  static boolean isRetryable(ApiResponse r, boolean idempotent) {
+    if (r == null) {
+      return false;
+    }
+    switch (r.getHttpCode()) {
+    case 429:
+    case 503:
+      return true;
+    case 502:
+    case 504:
+      return idempotent;
+    default:
+      return false;
+    }
+  }
+
+  public static class Result<T> {
+    private final T           object;
+    private final boolean     success;
+    private final int         attempts;
+    private final ApiResponse response;
+    private final Exception   error;
+    private final long        elapsedMillis;
+
+    Result(T object, boolean success, int attempts, ApiResponse response, Exception error, long elapsedMillis) {
+      this.object = object;
+      this.success = success;
+      this.attempts = attempts;
+      this.response = response;
+      this.error = error;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public T getObject() {
+      return object;
+    }
+
+    public boolean isSuccess() {
+      return success;
+    }
+
+    public int getAttempts() {
+      return attempts;
+    }
+
+    public ApiResponse getResponse() {
+      return response;
+    }
+
+    public Exception getError() {
+      return error;
+    }
+
+    public String getErrorMsg() {
+      if (success) {
+        return null;
+      }
+      if (error != null) {
+        return error.getMessage();
+      }
+      return response != null ? response.getHttpCode() + "/" + response.getErrorMsg() : "unknown error";
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+      return "Result [object=" + object + ", success=" + success + ", attempts=" + attempts + (success ? "" : ", error=" + getErrorMsg()) + "]";
+    }
+  }
+
+  public static class Report<T> {
+    private final String          name;
+    private final List<Result<T>> results;
+    private final long            elapsedMillis;
+
+    Report(String name, List<Result<T>> results, long elapsedMillis) {
+      this.name = name;
+      this.results = Collections.unmodifiableList(results);
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<Result<T>> getResults() {
+      return results;
+    }
+
+    public List<Result<T>> getSucceeded() {
+      List<Result<T>> l = new ArrayList<>();
+      results.stream().filter(Result::isSuccess).forEach(l::add);
+      return l;
+    }
+
+    public List<Result<T>> getFailed() {
+      List<Result<T>> l = new ArrayList<>();
+      results.stream().filter(r -> !r.isSuccess()).forEach(l::add);
+      return l;
+    }
+
+    public boolean isSuccess() {
+      return results.stream().allMatch(Result::isSuccess);
+    }
+
+    public int getRetries() {
+      return results.stream().mapToInt(r -> r.getAttempts() - 1).sum();
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+      long ok = results.stream().filter(Result::isSuccess).count();
+      return String.format("Bulk %s: %d objects, %d succeeded, %d failed, %d retries, %.1fs.", name, results.size(), ok, results.size() - ok, getRetries(),
+          elapsedMillis / 1000d);
+    }
+  }
+}
@@ -25,22 +25,15 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.util.stream.Stream;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import de.denkunddachte.exception.ApiException;
 import de.denkunddachte.sfgapi.MailboxItem.Type;
@@ -386,13 +379,9 @@ public class Mailbox extends ApiClient {
         params.put("offset", 0);
         params.put("detail", "true");
         params.put("parentMailboxId", getMailboxId());
-        while (true) {
-          JSONArray jsonObjects = getJSONArray(get(MBXCONTENTS_SVC, params));
-          for (int i = 0; i < jsonObjects.length(); i++) {
-            contents.add(new MailboxItem(jsonObjects.getJSONObject(i)));
-          }
-          if (jsonObjects.length() < API_RANGESIZE)
-            break;
+        JSONArray jsonObjects = getAll(MBXCONTENTS_SVC, params);
+        for (int i = 0; i < jsonObjects.length(); i++) {
+          contents.add(new MailboxItem(jsonObjects.getJSONObject(i)));
         }
       } catch (JSONException | UnsupportedEncodingException e) {
         throw new ApiException(e);
@@ -486,39 +475,70 @@ public class Mailbox extends ApiClient {
     }
   }
 
+  /**
+   * Stream mailboxes matching filter. Mailboxes are read one by one from the (paged) REST API or WS API response instead
+   * of building the complete list in memory. The stream must be closed after use.
+   * 
+   * @param filter
+   *          mailbox path (wildcards allowed)
+   * @param caseSensitive
+   *          match path case sensitive
+   * @param includeFields
+   *          fields to return
+   * @return stream of mailboxes
+   * @throws ApiException
+   */
+  public static Stream<Mailbox> stream(String filter, boolean caseSensitive, String... includeFields) throws ApiException {
+    if (useWsApi(SVC_NAME)) {
+      return streamRowsFromWsApi(SVC_NAME, getWsApiParameter(filter, caseSensitive), Mailbox::fromWsApi);
+    }
+    Map<String, Object> params = new HashMap<>();
+    params.put("offset", 0);
+    params.put("includeFields", includeFields);
+    params.put(PATH, (filter != null ? filter.replace('*', '%') : null));
+    final String pathPattern = (caseSensitive && filter != null ? filter.replace('%', '*').replace("*", ".*") + ".*" : null);
+    return streamAll(SVC_NAME, params, json -> {
+      if (pathPattern != null && !json.getString(PATH).matches(pathPattern)) {
+        return null;
+      }
+      return new Mailbox(json);
+    });
+  }
+
+  public static Stream<Mailbox> stream(String filter, String... includeFields) throws ApiException {
+    return stream(filter, false, includeFields);
+  }
+
   private static List<Mailbox> findAllWithWSApi(String filter, boolean caseSensitive) throws ApiException {
-    List<Mailbox> result = new ArrayList<>();
+    return getRowsFromWsApi(SVC_NAME, getWsApiParameter(filter, caseSensitive), Mailbox::fromWsApi);
+  }
+
+  private static String getWsApiParameter(String filter, boolean caseSensitive) throws ApiException {
+    String param = "";
     try {
-      String param = "";
       if (filter != null) {
         param += "&searchFor=" + urlEncode(filter.replace('*', '%').replace('?', '_'));
       }
       if(caseSensitive) {
         param += "&casesensitive=1";
       }
-      Document xmlDoc = getXmlDocumentFromWsApi(SVC_NAME, param);
-      XPathFactory xPathFactory = XPathFactory.newInstance();
-      XPath xpath = xPathFactory.newXPath();
-      XPathExpression expr = xpath.compile("/result/row");
-      NodeList nl = (NodeList) expr.evaluate(xmlDoc, XPathConstants.NODESET);
-
-      for (int i = 0; i < nl.getLength(); i++) {
-        Node n = nl.item(i);
-        Mailbox mbx = new Mailbox((String) xpath.evaluate("./path", n, XPathConstants.STRING),
-            (String) xpath.evaluate("./description", n, XPathConstants.STRING), CreateParent.NO);
-        mbx.setGeneratedId((String) xpath.evaluate("./id", n, XPathConstants.STRING));
-        mbx.setMailboxId(Integer.parseInt(mbx.getId()));
-        mbx.setPermissionName((String) xpath.evaluate("./permission", n, XPathConstants.STRING));
-        mbx.setMailboxType((String) xpath.evaluate("./mailboxType", n, XPathConstants.STRING));
-        mbx.setUserNames((String) xpath.evaluate("./users", n, XPathConstants.STRING));
-        mbx.setGroupNames((String) xpath.evaluate("./groups", n, XPathConstants.STRING));
-        LOGGER.log(Level.FINER, "Got mailbox: {0}", mbx);
-        result.add(mbx);
-      }
-    } catch (UnsupportedEncodingException | XPathExpressionException e) {
+    } catch (UnsupportedEncodingException e) {
       throw new ApiException(e);
     }
-    return result;
+    return param;
+  }
+
+  // map /result/row element of WS API response (package-private for benchmarks)
+  static Mailbox fromWsApi(WsApiRowReader.Row row) {
+    Mailbox mbx = new Mailbox(row.get("path"), row.get("description"), CreateParent.NO);
+    mbx.setGeneratedId(row.get("id"));
+    mbx.setMailboxId(Integer.parseInt(mbx.getId()));
+    mbx.setPermissionName(row.get("permission"));
+    mbx.setMailboxType(row.get("mailboxType"));
+    mbx.setUserNames(row.get("users"));
+    mbx.setGroupNames(row.get("groups"));
+    LOGGER.log(Level.FINER, "Got mailbox: {0}", mbx);
+    return mbx;
   }
 
   private static List<Mailbox> findAllWithRESTApi(String filter, boolean caseSensitive, String... includeFields) throws ApiException {
@@ -528,18 +548,14 @@ public class Mailbox extends ApiClient {
       params.put("offset", 0);
       params.put("includeFields", includeFields);
       params.put(PATH, (filter != null ? filter.replace('*', '%') : null));
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          if (caseSensitive) {
-            if (!jsonObjects.getJSONObject(i).getString(PATH).matches(filter.replace('%', '*').replace("*", ".*") + ".*")) {
-              continue;
-            }
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        if (caseSensitive) {
+          if (!jsonObjects.getJSONObject(i).getString(PATH).matches(filter.replace('%', '*').replace("*", ".*") + ".*")) {
+            continue;
           }
-          result.add(new Mailbox(jsonObjects.getJSONObject(i)));
         }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
+        result.add(new Mailbox(jsonObjects.getJSONObject(i)));
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
@@ -547,6 +563,14 @@ public class Mailbox extends ApiClient {
     return result;
   }
 
+  public static CompletableFuture<Mailbox> findAsync(String path) {
+    return async(() -> find(path));
+  }
+
+  public static CompletableFuture<List<Mailbox>> findAllAsync(String filter, String... includeFields) {
+    return async(() -> findAll(filter, includeFields));
+  }
+
   public static Mailbox find(String path) throws ApiException {
     return find(path, ID_MATCH_CASE_SENSITVE);
   }
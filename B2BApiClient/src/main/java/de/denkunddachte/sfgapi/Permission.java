@@ -123,13 +123,9 @@ public class Permission extends ApiClient {
 			params.put("offset", 0);
 			params.put("includeFields", includeFields);
 			params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
-			while (true) {
-				JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-				for (int i = 0; i < jsonObjects.length(); i++) {
-					result.add(new Permission(jsonObjects.getJSONObject(i)));
-				}
-				if (jsonObjects.length() < API_RANGESIZE)
-					break;
+			JSONArray jsonObjects = getAll(SVC_NAME, params);
+			for (int i = 0; i < jsonObjects.length(); i++) {
+				result.add(new Permission(jsonObjects.getJSONObject(i)));
 			}
 		} catch (JSONException | UnsupportedEncodingException e) {
 			throw new ApiException(e);
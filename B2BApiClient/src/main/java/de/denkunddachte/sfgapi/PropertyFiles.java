@@ -417,7 +417,7 @@ public class PropertyFiles extends ApiClient {
     }
     final List<String> props = new ArrayList<>();
     try {
-      JSONArray json = getJSONArray(getJSONFromWsApi(WFD_WS_API, "&prefix=" + urlEncode(prefix), true));
+      JSONArray json = getJSONArrayFromWsApi(WFD_WS_API, "&prefix=" + urlEncode(prefix));
       if (ApiClient.getApiReturnCode() != 200) {
         throw new ApiException("WS API returned " + ApiClient.getApiReturnCode() + "/" + ApiClient.getApiErrorMsg());
       }
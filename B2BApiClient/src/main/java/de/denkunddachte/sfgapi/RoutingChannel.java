@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
 import org.json.JSONArray;
@@ -211,13 +212,9 @@ public class RoutingChannel extends ApiClient {
         params.put("searchByProducer", (producer != null ? producer.replace('*', '%') : null));
       if (consumer != null)
         params.put("searchByConsumer", (consumer != null ? consumer.replace('*', '%') : null));
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          result.add(new RoutingChannel(jsonObjects.getJSONObject(i)));
-        }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        result.add(new RoutingChannel(jsonObjects.getJSONObject(i)));
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
@@ -226,6 +223,14 @@ public class RoutingChannel extends ApiClient {
   }
 
   // find by key
+  public static CompletableFuture<RoutingChannel> findAsync(String routingChannelKey) {
+    return async(() -> find(routingChannelKey));
+  }
+
+  public static CompletableFuture<List<RoutingChannel>> findAllAsync(String templateName, String producer, String consumer, String... includeFields) {
+    return async(() -> findAll(templateName, producer, consumer, includeFields));
+  }
+
   public static RoutingChannel find(String routingChannelKey) throws ApiException {
     RoutingChannel result = null;
     JSONObject     json   = findByKey(SVC_NAME, routingChannelKey);
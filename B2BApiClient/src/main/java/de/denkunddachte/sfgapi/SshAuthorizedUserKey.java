@@ -24,18 +24,9 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import de.denkunddachte.exception.ApiException;
 import de.denkunddachte.ft.SshKey;
@@ -91,31 +82,22 @@ public class SshAuthorizedUserKey extends AbstractSfgKey {
   }
 
   private static List<SshAuthorizedUserKey> findAllWithWSApi(String filter, String... includeFields) throws ApiException {
-    List<SshAuthorizedUserKey> result = new ArrayList<SshAuthorizedUserKey>();
     try {
-      Document        xmlDoc       = getXmlDocumentFromWsApi(SVC_NAME, (filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null));
-      XPathFactory    xPathFactory = XPathFactory.newInstance();
-      XPath           xpath        = xPathFactory.newXPath();
-      XPathExpression expr         = xpath.compile("/result/row");
-      NodeList        nl           = (NodeList) expr.evaluate(xmlDoc, XPathConstants.NODESET);
-
-      for (int i = 0; i < nl.getLength(); i++) {
-        Node n = nl.item(i);
+      return getRowsFromWsApi(SVC_NAME, (filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null), row -> {
         try {
-          SshAuthorizedUserKey uk = new SshAuthorizedUserKey((String) xpath.evaluate("./keyName", n, XPathConstants.STRING),
-              (String) xpath.evaluate("./keyData", n, XPathConstants.STRING), true);
+          SshAuthorizedUserKey uk = new SshAuthorizedUserKey(row.get("keyName"), row.get("keyData"), true);
           uk.setGeneratedId(uk.getId());
           LOGGER.finer("Got SshAuthorizedUserKey: " + uk);
-          result.add(uk);
+          return uk;
         } catch (InvalidKeyException e) {
-          final String keyName = (String) xpath.evaluate("./keyName", n, XPathConstants.STRING);
+          final String keyName = row.get("keyName");
           LOGGER.log(Level.WARNING, e, () -> "Found invalid SSH key " + keyName + ": " + e.getMessage());
+          return null;
         }
-      }
-    } catch (UnsupportedEncodingException | XPathExpressionException e) {
+      });
+    } catch (UnsupportedEncodingException e) {
       throw new ApiException(e);
     }
-    return result;
   }
 
   // static lookup methods:
@@ -126,18 +108,14 @@ public class SshAuthorizedUserKey extends AbstractSfgKey {
       params.put("offset", 0);
       params.put("includeFields", includeFields);
       params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          try {
-            result.add(new SshAuthorizedUserKey(jsonObjects.getJSONObject(i)));
-          } catch (ApiException e) {
-            final String keyName = jsonObjects.getJSONObject(i).optString("keyName");
-            LOGGER.log(Level.WARNING, e, () -> "Found invalid SSH key " + keyName + ": " + e.getMessage());
-          }
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        try {
+          result.add(new SshAuthorizedUserKey(jsonObjects.getJSONObject(i)));
+        } catch (ApiException e) {
+          final String keyName = jsonObjects.getJSONObject(i).optString("keyName");
+          LOGGER.log(Level.WARNING, e, () -> "Found invalid SSH key " + keyName + ": " + e.getMessage());
         }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
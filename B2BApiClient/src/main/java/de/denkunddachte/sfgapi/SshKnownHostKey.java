@@ -27,18 +27,9 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import com.jcraft.jsch.HostKey;
 import com.jcraft.jsch.JSch;
@@ -149,26 +140,20 @@ public class SshKnownHostKey extends AbstractSfgKey {
   }
 
   private static List<SshKnownHostKey> findAllWithWSApi(String filter) throws ApiException {
-    List<SshKnownHostKey> result = new ArrayList<>();
     try {
-      Document        xmlDoc       = getXmlDocumentFromWsApi(SVC_NAME, (filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null));
-      XPathFactory    xPathFactory = XPathFactory.newInstance();
-      XPath           xpath        = xPathFactory.newXPath();
-      XPathExpression expr         = xpath.compile("/result/row");
-      NodeList        nl           = (NodeList) expr.evaluate(xmlDoc, XPathConstants.NODESET);
-
-      for (int i = 0; i < nl.getLength(); i++) {
-        Node            n  = nl.item(i);
-        SshKnownHostKey uk = new SshKnownHostKey((String) xpath.evaluate("./keyName", n, XPathConstants.STRING),
-            (String) xpath.evaluate("./keyData", n, XPathConstants.STRING), true);
-        uk.setGeneratedId(uk.getId());
-        LOGGER.log(Level.FINER, "Got SshKnownHostKey: {0}", uk);
-        result.add(uk);
-      }
-    } catch (UnsupportedEncodingException | XPathExpressionException | InvalidKeyException e) {
+      return getRowsFromWsApi(SVC_NAME, (filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null), row -> {
+        try {
+          SshKnownHostKey uk = new SshKnownHostKey(row.get("keyName"), row.get("keyData"), true);
+          uk.setGeneratedId(uk.getId());
+          LOGGER.log(Level.FINER, "Got SshKnownHostKey: {0}", uk);
+          return uk;
+        } catch (InvalidKeyException e) {
+          throw new ApiException(e);
+        }
+      });
+    } catch (UnsupportedEncodingException e) {
       throw new ApiException(e);
     }
-    return result;
   }
 
   // static lookup methods:
@@ -179,13 +164,9 @@ public class SshKnownHostKey extends AbstractSfgKey {
       params.put("offset", 0);
       params.put("includeFields", includeFields);
       params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          result.add(new SshKnownHostKey(jsonObjects.getJSONObject(i)));
-        }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        result.add(new SshKnownHostKey(jsonObjects.getJSONObject(i)));
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
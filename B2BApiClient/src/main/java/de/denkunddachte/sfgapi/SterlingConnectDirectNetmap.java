@@ -322,13 +322,9 @@ public class SterlingConnectDirectNetmap extends ApiClient implements CDNetMap {
       params.put("offset", 0);
       params.put("includeFields", includeFields);
       params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          result.add(new SterlingConnectDirectNetmap(jsonObjects.getJSONObject(i)));
-        }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        result.add(new SterlingConnectDirectNetmap(jsonObjects.getJSONObject(i)));
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
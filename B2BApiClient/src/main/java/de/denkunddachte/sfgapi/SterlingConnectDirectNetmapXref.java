@@ -141,13 +141,9 @@ public class SterlingConnectDirectNetmapXref extends ApiClient {
       params.put("includeFields", includeFields);
       if ( netmapName != null )
         params.put("searchFor", netmapName);
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          result.add(new SterlingConnectDirectNetmapXref(jsonObjects.getJSONObject(i)));
-        }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        result.add(new SterlingConnectDirectNetmapXref(jsonObjects.getJSONObject(i)));
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
@@ -355,13 +355,9 @@ public class SterlingConnectDirectNode extends ApiClient {
         params.put("searchByNodeName", nodeName.replace('*', '%'));
       if (netmapName != null)
         params.put("searchByNetMap", netmapName.replace('*', '%'));
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          result.add(new SterlingConnectDirectNode(jsonObjects.getJSONObject(i)));
-        }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        result.add(new SterlingConnectDirectNode(jsonObjects.getJSONObject(i)));
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
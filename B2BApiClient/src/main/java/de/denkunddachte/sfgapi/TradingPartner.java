@@ -20,8 +20,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -714,6 +716,14 @@ public class TradingPartner extends ApiClient {
     return findAll(null);
   }
 
+  public static Stream<TradingPartner> stream(String globPattern, String... includeFields) {
+    Map<String, Object> params = new HashMap<>();
+    params.put("offset", 0);
+    params.put("includeFields", includeFields);
+    params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
+    return streamAll(SVC_NAME, params, TradingPartner::new);
+  }
+
   public static List<TradingPartner> findAll(String globPattern, String... includeFields) throws ApiException {
     List<TradingPartner> result = new ArrayList<>();
     try {
@@ -721,13 +731,9 @@ public class TradingPartner extends ApiClient {
       params.put("offset", 0);
       params.put("includeFields", includeFields);
       params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          result.add(new TradingPartner(jsonObjects.getJSONObject(i)));
-        }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        result.add(new TradingPartner(jsonObjects.getJSONObject(i)));
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
@@ -736,6 +742,14 @@ public class TradingPartner extends ApiClient {
   }
 
   // find by key
+  public static CompletableFuture<TradingPartner> findAsync(String partner) {
+    return async(() -> find(partner));
+  }
+
+  public static CompletableFuture<List<TradingPartner>> findAllAsync(String globPattern, String... includeFields) {
+    return async(() -> findAll(globPattern, includeFields));
+  }
+
   public static TradingPartner find(String partner) throws ApiException {
     TradingPartner result = null;
     JSONObject json = findByKey(SVC_NAME, partner);
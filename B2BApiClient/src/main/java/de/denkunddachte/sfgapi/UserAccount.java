@@ -22,21 +22,14 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import java.util.stream.Stream;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import de.denkunddachte.enums.AuthType;
 import de.denkunddachte.enums.UserLanguage;
@@ -442,31 +435,50 @@ public class UserAccount extends ApiClient {
     }
   }
 
+  /**
+   * Stream user accounts matching filter. Users are read one by one from the (paged) REST API or WS API response instead
+   * of building the complete list in memory. The stream must be closed after use.
+   * 
+   * @param filter
+   *          user id (wildcards allowed)
+   * @param includeFields
+   *          fields to return
+   * @return stream of user accounts
+   * @throws ApiException
+   */
+  public static Stream<UserAccount> stream(String filter, String... includeFields) throws ApiException {
+    if (useWsApi(SVC_NAME)) {
+      return streamRowsFromWsApi(SVC_NAME, getWsApiParameter(filter), UserAccount::fromWsApi);
+    }
+    Map<String, Object> params = new HashMap<>();
+    params.put("offset", 0);
+    params.put("includeFields", includeFields);
+    params.put("searchFor", (filter != null ? filter.replace('*', '%') : null));
+    return streamAll(SVC_NAME, params, UserAccount::new);
+  }
+
   private static List<UserAccount> findAllWithWSApi(String filter) throws ApiException {
-    List<UserAccount> result = new ArrayList<>();
+    return getRowsFromWsApi(SVC_NAME, getWsApiParameter(filter), UserAccount::fromWsApi);
+  }
+
+  private static String getWsApiParameter(String filter) throws ApiException {
     try {
-      Document xmlDoc = getXmlDocumentFromWsApi(SVC_NAME, (filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null));
-      XPathFactory xPathFactory = XPathFactory.newInstance();
-      XPath xpath = xPathFactory.newXPath();
-      XPathExpression expr = xpath.compile("/result/row");
-      NodeList nl = (NodeList) expr.evaluate(xmlDoc, XPathConstants.NODESET);
-
-      for (int i = 0; i < nl.getLength(); i++) {
-        Node n = nl.item(i);
-        UserAccount ua = new UserAccount((String) xpath.evaluate("./id", n, XPathConstants.STRING),
-            (String) xpath.evaluate("./surname", n, XPathConstants.STRING), (String) xpath.evaluate("./givenName", n, XPathConstants.STRING), AuthType.Local);
-        ua.setGeneratedId(ua.getId());
-        ua.setEmail((String) xpath.evaluate("./email", n, XPathConstants.STRING));
-        for (String groupName : ((String) xpath.evaluate("./grouplist", n, XPathConstants.STRING)).split("\\s*,\\s*")) {
-          ua.assignedGroups.put(groupName, null);
-        }
-        LOGGER.log(Level.FINER, "Got user: {0}", ua);
-        result.add(ua);
-      }
-    } catch (UnsupportedEncodingException | XPathExpressionException e) {
+      return filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null;
+    } catch (UnsupportedEncodingException e) {
       throw new ApiException(e);
     }
-    return result;
+  }
+
+  // map /result/row element of WS API response
+  private static UserAccount fromWsApi(WsApiRowReader.Row row) throws ApiException {
+    UserAccount ua = new UserAccount(row.get("id"), row.get("surname"), row.get("givenName"), AuthType.Local);
+    ua.setGeneratedId(ua.getId());
+    ua.setEmail(row.get("email"));
+    for (String groupName : row.get("grouplist").split("\\s*,\\s*")) {
+      ua.assignedGroups.put(groupName, null);
+    }
+    LOGGER.log(Level.FINER, "Got user: {0}", ua);
+    return ua;
   }
 
   private static List<UserAccount> findAllWithRESTApi(String globPattern, String... includeFields) throws ApiException {
@@ -476,13 +488,9 @@ public class UserAccount extends ApiClient {
       params.put("offset", 0);
       params.put("includeFields", includeFields);
       params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          result.add(new UserAccount(jsonObjects.getJSONObject(i)));
-        }
-        if (jsonObjects.length() < API_RANGESIZE)
-          break;
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        result.add(new UserAccount(jsonObjects.getJSONObject(i)));
       }
     } catch (JSONException | UnsupportedEncodingException e) {
       throw new ApiException(e);
@@ -491,6 +499,14 @@ public class UserAccount extends ApiClient {
   }
 
   // find by key
+  public static CompletableFuture<UserAccount> findAsync(String userId) {
+    return async(() -> find(userId));
+  }
+
+  public static CompletableFuture<List<UserAccount>> findAllAsync(String filter, String... includeFields) {
+    return async(() -> findAll(filter, includeFields));
+  }
+
   public static UserAccount find(String userId) throws ApiException {
     UserAccount result = null;
     JSONObject json = findByKey(SVC_NAME, userId);
@@ -23,18 +23,9 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import de.denkunddachte.exception.ApiException;
 
@@ -123,26 +114,16 @@ public class UserVirtualRoot extends ApiClient {
 	}
 
 	private static List<UserVirtualRoot> findAllWithWSApi(String filter, String... includeFields) throws ApiException {
-		List<UserVirtualRoot> result = new ArrayList<>();
 		try {
-			Document xmlDoc = getXmlDocumentFromWsApi(SVC_NAME,
-					(filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null));
-			XPathFactory xPathFactory = XPathFactory.newInstance();
-			XPath xpath = xPathFactory.newXPath();
-			XPathExpression expr = xpath.compile("/result/row");
-			NodeList nl = (NodeList) expr.evaluate(xmlDoc, XPathConstants.NODESET);
-
-			for (int i = 0; i < nl.getLength(); i++) {
-				Node n = nl.item(i);
-				UserVirtualRoot vr = new UserVirtualRoot((String) xpath.evaluate("./userName", n, XPathConstants.STRING), (String) xpath.evaluate("./mailboxPath", n, XPathConstants.STRING));
+			return getRowsFromWsApi(SVC_NAME, (filter != null ? "&searchFor=" + urlEncode(filter.replace('*', '%')) : null), row -> {
+				UserVirtualRoot vr = new UserVirtualRoot(row.get("userName"), row.get("mailboxPath"));
 				vr.setGeneratedId(vr.getId());
 				LOGGER.log(Level.FINER, "Got UserVirtualRoot: {0}", vr);
-				result.add(vr);
-			}
-		} catch (UnsupportedEncodingException | XPathExpressionException e) {
+				return vr;
+			});
+		} catch (UnsupportedEncodingException e) {
 			throw new ApiException(e);
 		}
-		return result;
 	}
 
 	private static List<UserVirtualRoot> findAllWithRESTApi(String globPattern, String... includeFields) throws ApiException {
@@ -152,13 +133,9 @@ public class UserVirtualRoot extends ApiClient {
 			params.put("offset", 0);
 			params.put("includeFields", includeFields);
 			params.put("userName", (globPattern != null ? globPattern.replace('*', '%') : null));
-			while (true) {
-				JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-				for (int i = 0; i < jsonObjects.length(); i++) {
-					result.add(new UserVirtualRoot(jsonObjects.getJSONObject(i)));
-				}
-				if (jsonObjects.length() < API_RANGESIZE)
-					break;
+			JSONArray jsonObjects = getAll(SVC_NAME, params);
+			for (int i = 0; i < jsonObjects.length(); i++) {
+				result.add(new UserVirtualRoot(jsonObjects.getJSONObject(i)));
 			}
 		} catch (JSONException | UnsupportedEncodingException e) {
 			throw new ApiException(e);
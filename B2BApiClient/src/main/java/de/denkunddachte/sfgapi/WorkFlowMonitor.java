@@ -15,23 +15,42 @@
 */
 package de.denkunddachte.sfgapi;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.input.CharSequenceInputStream;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -40,6 +59,10 @@ import de.denkunddachte.enums.ExecState;
 import de.denkunddachte.enums.PersistenceLevel;
 import de.denkunddachte.enums.ReportingLevel;
 import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
+import de.denkunddachte.util.ApiStats;
+import de.denkunddachte.util.ProcessDataStore;
+import de.denkunddachte.util.XmlFormatter;
 
 /**
  * Template for new API 
@@ -50,6 +73,13 @@ public class WorkFlowMonitor extends ApiClient {
   private static final Logger       LOGGER             = Logger.getLogger(WorkFlowMonitor.class.getName());
   protected static final String     SVC_NAME           = "workflowmonitors";
   protected static final String     PD_WS_API           = "processdata";
+  protected static final String     STEPS_WS_API        = "steps";
+  // WFC_IDs per processdata request
+  private static final int          PD_PREFETCH_SIZE    = 25;
+  private static final int          DESERIALIZE_BUFSIZE = 64 * 1024;
+  // classes of serialized ProcessData/status report
+  private static final Set<String>  DESERIALIZE_ALLOWED = new HashSet<>(Arrays.asList(Hashtable.class.getName(), String.class.getName(),
+      Number.class.getName(), Integer.class.getName(), Long.class.getName(), Boolean.class.getName()));
   
 
   // JSON fields
@@ -367,59 +397,179 @@ public class WorkFlowMonitor extends ApiClient {
     getStepData();
 
     if (stepData.containsKey(PROCESS_DATA) && !stepData.containsKey(FMT_PD)) {
-      stepData.put(PROCESS_DATA, xmlToString(parseXml(stepData.get(PROCESS_DATA)), 2));
+      stepData.put(PROCESS_DATA, XmlFormatter.format(stepData.get(PROCESS_DATA), 2));
       stepData.put(FMT_PD, "0");
     }
     return stepData.get(PROCESS_DATA);
   }
 
+  public boolean hasProcessData() throws ApiException {
+    getStepData();
+    return stepData.containsKey(PROCESS_DATA);
+  }
+
+  /**
+   * Write formatted ProcessData to <code>out</code>. Other than {@link #getProcessData()}, the formatted document is not
+   * kept in memory, so this should be used for large ProcessData.
+   * 
+   * @param out
+   *          output (flushed, not closed)
+   * @return false if step has no ProcessData
+   * @throws ApiException
+   */
+  public boolean writeProcessData(Writer out) throws ApiException {
+    getStepData();
+    String pd = stepData.get(PROCESS_DATA);
+    if (pd == null) {
+      return false;
+    }
+    try {
+      if (stepData.containsKey(FMT_PD)) {
+        out.write(pd);
+        out.flush();
+      } else {
+        XmlFormatter.format(new StringReader(pd), out, 2);
+      }
+    } catch (IOException e) {
+      throw new ApiException(e);
+    }
+    return true;
+  }
+
   private void getStepData() throws ApiException {
-    if (this.stepData == null) {
+    if (this.stepData == null && !loadStoredStepData()) {
       if (!useWsApi(PD_WS_API)) {
         throw new ApiException("The " + PD_WS_API + " API is not implemented or not configured in ApiConfig!");
       }
       try {
-        JSONObject json = getJSON(getJSONFromWsApi(PD_WS_API, "&wfcid=" + wfcId, false));
-        this.stepData = deserializeObject(json.getString(PROCESS_DATA));
-        this.statusRptData = deserializeObject(json.optString("STATUS_RPT"));
+        readStepData(getJSONObjectFromWsApi(PD_WS_API, "&wfcid=" + wfcId));
       } catch (JSONException e) {
         throw new ApiException(e);
       }
     }
-    if (this.stepData == null) {
-      this.stepData = new Hashtable<>();
+  }
+
+  private void readStepData(JSONObject json) throws ApiException {
+    Hashtable<String, String> pd = deserializeObject(json.getString(PROCESS_DATA));
+    this.statusRptData = deserializeObject(json.optString("STATUS_RPT"));
+    this.stepData = (pd == null ? new Hashtable<>() : pd);
+    ProcessDataStore store = apicfg.getProcessDataStore();
+    if (store != null && (pd != null || statusRptData != null)) {
+      store.put(wfcId, pd, statusRptData);
+    }
+  }
+
+  // read ProcessData/status report from local store (sfgapi.pdstore.dir)
+  private boolean loadStoredStepData() {
+    ProcessDataStore store = apicfg.getProcessDataStore();
+    if (store == null) {
+      return false;
+    }
+    ProcessDataStore.Entry e = store.get(wfcId);
+    if (e == null) {
+      return false;
+    }
+    this.statusRptData = e.getStatusReport();
+    this.stepData = (e.getProcessData() == null ? new Hashtable<>() : e.getProcessData());
+    ApiStats.getInstance().recordCacheHit(ApiStats.SFGAPI, PD_WS_API, "GET");
+    return true;
+  }
+
+  /**
+   * Load ProcessData and status reports of several steps. WFC_IDs are sent in chunks of {@value #PD_PREFETCH_SIZE} per
+   * processdata request (DD_API_WS &gt;= 0.5.3), requests and deserialization of the results run in parallel on the async
+   * executor. Steps found in the local ProcessData store are not requested. Steps that could not be prefetched load their
+   * ProcessData with a single request when accessed.
+   * 
+   * @param steps
+   *          workflow steps
+   * @throws ApiException
+   */
+  public static void prefetchProcessData(Collection<WorkFlowMonitor> steps) throws ApiException {
+    if (!useWsApi(PD_WS_API)) {
+      throw new ApiException("The " + PD_WS_API + " API is not implemented or not configured in ApiConfig!");
+    }
+    List<WorkFlowMonitor>         todo    = steps.stream().filter(s -> s != null && s.stepData == null && s.wfcId != null && !s.wfcId.isEmpty())
+        .distinct().filter(s -> !s.loadStoredStepData()).collect(Collectors.toList());
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 0; i < todo.size(); i += PD_PREFETCH_SIZE) {
+      final Map<String, WorkFlowMonitor> chunk = new LinkedHashMap<>();
+      todo.subList(i, Math.min(i + PD_PREFETCH_SIZE, todo.size())).forEach(s -> chunk.put(s.wfcId, s));
+      futures.add(async(() -> getJSONArrayFromWsApi(PD_WS_API, "&wfcids=" + String.join(",", chunk.keySet())))
+          .thenCompose(rows -> readStepData(chunk, rows)));
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      // remaining steps are loaded on access
+      LOGGER.log(Level.WARNING, "Could not prefetch ProcessData: {0}", e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+    }
+    LOGGER.log(Level.FINER, "Prefetched ProcessData for {0} steps in {1} requests.", new Object[] { todo.size(), futures.size() });
+  }
+
+  private static CompletableFuture<Void> readStepData(Map<String, WorkFlowMonitor> chunk, JSONArray rows) {
+    if (rows.length() == 0) {
+      // DD_API_WS < 0.5.3 does not support wfcids
+      return CompletableFuture.completedFuture(null);
+    }
+    List<CompletableFuture<Object>> futures = new ArrayList<>();
+    Map<String, WorkFlowMonitor>    pending = new HashMap<>(chunk);
+    for (int i = 0; i < rows.length(); i++) {
+      final JSONObject      json = rows.getJSONObject(i);
+      final WorkFlowMonitor step = pending.remove(json.optString("WFC_ID"));
+      if (step != null) {
+        futures.add(async(() -> {
+          step.readStepData(json);
+          return null;
+        }));
+      }
     }
+    // no ProcessData stored for remaining steps
+    pending.values().forEach(s -> s.stepData = new Hashtable<>());
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
   }
 
+  /*
+   * Decode Base64 -> (GZIP) -> serialized Hashtable while streaming, without intermediate byte arrays. Only classes in
+   * DESERIALIZE_ALLOWED can be deserialized.
+   */
   @SuppressWarnings("unchecked")
   private Hashtable<String, String> deserializeObject(String base64Data) throws ApiException {
     if (isNullOrEmpty(base64Data)) {
       return null;
     }
-    final ByteArrayOutputStream os = new ByteArrayOutputStream();
     Object o = null;
-    try {
-      if (base64Data.startsWith("H4s")) {
-        byte[] buf = new byte[8096];
-        try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(base64Data)))) {
-          int i;
-          while ((i = gis.read(buf)) != -1) {
-            os.write(buf, 0, i);
-          }
-        }
-      } else {
-        os.write(Base64.getDecoder().decode(base64Data.getBytes()));
-      }
-      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(os.toByteArray()))) {
-        o = ois.readObject();
-      }
+    try (InputStream b64 = Base64.getDecoder().wrap(new CharSequenceInputStream(base64Data, StandardCharsets.US_ASCII, DESERIALIZE_BUFSIZE));
+        InputStream is = new BufferedInputStream(base64Data.startsWith("H4s") ? new GZIPInputStream(b64, DESERIALIZE_BUFSIZE) : b64, DESERIALIZE_BUFSIZE);
+        ObjectInputStream ois = new AllowListObjectInputStream(is)) {
+      o = ois.readObject();
     } catch (IOException | ClassNotFoundException e) {
       throw new ApiException(e);
     }
     if (o instanceof Hashtable<?, ?>) {
       return (Hashtable<String, String>) o;
     } else {
-      throw new ApiException("Unexpected object type: " + o.getClass().getName() + "! Expect Hashtable<?,?>.");
+      throw new ApiException("Unexpected object type: " + (o == null ? "null" : o.getClass().getName()) + "! Expect Hashtable<?,?>.");
+    }
+  }
+
+  // ObjectInputFilter requires Java 9, so check classes in resolveClass()
+  private static final class AllowListObjectInputStream extends ObjectInputStream {
+    private AllowListObjectInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      if (!DESERIALIZE_ALLOWED.contains(desc.getName())) {
+        throw new InvalidClassException(desc.getName(), "Class not allowed in ProcessData");
+      }
+      return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+      throw new InvalidClassException("Proxy classes not allowed in ProcessData");
     }
   }
 
@@ -458,6 +608,73 @@ public class WorkFlowMonitor extends ApiClient {
     return result;
   }
 
+  /**
+   * Stream steps of workflow. Steps are read one by one from the API response instead of building the complete list in memory
+   * (helpful with "Full" details of large workflows). The stream must be closed after use.
+   * 
+   * @param workflowId
+   *          workflow id
+   * @param withDetails
+   *          get all step fields
+   * @return stream of steps
+   */
+  public static Stream<WorkFlowMonitor> stream(Long workflowId, boolean withDetails) {
+    Map<String, Object> params = new HashMap<>();
+    params.put("offset", 0);
+    params.put("fieldList", (withDetails ? "Full" : "Brief"));
+    params.put(WORKFLOW_ID, String.valueOf(workflowId));
+    // workflowmonitors returns all steps with the first range
+    return streamAll(SVC_NAME, params, false, WorkFlowMonitor::new);
+  }
+
+  /**
+   * Get steps <code>fromStepId</code> to <code>toStepId</code> of a workflow (see
+   * {@link #stream(long, int, int, boolean)}).
+   * 
+   * @param workflowId
+   *          workflow id
+   * @param fromStepId
+   *          first step
+   * @param toStepId
+   *          last step
+   * @return steps ordered by step id
+   * @throws ApiException
+   */
+  public static List<WorkFlowMonitor> find(long workflowId, int fromStepId, int toStepId) throws ApiException {
+    try (Stream<WorkFlowMonitor> steps = stream(workflowId, fromStepId, toStepId, false)) {
+      return steps.collect(Collectors.toList());
+    } catch (UncheckedApiException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Stream a range of steps of a workflow ordered by step id. If the WS API "steps" is configured (DD_API_WS &gt;= 0.5.4),
+   * only the requested steps are read from the database, page by page with sfgapi.wsapi.pageSize steps per request.
+   * Otherwise, all steps are streamed from the workflowmonitors REST API and filtered. Steps of child workflows are not
+   * included. The stream must be closed after use, API errors are thrown as {@link UncheckedApiException}.
+   * 
+   * @param workflowId
+   *          workflow id
+   * @param fromStepId
+   *          first step
+   * @param toStepId
+   *          last step
+   * @param onlyFailed
+   *          only steps with basic status &gt; 0
+   * @return stream of steps
+   */
+  public static Stream<WorkFlowMonitor> stream(long workflowId, int fromStepId, int toStepId, boolean onlyFailed) {
+    if (useWsApi(STEPS_WS_API)) {
+      String param = "&workflowid=" + workflowId + "&minstep=" + Math.max(0, fromStepId) + "&maxstep=" + Math.max(0, toStepId)
+          + (onlyFailed ? "&failed=1" : "");
+      Iterator<WorkFlowMonitor> it = new WsApiPageIterator<>(STEPS_WS_API, param, STEP_ID, apicfg.getWsApiPageSize(), true, WorkFlowMonitor::new);
+      return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+    return stream(workflowId, true).filter(s -> s.getWorkFlowId() == workflowId && s.getStepId() >= fromStepId && s.getStepId() <= toStepId
+        && (!onlyFailed || s.getBasicStatus() > 0));
+  }
+
   public static WorkFlowMonitor find(String stepId) throws ApiException {
     WorkFlowMonitor result = null;
     JSONObject json = findByKey(SVC_NAME, stepId);
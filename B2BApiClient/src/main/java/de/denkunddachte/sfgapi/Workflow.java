@@ -21,14 +21,22 @@ import java.net.URISyntaxException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
@@ -38,6 +46,7 @@ import org.json.JSONObject;
 
 import de.denkunddachte.enums.ExecState;
 import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
 
 /**
  * Template for new API 
@@ -45,11 +54,14 @@ import de.denkunddachte.exception.ApiException;
  *
  */
 public class Workflow extends ApiClient {
-  private static final Logger                     LOGGER      = Logger.getLogger(Workflow.class.getName());
-  protected static final String                   SVC_NAME    = "workflowmonitors";
-  protected static final String                   WS_API_NAME = "workflows";
+  private static final Logger                     LOGGER            = Logger.getLogger(Workflow.class.getName());
+  protected static final String                   SVC_NAME          = "workflowmonitors";
+  protected static final String                   WS_API_NAME       = "workflows";
+  private static final int                        WFIDS_PER_REQUEST = 100;
+  // max. loaded steps of lazy workflows (in step windows)
+  private static final int                        LAZY_WINDOWS      = 4;
 
-  protected static final String                   ID_PROPERTY = WorkFlowMonitor.WORKFLOW_ID;
+  protected static final String                   ID_PROPERTY       = WorkFlowMonitor.WORKFLOW_ID;
 
   // JSON fields
   private final TreeMap<Integer, WorkFlowMonitor> wfSteps     = new TreeMap<>();
@@ -67,6 +79,8 @@ public class Workflow extends ApiClient {
   private int                                     lastStepId;
   private int                                     stepsCounted;
   private Workflow                                parent;
+  // steps are loaded in windows on access
+  private boolean                                 lazySteps;
 
   // execution
 
@@ -108,20 +122,112 @@ public class Workflow extends ApiClient {
 
   // getters, delegates to WorkFlowMonitor
   public int getNumberOfSteps() {
-    return this.wfSteps.size();
+    return lazySteps ? lastStepId + 1 : this.wfSteps.size();
+  }
+
+  /**
+   * @return true if steps are not loaded with the workflow but in windows of sfgapi.workflow.stepWindow steps on access
+   *         (workflows with more than sfgapi.workflow.lazySteps steps)
+   */
+  public boolean isLazySteps() {
+    return lazySteps;
   }
 
   public Collection<WorkFlowMonitor> getWfSteps() {
     return wfSteps.values();
   }
 
+  /**
+   * Load ProcessData of all steps in batches (see {@link WorkFlowMonitor#prefetchProcessData(Collection)}).
+   */
+  public void prefetchProcessData() throws ApiException {
+    WorkFlowMonitor.prefetchProcessData(getWfSteps());
+  }
+
   public WorkFlowMonitor getWfStep(int id) throws ApiException {
-    if (id < 0 || id >= wfSteps.size()) {
+    if (id < 0 || id >= getNumberOfSteps()) {
       throw new ApiException("No such workflow step: " + id + "!");
     }
+    if (lazySteps && !wfSteps.containsKey(id)) {
+      // load window starting shortly before the step (or with the step when iterating forward)
+      int window = Math.max(1, apicfg.getWorkflowStepWindow());
+      int from   = wfSteps.containsKey(id - 1) ? id : Math.max(0, id - window / 4);
+      loadSteps(from, Math.min(lastStepId, from + window - 1), id);
+    }
     return wfSteps.get(id);
   }
 
+  /**
+   * Get steps <code>fromStepId</code> to <code>toStepId</code>. Steps of lazy workflows are loaded if necessary.
+   * 
+   * @param fromStepId
+   *          first step
+   * @param toStepId
+   *          last step
+   * @return steps ordered by step id
+   * @throws ApiException
+   */
+  public List<WorkFlowMonitor> getWfSteps(int fromStepId, int toStepId) throws ApiException {
+    if (lazySteps && wfSteps.subMap(fromStepId, true, toStepId, true).size() < toStepId - fromStepId + 1) {
+      loadSteps(fromStepId, Math.min(lastStepId, toStepId), fromStepId);
+    }
+    return new ArrayList<>(wfSteps.subMap(fromStepId, true, toStepId, true).values());
+  }
+
+  /**
+   * Get unsuccessful steps (basic status &gt; 0). For lazy workflows, only these steps are read.
+   * 
+   * @return failed steps
+   * @throws ApiException
+   */
+  public List<WorkFlowMonitor> getFailedSteps() throws ApiException {
+    if (!lazySteps) {
+      return wfSteps.values().stream().filter(s -> s.getBasicStatus() > 0).collect(Collectors.toList());
+    }
+    try (Stream<WorkFlowMonitor> steps = WorkFlowMonitor.stream(workFlowId, 0, lastStepId, true)) {
+      return steps.collect(Collectors.toList());
+    } catch (UncheckedApiException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Get failed steps together with <code>before</code> steps before and <code>after</code> steps after each failure.
+   * Only these windows are loaded for lazy workflows.
+   * 
+   * @param before
+   *          steps before failure
+   * @param after
+   *          steps after failure
+   * @return steps ordered by step id
+   * @throws ApiException
+   */
+  public List<WorkFlowMonitor> getStepsAroundFailures(int before, int after) throws ApiException {
+    TreeMap<Integer, WorkFlowMonitor> result = new TreeMap<>();
+    for (WorkFlowMonitor failed : getFailedSteps()) {
+      for (WorkFlowMonitor s : getWfSteps(Math.max(0, failed.getStepId() - before), failed.getStepId() + after)) {
+        result.put(s.getStepId(), s);
+      }
+    }
+    return new ArrayList<>(result.values());
+  }
+
+  // load steps into wfSteps, steps farthest from the step accessed are dropped if more than LAZY_WINDOWS are loaded
+  private void loadSteps(int fromStepId, int toStepId, int accessedStepId) throws ApiException {
+    LOGGER.log(Level.FINER, "Load steps {0}-{1} of workflow {2}.", new Object[] { fromStepId, toStepId, workFlowId });
+    for (WorkFlowMonitor s : WorkFlowMonitor.find(workFlowId, fromStepId, toStepId)) {
+      wfSteps.putIfAbsent(s.getStepId(), s);
+    }
+    int maxLoaded = Math.max(toStepId - fromStepId + 1, LAZY_WINDOWS * Math.max(1, apicfg.getWorkflowStepWindow()));
+    while (wfSteps.size() > maxLoaded) {
+      if (accessedStepId - wfSteps.firstKey() > wfSteps.lastKey() - accessedStepId) {
+        wfSteps.pollFirstEntry();
+      } else {
+        wfSteps.pollLastEntry();
+      }
+    }
+  }
+
   public String getBranchId() {
     return branchId;
   }
@@ -166,11 +272,21 @@ public class Workflow extends ApiClient {
     return stepsCounted;
   }
 
+  /**
+   * Get steps (loads all steps if not loaded yet). For lazy workflows with more than sfgapi.workflow.stepWindow steps,
+   * only the steps currently loaded are returned, use {@link #getWfStep(int)} or {@link #getWfSteps(int, int)} to
+   * access other steps.
+   * 
+   * @return steps
+   * @throws ApiException
+   */
   public Collection<WorkFlowMonitor> getWorkflowSteps() throws ApiException {
-    if (wfSteps.isEmpty()) {
+    if (wfSteps.isEmpty() && !lazySteps) {
       for (WorkFlowMonitor step : WorkFlowMonitor.find(this.workFlowId, true)) {
         wfSteps.put(step.getStepId(), step);
       }
+    } else if (lazySteps && wfSteps.size() < getNumberOfSteps() && lastStepId < Math.max(1, apicfg.getWorkflowStepWindow())) {
+      loadSteps(0, lastStepId, 0);
     }
     return wfSteps.values();
   }
@@ -269,8 +385,154 @@ public class Workflow extends ApiClient {
     }
   }
 
+  /**
+   * Iterate over workflows matching the criteria. The WS API is queried page by page (sfgapi.wsapi.pageSize workflows per
+   * request, newest first), so large time windows can be scanned without loading all workflows at once. API errors are
+   * thrown as {@link UncheckedApiException}.
+   * 
+   * @param bpName
+   *          WFD name (wildcards allowed) or null
+   * @param startTime
+   *          "yyyyMMddHHmmss-yyyyMMddHHmmss" or "&lt;n&gt;[hm]" (default: 1h)
+   * @param showOnlyFailed
+   *          only workflows with errors
+   * @param includeSystemWfds
+   *          include system workflows
+   * @return workflow iterator
+   * @throws ApiException
+   */
+  public static Iterator<Workflow> iterator(String bpName, String startTime, boolean showOnlyFailed, boolean includeSystemWfds) throws ApiException {
+    return iterator(getWsApiParameter(bpName, startTime, showOnlyFailed, includeSystemWfds), 0);
+  }
+
+  private static Iterator<Workflow> iterator(String param, final long minWorkflowId) throws ApiException {
+    if (!useWsApi(WS_API_NAME)) {
+      throw new ApiException("WS API \"workflows\" not configured!");
+    }
+    return new WsApiPageIterator<>(WS_API_NAME, param, WorkFlowMonitor.WORKFLOW_ID, apicfg.getWsApiPageSize(), json -> {
+      // DD_API_WS < 0.5.2 ignores minid
+      if (json.getLong(WorkFlowMonitor.WORKFLOW_ID) <= minWorkflowId) {
+        return null;
+      }
+      Workflow wf = new Workflow(json);
+      LOGGER.log(Level.FINER, "Got Workflow: {0}", wf);
+      return wf;
+    });
+  }
+
+  /**
+   * Get workflows started after <code>minWorkflowId</code> (high-watermark of a previous query). Only new workflows are
+   * read from the database, so polling costs depend on the number of new workflows, not on the start time window.
+   * 
+   * @param minWorkflowId
+   *          highest workflow id seen so far
+   * @param bpName
+   *          WFD name (wildcards allowed) or null
+   * @param startTime
+   *          "yyyyMMddHHmmss-yyyyMMddHHmmss" or "&lt;n&gt;[hm]" (default: 1h)
+   * @param includeSystemWfds
+   *          include system workflows
+   * @return new workflows (newest first)
+   * @throws ApiException
+   */
+  public static List<Workflow> findNewer(long minWorkflowId, String bpName, String startTime, boolean includeSystemWfds) throws ApiException {
+    String param = getWsApiParameter(bpName, startTime, false, includeSystemWfds);
+    return collect(iterator((param == null ? "" : param) + "&minid=" + minWorkflowId, minWorkflowId));
+  }
+
+  /**
+   * Get current state (exeState, lastStepId, endTime) of workflows regardless of their start time and WFD type (system
+   * workflows included).
+   * 
+   * @param workflowIds
+   *          workflow ids
+   * @return workflows found
+   * @throws ApiException
+   */
+  public static List<Workflow> findAll(Collection<Long> workflowIds) throws ApiException {
+    if (!useWsApi(WS_API_NAME)) {
+      throw new ApiException("WS API \"workflows\" not configured!");
+    }
+    List<Workflow> result = new ArrayList<>();
+    List<Long>     ids    = new ArrayList<>(workflowIds);
+    for (int i = 0; i < ids.size(); i += WFIDS_PER_REQUEST) {
+      List<Long> chunk = ids.subList(i, Math.min(i + WFIDS_PER_REQUEST, ids.size()));
+      // all=1: DD_API_WS < 0.5.6 filters system workflows (WFD type != 1) also for wfids
+      JSONArray  rows  = getJSONArrayFromWsApi(WS_API_NAME, "&all=1&wfids=" + chunk.stream().map(String::valueOf).collect(Collectors.joining(",")));
+      for (int r = 0; r < rows.length(); r++) {
+        JSONObject json = rows.getJSONObject(r);
+        // DD_API_WS < 0.5.2 ignores wfids
+        if (chunk.contains(json.getLong(WorkFlowMonitor.WORKFLOW_ID))) {
+          result.add(new Workflow(json));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get workflows (e.g. the workflows started by an execution) with one WS API request per 100 workflow ids. Steps are
+   * not read with the workflows but loaded on access (see {@link #isLazySteps()}), so only the steps of workflows
+   * actually inspected are transferred. Without WS APIs "workflows" and "steps", each workflow is read with its steps
+   * (see {@link #find(long, boolean)}). Workflows not returned by the WS API are read with {@link #find(long, boolean)}.
+   * 
+   * @param workflowIds
+   *          workflow ids
+   * @return workflows found (in order of workflowIds)
+   * @throws ApiException
+   */
+  public static List<Workflow> findAllWithLazySteps(Collection<Long> workflowIds) throws ApiException {
+    List<Workflow> result = new ArrayList<>();
+    if (!useWsApi(WS_API_NAME) || !useWsApi(WorkFlowMonitor.STEPS_WS_API)) {
+      for (Long id : workflowIds) {
+        Workflow wf = find(id, true);
+        if (wf != null) {
+          result.add(wf);
+        }
+      }
+      return result;
+    }
+    Map<Long, Workflow> found = new HashMap<>();
+    for (Workflow wf : findAll(workflowIds)) {
+      wf.lazySteps = true;
+      wf.stepsCounted = wf.lastStepId + 1;
+      found.put(wf.getWorkFlowId(), wf);
+    }
+    for (Long id : workflowIds) {
+      Workflow wf = found.get(id);
+      if (wf == null) {
+        LOGGER.log(Level.FINE, "Workflow {0} not returned by WS API, read with REST API.", id);
+        wf = find(id, true);
+      }
+      if (wf != null) {
+        result.add(wf);
+      } else {
+        LOGGER.log(Level.WARNING, "Workflow {0} not found!", id);
+      }
+    }
+    return result;
+  }
+
+  public static Stream<Workflow> stream(String bpName, String startTime, boolean showOnlyFailed, boolean includeSystemWfds) throws ApiException {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(bpName, startTime, showOnlyFailed, includeSystemWfds),
+        Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
   private static List<Workflow> findAllWithWSApi(String bpName, String startTime, boolean showOnlyFailed, boolean includeSystemWfds) throws ApiException {
+    return collect(iterator(bpName, startTime, showOnlyFailed, includeSystemWfds));
+  }
+
+  private static List<Workflow> collect(Iterator<Workflow> iterator) throws ApiException {
     List<Workflow> result = new ArrayList<>();
+    try {
+      iterator.forEachRemaining(result::add);
+    } catch (UncheckedApiException e) {
+      throw e.getCause();
+    }
+    return result;
+  }
+
+  private static String getWsApiParameter(String bpName, String startTime, boolean showOnlyFailed, boolean includeSystemWfds) throws ApiException {
     try {
       String param = "";
       if (bpName != null) {
@@ -290,22 +552,24 @@ public class Workflow extends ApiClient {
         }
       }
 
-      JSONArray jsonObjects = getJSONArray(getJSONFromWsApi(WS_API_NAME, (param.isEmpty() ? null : param), true));
-      for (int i = 0; i < jsonObjects.length(); i++) {
-        Workflow wf = new Workflow(jsonObjects.getJSONObject(i));
-        LOGGER.log(Level.FINER, "Got Workflow: {0}", wf);
-        result.add(wf);
-      }
+      return param.isEmpty() ? null : param;
     } catch (UnsupportedEncodingException e) {
       throw new ApiException(e);
     }
-    return result;
   }
 
   public static List<Workflow> findAll() throws ApiException {
     return findAll(null, false);
   }
 
+  public static CompletableFuture<Workflow> findAsync(long workflowId, boolean loadSteps) {
+    return async(() -> find(workflowId, loadSteps));
+  }
+
+  public static CompletableFuture<List<Workflow>> findAllAsync(String bpName, String startTime, boolean showOnlyFailed, boolean includeSystemWfds) {
+    return async(() -> findAll(bpName, startTime, showOnlyFailed, includeSystemWfds));
+  }
+
   public static Workflow find(long workflowId) throws ApiException {
     return find(workflowId, true);
   }
@@ -319,32 +583,62 @@ public class Workflow extends ApiClient {
   }
 
   private static List<Workflow> findAll(Long workflowId, boolean loadSteps) throws ApiException {
+    // workflows with more than sfgapi.workflow.lazySteps steps are loaded lazily if the WS API "steps" is available
+    return findAll(workflowId, loadSteps, loadSteps && useWsApi(WorkFlowMonitor.STEPS_WS_API) && useWsApi(WS_API_NAME) ? apicfg.getWorkflowLazySteps() : 0);
+  }
+
+  private static List<Workflow> findAll(Long workflowId, boolean loadSteps, int lazyLimit) throws ApiException {
     List<Workflow> result        = new ArrayList<>();
     final String[] includeFields = new String[] { "endTime", "startTime", "stepId", "wfdId", "wfdVersion", "workFlowId", "exeState", "wfdName" };
-    try {
-      Map<String, Object> params = new HashMap<>();
-      params.put("offset", 0);
-      if (loadSteps) {
-        params.put("fieldList", "Full");
-      } else {
-        params.put("includeFields", includeFields);
-      }
-      params.put("workFlowId", String.valueOf(workflowId));
-      Workflow wf = new Workflow();
-      JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-      // workflowmonitors will always (if memory allows) return ALL steps, so no _range loop here!
-      for (int i = 0; i < jsonObjects.length(); i++) {
-        wf = wf.addWorkflowStep(jsonObjects.getJSONObject(i));
+    Map<String, Object> params = new HashMap<>();
+    params.put("offset", 0);
+    if (loadSteps) {
+      params.put("fieldList", "Full");
+    } else {
+      params.put("includeFields", includeFields);
+    }
+    params.put("workFlowId", String.valueOf(workflowId));
+    boolean large = false;
+    // workflowmonitors will always return ALL steps, so no _range loop here! Rows are parsed from the response stream.
+    try (Stream<JSONObject> rows = streamAll(SVC_NAME, params, false, json -> json)) {
+      Workflow             wf = new Workflow();
+      Iterator<JSONObject> it = rows.iterator();
+      while (!large && it.hasNext()) {
+        wf = wf.addWorkflowStep(it.next());
         if (result.isEmpty() || result.get(result.size() - 1).getWorkFlowId() != wf.getWorkFlowId()) {
           result.add(wf);
         }
+        // stop reading step rows (closing the stream aborts the response), steps are loaded on access
+        large = lazyLimit > 0 && result.get(0).getLastStepId() >= lazyLimit;
       }
-    } catch (JSONException | UnsupportedEncodingException e) {
+    } catch (UncheckedApiException e) {
+      throw e.getCause();
+    } catch (JSONException e) {
       throw new ApiException(e);
     }
+    if (large) {
+      Workflow lazy = toLazy(result.get(0));
+      // not found by WS API: read all steps
+      return lazy == null ? findAll(workflowId, loadSteps, 0) : Collections.singletonList(lazy);
+    }
     return result;
   }
 
+  // workflow state and last step id are read with the WS API "workflows", steps read so far are kept. Null if the WS API
+  // did not find the workflow.
+  private static Workflow toLazy(Workflow partial) throws ApiException {
+    List<Workflow> found = findAll(Collections.singletonList(partial.getWorkFlowId()));
+    if (found.isEmpty()) {
+      return null;
+    }
+    Workflow wf = found.get(0);
+    LOGGER.log(Level.FINE, "Workflow {0} has {1} steps, load steps on access.", new Object[] { wf.getWorkFlowId(), wf.lastStepId + 1 });
+    wf.lazySteps = true;
+    wf.stepsCounted = wf.lastStepId + 1;
+    wf.wfSteps.putAll(partial.wfSteps);
+    return wf;
+  }
+
   public static boolean exists(Workflow workflow) throws ApiException {
     return exists(workflow.getWorkFlowId());
   }
@@ -16,7 +16,6 @@
 package de.denkunddachte.sfgapi;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -24,6 +23,8 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
@@ -40,16 +41,22 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.input.XmlStreamReader;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.entity.GzipCompressingEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -728,7 +735,7 @@ public class WorkflowDefinition extends ApiClient {
 
       this.wfdVersions = new ArrayList<>();
       try {
-        JSONArray json = getJSONArray(getJSONFromWsApi(WFD_WS_API, "&bpname=" + getName(), true));
+        JSONArray json = getJSONArrayFromWsApi(WFD_WS_API, "&bpname=" + getName());
         for (int i = 0; i < json.length(); i++) {
           wfdVersions.add(json.getJSONObject(i).getInt("WFD_VERSION"));
           if (i == 0) {
@@ -833,10 +840,8 @@ public class WorkflowDefinition extends ApiClient {
     }
 
     if (withDetails || !WFD_WS_API_FIELDS.containsAll(Arrays.asList(includeFields))) {
-      for (WorkflowDefinition wfd : result) {
-        if (wfd.isRefreshRequired())
-          wfd.refresh();
-      }
+      // one GET per WFD, run concurrently (sfgapi.async.threads)
+      refreshAll(result);
     }
     return result;
   }
@@ -853,38 +858,34 @@ public class WorkflowDefinition extends ApiClient {
       if (globPattern != null)
         params.put("searchFor", (globPattern != null ? globPattern.replace('*', '%') : null));
       JSONObject o = null;
-      while (true) {
-        JSONArray jsonObjects = getJSONArray(get(SVC_NAME, params));
-        for (int i = 0; i < jsonObjects.length(); i++) {
-          switch (getVersions) {
-          case FIRST:
-            if (o == null || o.getLong("WFD_ID") != jsonObjects.getJSONObject(i).getLong("WFD_ID")) {
-              result.add(new WorkflowDefinition(o));
-              o = null;
-            } else {
-              o = jsonObjects.getJSONObject(i);
-            }
-            break;
-          case LAST:
+      JSONArray jsonObjects = getAll(SVC_NAME, params);
+      for (int i = 0; i < jsonObjects.length(); i++) {
+        switch (getVersions) {
+        case FIRST:
+          if (o == null || o.getLong("WFD_ID") != jsonObjects.getJSONObject(i).getLong("WFD_ID")) {
+            result.add(new WorkflowDefinition(o));
+            o = null;
+          } else {
             o = jsonObjects.getJSONObject(i);
-            if (o.getLong("WFD_VERSION") == o.getLong("LATEST_VERSION")) {
-              result.add(new WorkflowDefinition(o));
-              o = null;
-            }
-            break;
-          case DEFAULT:
-            WorkflowDefinition wfd = new WorkflowDefinition(jsonObjects.getJSONObject(i));
-            if (wfd.isDefaultVersion())
-              result.add(wfd);
-            break;
-          case ALL:
-          default:
-            result.add(new WorkflowDefinition(jsonObjects.getJSONObject(i)));
-            break;
           }
-        }
-        if (jsonObjects.length() < API_RANGESIZE)
           break;
+        case LAST:
+          o = jsonObjects.getJSONObject(i);
+          if (o.getLong("WFD_VERSION") == o.getLong("LATEST_VERSION")) {
+            result.add(new WorkflowDefinition(o));
+            o = null;
+          }
+          break;
+        case DEFAULT:
+          WorkflowDefinition wfd = new WorkflowDefinition(jsonObjects.getJSONObject(i));
+          if (wfd.isDefaultVersion())
+            result.add(wfd);
+          break;
+        case ALL:
+        default:
+          result.add(new WorkflowDefinition(jsonObjects.getJSONObject(i)));
+          break;
+        }
       }
       if (o != null)
         result.add(new WorkflowDefinition(o));
@@ -905,7 +906,7 @@ public class WorkflowDefinition extends ApiClient {
       if (getVersions == VERSIONS.DEFAULT) {
         params.append("&default=1");
       }
-      JSONArray json = new JSONArray(getJSONFromWsApi(WFD_WS_API, params.toString(), true));
+      JSONArray json = getJSONArrayFromWsApi(WFD_WS_API, params.toString());
 
       for (int i = 0; i < json.length(); i++) {
         switch (getVersions) {
@@ -957,6 +958,14 @@ public class WorkflowDefinition extends ApiClient {
     return result;
   }
 
+  public static CompletableFuture<WorkflowDefinition> findAsync(String name, int version) {
+    return async(() -> find(name, version));
+  }
+
+  public static CompletableFuture<List<WorkflowDefinition>> findAllAsync(String globPattern, VERSIONS getVersions, boolean withDetails, String... includeFields) {
+    return async(() -> findAll(globPattern, getVersions, withDetails, includeFields));
+  }
+
   // BUG: REST API does not reliably return the default version when doing lookup by id. Get with searchFor...
   public static WorkflowDefinition find(String name) throws ApiException {
     try {
@@ -1024,7 +1033,7 @@ public class WorkflowDefinition extends ApiClient {
     if (result) {
       // assume success and wfdVersion was incremented. Patch stored _id and href so refresh() loads the new version:
       if (maxVersion == null) {
-        JSONObject o = new JSONObject(getJSONFromWsApi(WFD_WS_API, "&json=1&default=1&bpname=" + this.getName(), false));
+        JSONObject o = getJSONObjectFromWsApi(WFD_WS_API, "&json=1&default=1&bpname=" + this.getName());
         maxVersion = o.getInt("LATEST_VERSION");
       } else {
         maxVersion++;
@@ -1046,7 +1055,7 @@ public class WorkflowDefinition extends ApiClient {
     if (refreshWfdCache) {
       LOGGER.log(Level.FINER, "update(): refresh WFD cache...");
       try {
-        JSONObject json = getJSON(getJSONFromWsApi(REFRESH_WFD_WS_API, "&bpname=" + name, false));
+        JSONObject json = getJSONObjectFromWsApi(REFRESH_WFD_WS_API, "&bpname=" + name);
         LOGGER.log(Level.FINER, "json: {0}", json);
       } catch (JSONException e) {
         throw new ApiException(e);
@@ -1114,7 +1123,7 @@ public class WorkflowDefinition extends ApiClient {
         new Object[] { name, version, enableBusinessProcess });
     boolean result = false;
     try {
-      JSONObject json = getJSON(getJSONFromWsApi(TOGGLE_WFD_WS_API, "&bpname=" + name + "&bpversion=" + version + "&enable=" + enableBusinessProcess, false));
+      JSONObject json = getJSONObjectFromWsApi(TOGGLE_WFD_WS_API, "&bpname=" + name + "&bpversion=" + version + "&enable=" + enableBusinessProcess);
       result = json.getInt("Rows_Affected") == 1;
     } catch (JSONException e) {
       throw new ApiException(e);
@@ -1163,20 +1172,69 @@ public class WorkflowDefinition extends ApiClient {
 
   public Workflow execute(byte[] data, String filename) throws ApiException {
     if (useWsApi(EXECUTE_WS_API)) {
-      return executeWs(data, filename);
-    } else {
-      File primaryDoc = null;
-
-      if (data != null) {
-        primaryDoc = new File(ExternalProcess.getDefaultTempDir(), filename + ".tmp");
-        try (FileOutputStream os = new FileOutputStream(primaryDoc)) {
-          os.write(data);
-          primaryDoc.deleteOnExit();
-        } catch (IOException e) {
-          throw new ApiException("Could not write " + primaryDoc.getAbsolutePath() + "!", e);
-        }
+      return executeWs(data == null ? null : new ByteArrayEntity(data), filename);
+    } else if (data == null) {
+      return execute((File) null, filename);
+    }
+    File primaryDoc = createTempFile();
+    try {
+      try (FileOutputStream os = new FileOutputStream(primaryDoc)) {
+        os.write(data);
+      } catch (IOException e) {
+        throw new ApiException("Could not write " + primaryDoc.getAbsolutePath() + "!", e);
       }
       return execute(primaryDoc, filename);
+    } finally {
+      deleteTempFile(primaryDoc);
+    }
+  }
+
+  /**
+   * Execute BP with primary document read from stream. With WS API executebp, the stream is sent chunked without
+   * buffering it in memory (the request cannot be retried). Otherwise the stream is copied to a temporary file, which is
+   * passed to the copy command / workflowLauncher. The stream is not closed.
+   * 
+   * @param primaryDoc
+   *          primary document
+   * @param filename
+   *          document name
+   * @return executed workflow
+   * @throws ApiException
+   */
+  public Workflow execute(InputStream primaryDoc, String filename) throws ApiException {
+    if (useWsApi(EXECUTE_WS_API)) {
+      return executeWs(primaryDoc == null ? null : new InputStreamEntity(primaryDoc), filename);
+    }
+    if (primaryDoc == null) {
+      return execute((File) null, filename);
+    }
+    File tmpFile = createTempFile();
+    try {
+      try {
+        Files.copy(primaryDoc, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        throw new ApiException("Could not write " + tmpFile.getAbsolutePath() + "!", e);
+      }
+      return execute(tmpFile, filename);
+    } finally {
+      deleteTempFile(tmpFile);
+    }
+  }
+
+  // unique file per execution (BPs may be executed concurrently), the copy command has completed when execute() returns
+  private static File createTempFile() throws ApiException {
+    try {
+      return File.createTempFile("primarydoc_", ".tmp", ExternalProcess.getDefaultTempDir());
+    } catch (IOException e) {
+      throw new ApiException("Could not create temporary file in " + ExternalProcess.getDefaultTempDir() + "!", e);
+    }
+  }
+
+  private static void deleteTempFile(File f) {
+    try {
+      Files.deleteIfExists(f.toPath());
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not delete {0}: {1}", new Object[] { f, e.getMessage() });
     }
   }
 
@@ -1187,16 +1245,8 @@ public class WorkflowDefinition extends ApiClient {
     }
 
     if (useWsApi(EXECUTE_WS_API)) {
-      byte[] data = null;
-      if (primaryDoc != null) {
-        data = new byte[(int) primaryDoc.length()];
-        try (InputStream is = new FileInputStream(primaryDoc)) {
-          is.read(data);
-        } catch (IOException e) {
-          throw new ApiException(e);
-        }
-      }
-      return executeWs(data, filename);
+      // file is streamed from disk (and can be sent again if the request is retried)
+      return executeWs(primaryDoc == null ? null : new FileEntity(primaryDoc), filename);
     } else {
       if (primaryDoc != null && cfg.getSfgExecCopycmd() != null) {
         final String    copyCmd  = cfg.getSfgExecCopycmd().replace("$filename", filename).replace("$file", primaryDoc.getAbsolutePath());
@@ -1263,8 +1313,7 @@ public class WorkflowDefinition extends ApiClient {
     final Pattern       wfResult  = Pattern
         .compile("\\[WorkFlowLauncher\\] TotalTime: (\\d+\\(.?s\\)) " + "numberWaits: (\\d+)\\s+Id\\((\\s*\\d+\\s*)\\) \\((\\S+)\\)"
             + "\\s+(?:parent Id \\(\\s*(\\d+)\\s*\\)|())" + "\\s*Requested state: (\\S+) state: (\\S+) < (\\S+) >");
-    Map<Long, Workflow> workflows = new LinkedHashMap<>();
-    long                parent    = -1L;
+    Map<Long, Long> launched = new LinkedHashMap<>();
     try (Scanner scanner = new Scanner(output)) {
       while (scanner.hasNextLine()) {
         String line = scanner.nextLine();
@@ -1272,42 +1321,66 @@ public class WorkflowDefinition extends ApiClient {
           continue;
         Matcher m = wfResult.matcher(line);
         if (m.matches()) {
-          Workflow wf = Workflow.find(Long.valueOf(m.group(3)), true);
-          parent = (parent > 0 ? parent : wf.getWorkFlowId());
-          workflows.put(wf.getWorkFlowId(), wf);
-          if (m.group(5) != null) {
-            wf.setParent(workflows.get(Long.valueOf(m.group(5))));
-            wf.getParent().addChildWorkflow(wf);
-          }
+          launched.put(Long.valueOf(m.group(3).trim()), m.group(5) == null ? null : Long.valueOf(m.group(5)));
         }
       }
     }
-    return workflows.get(parent);
+    return resolveWorkflows(launched);
   }
 
-  private Workflow executeWs(byte[] data, String fileName) throws ApiException {
+  // read launched workflows (workflow id -> parent id) with a batched lookup and link child workflows to their parents.
+  // Returns the first workflow launched.
+  private static Workflow resolveWorkflows(Map<Long, Long> launched) throws ApiException {
     Map<Long, Workflow> workflows = new LinkedHashMap<>();
-    long                parent    = -1L;
+    for (Workflow wf : Workflow.findAllWithLazySteps(launched.keySet())) {
+      workflows.put(wf.getWorkFlowId(), wf);
+    }
+    for (Map.Entry<Long, Long> e : launched.entrySet()) {
+      Workflow wf     = workflows.get(e.getKey());
+      Workflow parent = e.getValue() == null ? null : workflows.get(e.getValue());
+      if (wf != null && parent != null) {
+        wf.setParent(parent);
+        parent.addChildWorkflow(wf);
+      }
+    }
+    return launched.isEmpty() ? null : workflows.get(launched.keySet().iterator().next());
+  }
+
+  static String getExecuteParameter(String bpName, int bpVersion, String fileName, boolean gzip) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("?api=").append(EXECUTE_WS_API);
+    sb.append("&bpname=").append(bpName);
+    sb.append("&bpversion=").append(bpVersion);
+    sb.append("&json=1");
+    sb.append("&filename=").append(fileName == null || fileName.isEmpty() ? "in.dat" : fileName);
+    if (gzip) {
+      sb.append("&gzip=1");
+    }
+    return sb.toString();
+  }
+
+  // request body is streamed from the entity (chunked and GZIP compressed on the fly with gzip=true)
+  static HttpEntity getExecuteEntity(AbstractHttpEntity primaryDoc, boolean gzip) {
+    return gzip ? new GzipCompressingEntity(primaryDoc) : primaryDoc;
+  }
+
+  // primary doc is sent as request body (chunked and GZIP compressed with sfgapi.executebp.gzip=true)
+  private Workflow executeWs(AbstractHttpEntity primaryDoc, String fileName) throws ApiException {
     if (!useWsApi(EXECUTE_WS_API)) {
       throw new ApiException("The " + EXECUTE_WS_API + " API is not implemented or not configured in ApiConfig!");
     }
 
     String jsonResult = null;
-    if (data == null) {
+    if (primaryDoc == null) {
       jsonResult = getJSONFromWsApi(EXECUTE_WS_API, "&json=1&bpname=" + getName() + "&bpversion=" + getWfdVersion(), false);
     } else {
       try {
-        StringBuilder sb = new StringBuilder(getWsApiBaseURI());
-        sb.append("?api=").append(EXECUTE_WS_API);
-        sb.append("&bpname=").append(getName());
-        sb.append("&bpversion=").append(getWfdVersion());
-        sb.append("&json=1");
-        sb.append("&filename=").append(fileName == null || fileName.isEmpty() ? "in.dat" : fileName);
-        HttpRequestBase httpRequest = createRequest(RequestType.POST, new URI(sb.toString()), null);
-        ((HttpPost) httpRequest).setEntity(new ByteArrayEntity(data));
+        String          uri         = getWsApiBaseURI() + getExecuteParameter(getName(), getWfdVersion(), fileName, apicfg.isSfgExecBpGzip());
+        HttpRequestBase httpRequest = createRequest(RequestType.POST, new URI(uri), null);
+        ((HttpPost) httpRequest).setEntity(getExecuteEntity(primaryDoc, apicfg.isSfgExecBpGzip()));
         try (CloseableHttpResponse response = executeRequest(httpRequest)) {
           if (response.getStatusLine().getStatusCode() != 200) {
-            throw new ApiException("POST request " + sb + " failed with RC=" + response.getStatusLine());
+            throw new ApiException("POST request " + uri + " failed with RC=" + response.getStatusLine());
           }
           jsonResult = getJSONResponse(response);
         }
@@ -1331,16 +1404,11 @@ public class WorkflowDefinition extends ApiClient {
       bps = new JSONArray();
       bps.put(json.getJSONObject("LAUNCH").getJSONObject("BP"));
     }
+    Map<Long, Long> launched = new LinkedHashMap<>();
     for (int i = 0; i < bps.length(); i++) {
       JSONObject bp = bps.getJSONObject(i);
-      Workflow   wf = Workflow.find(bp.getLong("ID"), true);
-      parent = (parent > 0 ? parent : wf.getWorkFlowId());
-      workflows.put(wf.getWorkFlowId(), wf);
-      if (bp.has("PARENT_ID")) {
-        wf.setParent(workflows.get(bp.getLong("PARENT_ID")));
-        wf.getParent().addChildWorkflow(wf);
-      }
+      launched.put(bp.getLong("ID"), bp.has("PARENT_ID") ? bp.getLong("PARENT_ID") : null);
     }
-    return workflows.get(parent);
+    return resolveWorkflows(launched);
   }
 }
@@ -0,0 +1,287 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.sfgapi;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.sfgapi.ApiClient.ApiCall;
+import de.denkunddachte.sfgapi.ApiClient.ResponseType;
+
+/**
+ * Coalesces WS API lookups issued by concurrent threads within a short window (sfgapi.wsapi.batchWindow) into one
+ * <code>batch</code> request to DD_API_WS. A lookup is sent immediately as single request if no other lookup is in
+ * progress. Otherwise it is queued; the first queued lookup waits for the window (or until the batch is full) and sends
+ * the batch in its own thread, the other callers block until the batch containing their query was answered. A batch
+ * with a single query, queries missing in the batch response and failed batches fall back to a single request in the
+ * calling thread. If the WS API does not support batches (HTTP 400), batching is disabled.
+ */
+final class WsApiBatcher {
+  private static final Logger            LOGGER     = Logger.getLogger(WsApiBatcher.class.getName());
+  static final String                    BATCH_API  = "batch";
+  // read-only queries supported by the batch API of DD_API_WS
+  static final Set<String>               BATCH_APIS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("version", "mailboxes", "useraccounts",
+      "sshauthorizeduserkeys", "uservirtualroots", "workflows", "steps", "wfd", "xslt", "processdata")));
+  // result of queries that must be sent as single request
+  private static final Object            SINGLE     = new Object();
+
+  private final long                     window;
+  private final int                      maxSize;
+  private List<Query>                    pending    = new ArrayList<>();
+  // lookups in progress (queued, in a batch or sent as single request)
+  private int                            active;
+  private volatile boolean               disabled;
+
+  static final class Query {
+    private final String                    api;
+    private final Map<String, String>       params;
+    private final ResponseType              type;
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    Query(String api, Map<String, String> params, ResponseType type) {
+      this.api = api;
+      this.params = params;
+      this.type = type;
+    }
+  }
+
+  WsApiBatcher(long windowMillis, int maxSize) {
+    this.window = windowMillis;
+    this.maxSize = Math.max(2, maxSize);
+  }
+
+  static boolean isBatchable(String svcName) {
+    return BATCH_APIS.contains(svcName);
+  }
+
+  boolean isDisabled() {
+    return disabled;
+  }
+
+  /**
+   * Look up query in a batch with concurrent lookups or with a single request.
+   *
+   * @param single
+   *          single request for the query, called in the calling thread if the query is not answered by a batch
+   * @return unwrapped JSON result
+   */
+  Object lookup(String svcName, String parameter, ResponseType type, ApiCall<Object> single) throws ApiException {
+    Map<String, String> params = parseParameter(parameter);
+    Query               q      = null;
+    List<Query>         batch  = null;
+    synchronized (this) {
+      if (params != null && !disabled && active > 0) {
+        q = new Query(svcName, params, type);
+        pending.add(q);
+        if (pending.size() >= maxSize) {
+          batch = takePending();
+        }
+      }
+      active++;
+    }
+    try {
+      if (q == null) {
+        return single.call();
+      }
+      if (batch == null) {
+        batch = awaitBatch(q);
+      }
+      if (batch != null) {
+        execute(batch);
+      }
+      Object result = q.result.get();
+      return result == SINGLE ? single.call() : result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiException(e);
+    } catch (ExecutionException e) {
+      throw (e.getCause() instanceof ApiException ? (ApiException) e.getCause() : new ApiException(e.getCause()));
+    } finally {
+      synchronized (this) {
+        active--;
+      }
+    }
+  }
+
+  // first query of a batch waits for the window and takes the batch, unless it was taken when full
+  private synchronized List<Query> awaitBatch(Query q) {
+    final List<Query> batch = pending;
+    if (batch.get(0) != q) {
+      return null;
+    }
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(window);
+    long       remaining;
+    try {
+      while (pending == batch && (remaining = deadline - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+    } catch (InterruptedException e) {
+      // send batch now, the other queries are waiting for it
+      Thread.currentThread().interrupt();
+    }
+    return pending == batch ? takePending() : null;
+  }
+
+  private synchronized List<Query> takePending() {
+    List<Query> batch = pending;
+    pending = new ArrayList<>();
+    notifyAll();
+    return batch;
+  }
+
+  private void execute(List<Query> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (batch.size() == 1 || disabled) {
+      batch.forEach(q -> q.result.complete(SINGLE));
+      return;
+    }
+    try {
+      Map<String, JSONObject> responses = getResponses(ApiClient.postWsApiBatch(toXml(batch)));
+      for (int i = 0; i < batch.size(); i++) {
+        Query      q = batch.get(i);
+        JSONObject r = responses.get(String.valueOf(i));
+        if (r == null) {
+          q.result.complete(SINGLE);
+        } else {
+          if (!r.has("result")) {
+            r.put("result", "");
+          }
+          q.result.complete(ApiClient.unwrapWsApiJSON(r, q.type));
+        }
+      }
+      LOGGER.log(Level.FINER, "Batch of {0} queries completed ({1} responses).", new Object[] { batch.size(), responses.size() });
+    } catch (ApiException | RuntimeException e) {
+      LOGGER.log(Level.WARNING, "WS API batch of {0} queries failed, sending single requests: {1}", new Object[] { batch.size(), e.getMessage() });
+      batch.forEach(q -> q.result.complete(SINGLE));
+    }
+  }
+
+  // {"batch":{"response":[{"id":0,"api":"wfd","result":{...}}, ...]}} or {"errorCode":...}
+  Map<String, JSONObject> getResponses(Object json) throws ApiException {
+    Map<String, JSONObject> result = new HashMap<>();
+    if (!(json instanceof JSONObject)) {
+      throw new ApiException("Unexpected WS API batch response: " + json);
+    }
+    JSONObject o = (JSONObject) json;
+    if (o.has(ApiClient.ERROR_CODE)) {
+      if (o.optInt(ApiClient.ERROR_CODE) == 400) {
+        // DD_API_WS < 0.5.0
+        disabled = true;
+        LOGGER.log(Level.INFO, "WS API does not support batch requests, batching disabled.");
+      }
+      throw new ApiException("WS API batch request failed: errorCode=" + o.opt(ApiClient.ERROR_CODE) + ", errorDescription="
+          + o.opt(ApiClient.ERROR_DESCRIPTION));
+    }
+    JSONObject b = o.optJSONObject(BATCH_API);
+    Object     r = b == null ? null : b.opt("response");
+    if (r instanceof JSONObject) {
+      r = new JSONArray().put(r);
+    }
+    if (r instanceof JSONArray) {
+      JSONArray a = (JSONArray) r;
+      for (int i = 0; i < a.length(); i++) {
+        JSONObject resp = a.optJSONObject(i);
+        if (resp != null && resp.has("id")) {
+          result.put(String.valueOf(resp.get("id")), resp);
+        }
+      }
+    }
+    return result;
+  }
+
+  // <batch><query id="0"><api>wfd</api><bpname>...</bpname></query>...</batch>
+  static String toXml(List<Query> batch) {
+    StringBuilder sb = new StringBuilder("<batch>");
+    for (int i = 0; i < batch.size(); i++) {
+      Query q = batch.get(i);
+      sb.append("<query id=\"").append(i).append("\"><api>").append(q.api).append("</api>");
+      for (Map.Entry<String, String> e : q.params.entrySet()) {
+        sb.append('<').append(e.getKey()).append('>');
+        appendEscaped(sb, e.getValue());
+        sb.append("</").append(e.getKey()).append('>');
+      }
+      sb.append("</query>");
+    }
+    return sb.append("</batch>").toString();
+  }
+
+  private static void appendEscaped(StringBuilder sb, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '&':
+        sb.append("&amp;");
+        break;
+      case '<':
+        sb.append("&lt;");
+        break;
+      case '>':
+        sb.append("&gt;");
+        break;
+      default:
+        sb.append(c);
+      }
+    }
+  }
+
+  // "&bpname=X&default=1" -> {bpname=X, default=1}; "json" is a parameter of the batch request, null if a parameter
+  // name can not be used as XML element name
+  static Map<String, String> parseParameter(String parameter) throws ApiException {
+    Map<String, String> result = new LinkedHashMap<>();
+    if (parameter == null) {
+      return result;
+    }
+    try {
+      for (String p : parameter.split("&")) {
+        int e = p.indexOf('=');
+        if (p.isEmpty() || e < 1) {
+          continue;
+        }
+        String key = p.substring(0, e);
+        if (!key.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+          return null;
+        }
+        if (!"json".equals(key)) {
+          result.put(key, URLDecoder.decode(p.substring(e + 1), StandardCharsets.UTF_8.name()));
+        }
+      }
+    } catch (UnsupportedEncodingException e) {
+      throw new ApiException(e);
+    }
+    return result;
+  }
+}
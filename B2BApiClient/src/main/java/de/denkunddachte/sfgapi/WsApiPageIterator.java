@@ -0,0 +1,194 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.sfgapi;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
+
+/**
+ * Iterates over a WS API listing with keyset pagination: each request returns at most <code>limit</code> rows ordered
+ * by a numeric key (descending or ascending), the next page is requested with <code>lastid</code> set to the key of the
+ * last row. Only one page is held in memory. If the WS API does not support paging (DD_API_WS &lt; 0.5.1), the first
+ * response contains all rows and iteration ends after it.
+ * <p>
+ * Keys need not be unique (e.g. one row per branch of a workflow): the rows of the last key of a full page may continue
+ * on the next page, so they are not returned with this page but read again with the next one.
+ *
+ * @param <T>
+ *          result type
+ */
+public class WsApiPageIterator<T> implements Iterator<T> {
+  private static final Logger                  LOGGER = Logger.getLogger(WsApiPageIterator.class.getName());
+
+  @FunctionalInterface
+  interface PageReader {
+    JSONArray read(String svcName, String parameter) throws ApiException;
+  }
+
+  private final PageReader                     reader;
+  private final String                         svcName;
+  private final String                         parameter;
+  private final String                         keyField;
+  private final int                            pageSize;
+  private final ApiResultIterator.RowMapper<T> mapper;
+  private final boolean                        ascending;
+  private JSONArray                            page;
+  private int                                  pos;
+  private int                                  pageEnd;
+  private Long                                 lastKey;
+  private boolean                              lastPage;
+  private int                                  pageCount;
+  private int                                  rowCount;
+  private T                                    next;
+
+  WsApiPageIterator(String svcName, String parameter, String keyField, int pageSize, ApiResultIterator.RowMapper<T> mapper) {
+    this(svcName, parameter, keyField, pageSize, false, mapper);
+  }
+
+  WsApiPageIterator(String svcName, String parameter, String keyField, int pageSize, boolean ascending, ApiResultIterator.RowMapper<T> mapper) {
+    this(ApiClient::getJSONArrayFromWsApi, svcName, parameter, keyField, pageSize, ascending, mapper);
+  }
+
+  WsApiPageIterator(PageReader reader, String svcName, String parameter, String keyField, int pageSize, boolean ascending,
+      ApiResultIterator.RowMapper<T> mapper) {
+    this.reader = reader;
+    this.svcName = svcName;
+    this.parameter = parameter == null ? "" : parameter;
+    this.keyField = keyField;
+    this.pageSize = pageSize;
+    this.ascending = ascending;
+    this.mapper = mapper;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = fetchNext();
+      } catch (ApiException e) {
+        lastPage = true;
+        throw new UncheckedApiException(e);
+      } catch (JSONException e) {
+        lastPage = true;
+        throw new UncheckedApiException(new ApiException("Error reading result of " + svcName + " (row " + rowCount + ")!", e));
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    T result = next;
+    next = null;
+    return result;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getPageCount() {
+    return pageCount;
+  }
+
+  private T fetchNext() throws ApiException {
+    while (true) {
+      if (page == null || pos >= pageEnd) {
+        if (lastPage || !readPage()) {
+          page = null;
+          lastPage = true;
+          return null;
+        }
+      }
+      JSONObject row = page.getJSONObject(pos++);
+      rowCount++;
+      lastKey = row.getLong(keyField);
+      T obj = mapper.map(row);
+      if (obj != null) {
+        return obj;
+      }
+    }
+  }
+
+  private boolean readPage() throws ApiException {
+    JSONArray rows;
+    int       end;
+    int       limit = pageSize;
+    while (true) {
+      String param = parameter;
+      if (pageSize > 0) {
+        param += "&limit=" + limit;
+        if (lastKey != null) {
+          param += "&lastid=" + lastKey;
+        }
+      }
+      rows = reader.read(svcName, param.isEmpty() ? null : param);
+      pageCount++;
+      LOGGER.log(Level.FINER, "Got page {0} of {1}: rows={2}, lastid={3}", new Object[] { pageCount, svcName, rows.length(), lastKey });
+      if (rows.length() == 0) {
+        return false;
+      }
+      long firstKey = rows.getJSONObject(0).getLong(keyField);
+      if (lastKey != null && (ascending ? firstKey <= lastKey : firstKey >= lastKey)) {
+        // lastid was ignored, rows were already returned with the first page
+        LOGGER.log(Level.FINE, "WS API {0} does not support paging.", svcName);
+        lastPage = true;
+        // rows held back from the previous page are not returned again
+        if (page != null && pageEnd < page.length()) {
+          pageEnd = page.length();
+          return true;
+        }
+        return false;
+      }
+      // a page with less rows is the last one, more rows than requested means the WS API ignored the limit
+      lastPage = pageSize <= 0 || rows.length() != limit;
+      end = lastPage ? rows.length() : getEndOfCompleteKeys(rows);
+      if (end > 0) {
+        break;
+      }
+      // all rows of the page have the same key
+      limit *= 2;
+      LOGGER.log(Level.FINER, "Page {0} of {1} has only rows with {2}={3}, read again with limit={4}.",
+          new Object[] { pageCount, svcName, keyField, firstKey, limit });
+    }
+    page = rows;
+    pos = 0;
+    pageEnd = end;
+    return true;
+  }
+
+  // number of rows before the rows of the last key
+  private int getEndOfCompleteKeys(JSONArray rows) {
+    int  end = rows.length();
+    long key = rows.getJSONObject(end - 1).getLong(keyField);
+    while (end > 0 && rows.getJSONObject(end - 1).getLong(keyField) == key) {
+      end--;
+    }
+    return end;
+  }
+}
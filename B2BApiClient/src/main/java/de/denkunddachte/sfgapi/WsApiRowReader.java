@@ -0,0 +1,282 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.sfgapi;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
+
+/**
+ * Streaming reader for DD_API_WS XML responses (<code>/result/row</code>). Rows are pulled from the stream with StAX
+ * and handed to a {@link RowMapper} one at a time, so only the current row is held in memory. Child elements of a row
+ * are mapped by local name to their text content (like XPath <code>string(./name)</code>). Rows can be pushed to a
+ * consumer ({@link #read(InputStream, RowMapper, Consumer)}) or pulled with a {@link RowIterator}.
+ */
+public final class WsApiRowReader {
+  private static final Logger          LOGGER  = Logger.getLogger(WsApiRowReader.class.getName());
+  private static final String          RESULT  = "result";
+  private static final String          ROW     = "row";
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  @FunctionalInterface
+  public interface RowMapper<T> {
+    /**
+     * @return mapped object or null to skip the row
+     */
+    T map(Row row) throws ApiException;
+  }
+
+  /**
+   * Fields of the current row. The instance is reused for all rows of a response and must not be kept by the mapper.
+   */
+  public static final class Row {
+    private final Map<String, String> fields = new HashMap<>();
+    private int                       index  = -1;
+
+    /**
+     * @return field value or empty string if the row does not contain the field
+     */
+    public String get(String name) {
+      String v = fields.get(name);
+      return v == null ? "" : v;
+    }
+
+    /**
+     * @return field value or null if the row does not contain the field
+     */
+    public String opt(String name) {
+      return fields.get(name);
+    }
+
+    public boolean has(String name) {
+      return fields.containsKey(name);
+    }
+
+    /**
+     * @return row number in response (0-based)
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    @Override
+    public String toString() {
+      return "Row[" + index + "]" + fields;
+    }
+  }
+
+  /**
+   * Pulls mapped rows from the response stream on demand. Read errors are thrown as {@link UncheckedApiException}. Closing
+   * the iterator closes the XML reader, not the underlying stream.
+   */
+  public static final class RowIterator<T> implements Iterator<T>, Closeable {
+    private final RowMapper<T>    mapper;
+    private final Row             row = new Row();
+    private final XMLStreamReader xr;
+    private boolean               done;
+    private T                     next;
+
+    private RowIterator(InputStream is, RowMapper<T> mapper) throws ApiException {
+      this.mapper = mapper;
+      try {
+        xr = FACTORY.createXMLStreamReader(is);
+        // document element; anything other than <result> has no rows
+        if (xr.nextTag() != XMLStreamConstants.START_ELEMENT || !RESULT.equals(xr.getLocalName())) {
+          LOGGER.log(Level.FINER, "No WS API result: root element={0}", xr.getLocalName());
+          done = true;
+        }
+      } catch (XMLStreamException e) {
+        throw new ApiException("Could not read WS API response: " + e.getMessage(), e);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null && !done) {
+        try {
+          next = fetchNext();
+        } catch (ApiException e) {
+          done = true;
+          throw new UncheckedApiException(e);
+        } catch (XMLStreamException e) {
+          done = true;
+          throw new UncheckedApiException(new ApiException("Could not read WS API response (row " + (row.index + 1) + "): " + e.getMessage(), e));
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T result = next;
+      next = null;
+      return result;
+    }
+
+    /**
+     * @return number of rows read so far
+     */
+    public int getRowCount() {
+      return row.index + 1;
+    }
+
+    private T fetchNext() throws XMLStreamException, ApiException {
+      while (xr.hasNext()) {
+        int event = xr.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          if (ROW.equals(xr.getLocalName())) {
+            readRow(xr, row);
+            T obj = mapper.map(row);
+            if (obj != null) {
+              return obj;
+            }
+          } else {
+            skipElement(xr);
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          // </result>
+          break;
+        }
+      }
+      done = true;
+      return null;
+    }
+
+    @Override
+    public void close() {
+      done = true;
+      try {
+        xr.close();
+      } catch (XMLStreamException e) {
+        LOGGER.log(Level.FINER, "Error closing XMLStreamReader: {0}", e.getMessage());
+      }
+    }
+  }
+
+  private WsApiRowReader() {
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory f = XMLInputFactory.newInstance();
+    f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    f.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return f;
+  }
+
+  /**
+   * Read all rows from <code>is</code> and return mapped objects.
+   */
+  public static <T> List<T> readAll(InputStream is, RowMapper<T> mapper) throws ApiException {
+    List<T> result = new ArrayList<>();
+    read(is, mapper, result::add);
+    return result;
+  }
+
+  /**
+   * Read rows from <code>is</code> and pass mapped objects (if not null) to <code>consumer</code>. The stream is not
+   * closed.
+   *
+   * @return number of rows read
+   */
+  public static <T> int read(InputStream is, RowMapper<T> mapper, Consumer<? super T> consumer) throws ApiException {
+    try (RowIterator<T> it = iterator(is, mapper)) {
+      while (it.hasNext()) {
+        consumer.accept(it.next());
+      }
+      return it.getRowCount();
+    } catch (UncheckedApiException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Iterate over mapped rows (if not null) of <code>is</code>. The stream is not closed.
+   */
+  public static <T> RowIterator<T> iterator(InputStream is, RowMapper<T> mapper) throws ApiException {
+    return new RowIterator<>(is, mapper);
+  }
+
+  // reader is positioned on <row>, returns on </row>
+  private static void readRow(XMLStreamReader xr, Row row) throws XMLStreamException {
+    row.fields.clear();
+    row.index++;
+    StringBuilder sb = new StringBuilder();
+    int           event;
+    while ((event = xr.next()) != XMLStreamConstants.END_ELEMENT) {
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String name = xr.getLocalName();
+        sb.setLength(0);
+        appendText(xr, sb);
+        // first element wins (XPath string() semantics)
+        row.fields.putIfAbsent(name, sb.toString());
+      }
+    }
+  }
+
+  // collect text content of the current element including descendants, returns on matching end tag
+  private static void appendText(XMLStreamReader xr, StringBuilder sb) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      switch (xr.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        depth++;
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        depth--;
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        sb.append(xr.getTextCharacters(), xr.getTextStart(), xr.getTextLength());
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  private static void skipElement(XMLStreamReader xr) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = xr.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+}
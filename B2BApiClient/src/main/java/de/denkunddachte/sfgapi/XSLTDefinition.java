@@ -34,6 +34,7 @@ import java.time.temporal.ChronoField;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
@@ -332,7 +333,7 @@ public class XSLTDefinition extends ApiClient {
 
       this.versions = new ArrayList<>();
       try {
-        JSONArray json = getJSONArray(getJSONFromWsApi(SVC_NAME, "&json=1&name=" + getName(), true));
+        JSONArray json = getJSONArrayFromWsApi(SVC_NAME, "&json=1&name=" + getName());
         for (int i = 0; i < json.length(); i++) {
           versions.add(json.getJSONObject(i).getInt(TEMPLATE_VERSION));
           if (i == 0) {
@@ -474,7 +475,7 @@ public class XSLTDefinition extends ApiClient {
       if (getTemplates) {
         params.append("&template=1");
       }
-      JSONArray json = new JSONArray(getJSONFromWsApi(SVC_NAME, params.toString(), true));
+      JSONArray json = getJSONArrayFromWsApi(SVC_NAME, params.toString());
 
       for (int i = 0; i < json.length(); i++) {
         switch (getVersions) {
@@ -508,6 +509,14 @@ public class XSLTDefinition extends ApiClient {
     return result;
   }
 
+  public static CompletableFuture<XSLTDefinition> findAsync(String name, int version) {
+    return async(() -> find(name, version));
+  }
+
+  public static CompletableFuture<List<XSLTDefinition>> findAllAsync(String globPattern, VERSIONS getVersions, boolean getTemplates) {
+    return async(() -> findAll(globPattern, getVersions, getTemplates));
+  }
+
   public static XSLTDefinition find(String name) throws ApiException {
     return find(name, 0);
   }
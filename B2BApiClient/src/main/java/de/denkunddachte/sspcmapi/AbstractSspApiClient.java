@@ -16,6 +16,7 @@
 package de.denkunddachte.sspcmapi;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
@@ -33,21 +34,24 @@ import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpStatus;
-import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.json.JSONObject;
 import org.xml.sax.InputSource;
 
 import de.denkunddachte.util.ApiConfig;
+import de.denkunddachte.util.ApiResponse;
+import de.denkunddachte.util.ApiStats;
 import de.denkunddachte.exception.ApiException;
 
 public abstract class AbstractSspApiClient implements AutoCloseable {
@@ -76,9 +80,8 @@ public abstract class AbstractSspApiClient implements AutoCloseable {
   // instance variables
   private String      sessionToken;
   CloseableHttpClient httpclient;
-  private ApiConfig   apicfg = null;
-  private int         apiReturnCode;
-  private String      apiErrorMsg;
+  private ApiConfig   apicfg       = null;
+  private final ThreadLocal<ApiResponse> lastResponse = new ThreadLocal<>();
   private String      apiBaseURI;
   private String      passphrase;
 
@@ -88,10 +91,7 @@ public abstract class AbstractSspApiClient implements AutoCloseable {
 
   protected void init() throws ApiException {
     apicfg = ApiConfig.getInstance();
-    final RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(300 * 60 * 1000).setConnectionRequestTimeout(300 * 60 * 1000)
-        .setSocketTimeout(300 * 60 * 1000).setContentCompressionEnabled(false).build();
-    apicfg.getHttpClientConnectionManager().closeExpiredConnections();
-    httpclient = HttpClientBuilder.create().setConnectionManager(apicfg.getHttpClientConnectionManager()).setDefaultRequestConfig(requestConfig).build();
+    httpclient = apicfg.getHttpClient();
     apiBaseURI = apicfg.getSspBaseURI();
     if (login(apicfg.getSspUser(), apicfg.getSspPassword())) {
       LOGGER.log(Level.FINER, "Login succeeded. Token: {0}", sessionToken);
@@ -135,13 +135,7 @@ public abstract class AbstractSspApiClient implements AutoCloseable {
     HttpGet req = new HttpGet(apiBaseURI + SLASH + svc + (method == null ? "" : SLASH + method) + (object == null ? "" : SLASH + urlEncode(object)));
     req.addHeader(X_AUTHENTICATION, sessionToken);
     req.addHeader(X_PASSPHRASE, getPassphrase());
-    clearApiError();
-    LOGGER.log(Level.FINER, "Execute request {0}", req);
-    try (CloseableHttpResponse response = httpclient.execute(req)) {
-      return getXmlResponse(response.getEntity());
-    } catch (IOException e) {
-      throw new ApiException("Could not execute request " + req + "!", e);
-    }
+    return execute(svc, req);
   }
 
   public XmlResponse doPost(String method, String object, String data) throws ApiException {
@@ -158,18 +152,14 @@ public abstract class AbstractSspApiClient implements AutoCloseable {
     HttpPost req = new HttpPost(apiBaseURI + SLASH + svc + (method == null ? "" : SLASH + method) + (object == null ? "" : SLASH + urlEncode(object)));
     if (sessionToken != null)
       req.addHeader(X_AUTHENTICATION, sessionToken);
-    clearApiError();
     try {
       StringEntity entity = new StringEntity(data);
       entity.setContentType(data.charAt(0) == '<' ? APPLICATION_XML : APPLICATION_JSON);
       req.setEntity(entity);
-      LOGGER.log(Level.FINER, "Execute request {0}", req);
-      try (CloseableHttpResponse response = httpclient.execute(req)) {
-        return getXmlResponse(response.getEntity());
-      }
-    } catch (IOException e) {
-      throw new ApiException("Could not execute request " + req + "!", e);
+    } catch (UnsupportedEncodingException e) {
+      throw new ApiException(e);
     }
+    return execute(svc, req);
   }
 
   public XmlResponse doPut(String method, String object, String data) throws ApiException {
@@ -186,18 +176,14 @@ public abstract class AbstractSspApiClient implements AutoCloseable {
     HttpPut req = new HttpPut(apiBaseURI + SLASH + svc + (method == null ? "" : SLASH + method) + (object == null ? "" : SLASH + urlEncode(object)));
     req.addHeader(X_AUTHENTICATION, sessionToken);
     req.addHeader(X_PASSPHRASE, getPassphrase());
-    clearApiError();
     try {
       StringEntity entity = new StringEntity(data);
       entity.setContentType(data.charAt(0) == '<' ? APPLICATION_XML : APPLICATION_JSON);
       req.setEntity(entity);
-      LOGGER.log(Level.FINER, "Execute request {0}", req);
-      try (CloseableHttpResponse response = httpclient.execute(req)) {
-        return getXmlResponse(response.getEntity());
-      }
-    } catch (IOException e) {
-      throw new ApiException("Could not execute request " + req + "!", e);
+    } catch (UnsupportedEncodingException e) {
+      throw new ApiException(e);
     }
+    return execute(svc, req);
   }
 
   public XmlResponse doDelete(String method, String object) throws ApiException {
@@ -212,20 +198,37 @@ public abstract class AbstractSspApiClient implements AutoCloseable {
     }
     HttpDelete req = new HttpDelete(apiBaseURI + SLASH + svc + (method == null ? "" : SLASH + method) + (object == null ? "" : SLASH + urlEncode(object)));
     req.addHeader(X_AUTHENTICATION, sessionToken);
-    clearApiError();
-    try {
-      LOGGER.log(Level.FINER, "Execute request {0}", req);
-      try (CloseableHttpResponse response = httpclient.execute(req)) {
-        return getXmlResponse(response.getEntity());
-      }
+    return execute(svc, req);
+  }
+
+  private XmlResponse execute(String svc, HttpRequestBase req) throws ApiException {
+    ApiResponse r = new ApiResponse(req.getMethod(), req.getURI().toString());
+    r.setStats(ApiStats.SSPCMAPI, svc);
+    if (req instanceof HttpEntityEnclosingRequest && ((HttpEntityEnclosingRequest) req).getEntity() != null) {
+      r.setBytesSent(Math.max(0, ((HttpEntityEnclosingRequest) req).getEntity().getContentLength()));
+    }
+    lastResponse.set(r);
+    LOGGER.log(Level.FINER, "Execute request {0}", req);
+    try (CloseableHttpResponse response = httpclient.execute(req)) {
+      r.setStatus(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase());
+      XmlResponse xr = getXmlResponse(response.getEntity());
+      xr.setApiResponse(r);
+      return xr;
     } catch (IOException e) {
+      r.setErrorMsg(e.getMessage());
       throw new ApiException("Could not execute request " + req + "!", e);
+    } finally {
+      r.complete();
     }
   }
 
   protected XmlResponse getXmlResponse(HttpEntity entity) throws ApiException {
-    try {
-      StringReader rd = new StringReader(IOUtils.toString(entity.getContent(), StandardCharsets.UTF_8.name()));
+    ApiResponse r = lastResponse.get();
+    try (CountingInputStream is = new CountingInputStream(entity.getContent())) {
+      StringReader rd = new StringReader(IOUtils.toString(is, StandardCharsets.UTF_8.name()));
+      if (r != null) {
+        r.setBytesReceived(is.getByteCount());
+      }
       rd.mark(1000);
       char[] cb = new char[100];
       if (rd.read(cb) < 20 || !(new String(cb)).contains(XML_RESPONSE)) {
@@ -236,9 +239,15 @@ public abstract class AbstractSspApiClient implements AutoCloseable {
       Unmarshaller um = jctx.createUnmarshaller();
       XmlResponse xmlResponse = (XmlResponse) um.unmarshal(rd);
       if (xmlResponse != null) {
-        apiReturnCode = xmlResponse.getHttpCode();
-        apiErrorMsg = (xmlResponse.getValidationErrors() != null ? xmlResponse.getValidationErrors()
-            : "[" + xmlResponse.getMessageLevel() + "]: " + xmlResponse.getMessage());
+        if (r != null) {
+          r.setStatus(xmlResponse.getHttpCode(), xmlResponse.getHttpStatus());
+          // informational messages are returned with successful responses, too
+          if (xmlResponse.getValidationErrors() != null && !xmlResponse.getValidationErrors().trim().isEmpty()) {
+            r.setErrorMsg(xmlResponse.getValidationErrors());
+          } else if ("ERROR".equalsIgnoreCase(xmlResponse.getMessageLevel()) || xmlResponse.getHttpCode() < 200 || xmlResponse.getHttpCode() >= 300) {
+            r.setErrorMsg("[" + xmlResponse.getMessageLevel() + "]: " + xmlResponse.getMessage());
+          }
+        }
         LOGGER.log(Level.FINER, "Got XmlResponse {0}/{1}, validationErrors: {2}, messageLevel={3}, message={4}", new Object[] { xmlResponse.getHttpCode(),
             xmlResponse.getHttpStatus(), xmlResponse.getValidationErrorsList(), xmlResponse.getMessageLevel(), xmlResponse.getMessage() });
         return xmlResponse;
@@ -275,17 +284,27 @@ public abstract class AbstractSspApiClient implements AutoCloseable {
     }
   }
 
+  /**
+   * Result of the last request executed by the current thread with this client.
+   * 
+   * @return result envelope or null
+   */
+  public ApiResponse getLastResponse() {
+    return lastResponse.get();
+  }
+
   public int getApiReturnCode() {
-    return apiReturnCode;
+    ApiResponse r = lastResponse.get();
+    return r == null ? 0 : r.getHttpCode();
   }
 
   public String getApiErrorMsg() {
-    return apiErrorMsg;
+    ApiResponse r = lastResponse.get();
+    return r == null ? null : r.getErrorMsg();
   }
 
   protected void clearApiError() {
-    apiErrorMsg = null;
-    apiReturnCode = 0;
+    lastResponse.remove();
   }
 
   protected static String urlEncode(String str) throws ApiException {
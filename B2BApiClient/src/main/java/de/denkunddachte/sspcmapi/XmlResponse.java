@@ -24,8 +24,11 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 
+import de.denkunddachte.util.ApiResponse;
+
 @XmlAccessorType(XmlAccessType.PROPERTY)
 @XmlType(name = "",
     propOrder = { "httpCode", "httpStatus", "action", "message", "messageLevel", "configurationObjects", "validationErrors", "objectsList", "results",
@@ -42,6 +45,7 @@ public class XmlResponse {
   private List<String>        objectsList;
   private Map<String, String> resultMap = new HashMap<>();
   protected List<String>      validationErrorsList;
+  private ApiResponse         apiResponse;
 
   public XmlResponse() {
   }
@@ -73,6 +77,18 @@ public class XmlResponse {
     this.resultMap = results;
   }
 
+  /**
+   * @return result envelope of the request (HTTP status, timing, bytes transferred) or null for dry run responses
+   */
+  @XmlTransient
+  public ApiResponse getApiResponse() {
+    return apiResponse;
+  }
+
+  void setApiResponse(ApiResponse apiResponse) {
+    this.apiResponse = apiResponse;
+  }
+
   public int getHttpCode() {
     return httpCode;
   }
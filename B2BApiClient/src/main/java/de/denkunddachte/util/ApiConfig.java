@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.KeyManagementException;
@@ -37,20 +38,35 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.net.ssl.SSLContext;
 
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContexts;
 import org.apache.http.ssl.TrustStrategy;
 
@@ -70,11 +86,18 @@ import de.denkunddachte.sfgapi.Validator;
 import de.denkunddachte.util.Password.CryptException;
 
 public class ApiConfig {
+  private static final Logger         LOGGER                            = Logger.getLogger(ApiConfig.class.getName());
 
   public static final String          WSAPILIST                         = "sfgapi.wsapilist";
   public static final String          CACHEEXPIRY                       = "sfgapi.cacheexpiry";
   public static final String          CACHEDIR                          = "sfgapi.cachedir";
   public static final String          USECACHE                          = "sfgapi.usecache";
+  public static final String          CACHE_MAX_ENTRIES                 = "sfgapi.cache.maxEntries";
+  public static final String          CACHE_MAX_SIZE_MB                 = "sfgapi.cache.maxSizeMB";
+  public static final String          CACHE_PERSISTENT                  = "sfgapi.cache.persistent";
+  public static final String          PDSTORE_DIR                       = "sfgapi.pdstore.dir";
+  public static final String          PDSTORE_MAX_SIZE_MB               = "sfgapi.pdstore.maxSizeMB";
+  public static final String          BPMLCACHE_DIR                     = "sfgapi.bpmlcache.dir";
   public static final String          TRUST_ALL_CERTS                   = "sfgapi.trustAllCerts";
   public static final String          TRUSTSTORE                        = "sfgapi.trustStore";
   public static final String          TRUSTSTORE_PASS                   = "sfgapi.trustStorePass";
@@ -89,7 +112,32 @@ public class ApiConfig {
   public static final String          EXECBP_CMD                        = "sfgapi.executebp.cmd";
   public static final String          EXECBP_COPYCMD                    = "sfgapi.executebp.copycmd";
   public static final String          EXECBP_WORKDIR                    = "sfgapi.executebp.workdir";
+  public static final String          EXECBP_GZIP                       = "sfgapi.executebp.gzip";
   public static final String          API_REQ_RETRIES                   = "sfgapi.retries";
+  public static final String          API_PREFETCH_PAGES                = "sfgapi.prefetchPages";
+  public static final String          ASYNC_THREADS                     = "sfgapi.async.threads";
+  public static final String          ASYNC_VIRTUAL_THREADS             = "sfgapi.async.virtualThreads";
+  public static final String          RATE_LIMIT                        = "sfgapi.rateLimit";
+  public static final String          RATE_LIMIT_BURST                  = "sfgapi.rateLimit.burst";
+  public static final String          RETRY_BACKOFF                     = "sfgapi.retry.backoff";
+  public static final String          RETRY_MAX_BACKOFF                 = "sfgapi.retry.maxBackoff";
+  public static final String          CB_FAILURES                       = "sfgapi.circuitBreaker.failures";
+  public static final String          CB_OPEN_SECONDS                   = "sfgapi.circuitBreaker.openSeconds";
+  public static final String          TIMEOUT_CONNECT                   = "sfgapi.timeout.connect";
+  public static final String          TIMEOUT_READ                      = "sfgapi.timeout.read";
+  public static final String          TIMEOUT_WRITE                     = "sfgapi.timeout.write";
+  public static final String          BULK_CONCURRENCY                  = "sfgapi.bulk.concurrency";
+  public static final String          BULK_RETRIES                      = "sfgapi.bulk.retries";
+  public static final String          BULK_RETRY_DELAY                  = "sfgapi.bulk.retryDelay";
+  public static final String          HTTP_MAX_CONNECTIONS              = "sfgapi.http.maxConnections";
+  public static final String          HTTP_MAX_CONNECTIONS_PER_ROUTE    = "sfgapi.http.maxConnectionsPerRoute";
+  public static final String          HTTP_KEEPALIVE                    = "sfgapi.http.keepAlive";
+  public static final String          HTTP_IDLE_TIMEOUT                 = "sfgapi.http.idleTimeout";
+  public static final String          WSAPI_BATCH_WINDOW                = "sfgapi.wsapi.batchWindow";
+  public static final String          WSAPI_BATCH_SIZE                  = "sfgapi.wsapi.batchSize";
+  public static final String          WSAPI_PAGE_SIZE                   = "sfgapi.wsapi.pageSize";
+  public static final String          WORKFLOW_LAZY_STEPS               = "sfgapi.workflow.lazySteps";
+  public static final String          WORKFLOW_STEP_WINDOW              = "sfgapi.workflow.stepWindow";
   public static final String          USER                              = "user";
 
   // B2Bi and custom table JPA config (EclipseLink)
@@ -165,17 +213,53 @@ public class ApiConfig {
   private String                      wsApiBaseURI;
   private String                      apiUser;
   private String                      apiCredentials;
-  private HttpClientConnectionManager httpClientConnectionManager;
+  private PoolingHttpClientConnectionManager httpClientConnectionManager;
+  private CloseableHttpClient         httpClient;
   private int                         apiRangeSize                      = 1000;
+  private int                         apiPrefetchPages                  = 4;
   private String                      wsApiBpName                       = "DD_API_WS";
   private final Set<String>           wsApiList                         = new HashSet<>();
   private boolean                     cacheResults                      = false;
   private File                        cacheDir                          = new File("apicache");
   private long                        cacheExpiryMillis                 = 300 * 1000L;
+  private int                         cacheMaxEntries                   = 10000;
+  private long                        cacheMaxSizeMB                    = 64;
+  private boolean                     cachePersistent                   = true;
+  private ResponseCache               responseCache;
+  private File                        pdStoreDir;
+  private long                        pdStoreMaxSizeMB                  = 256;
+  private ProcessDataStore            processDataStore;
+  private File                        bpmlCacheDir;
   private String                      sfgExecBpCmd;
   private String                      sfgExecBpCopycmd;
   private String                      sfgExecBpDir;
+  private boolean                     sfgExecBpGzip                     = false;
   private int                         apiRequestRetries                 = 3;
+  private int                         asyncThreads                      = 8;
+  private boolean                     asyncVirtualThreads               = true;
+  private Executor                    asyncExecutor;
+  private double                      rateLimit                         = 0;
+  private double                      rateLimitBurst                    = 0;
+  private long                        retryBackoff                      = 500;
+  private long                        retryMaxBackoff                   = 30000;
+  private int                         circuitBreakerFailures            = 5;
+  private long                        circuitBreakerOpenSeconds         = 30;
+  private int                         timeoutConnect                    = 30;
+  private int                         timeoutRead                       = 600;
+  private int                         timeoutWrite                      = 3600;
+  private ApiResilience               resilience;
+  private int                         bulkConcurrency                   = 8;
+  private int                         bulkRetries                       = 0;
+  private long                        bulkRetryDelay                    = 500;
+  private int                         httpMaxConnections                = 20;
+  private int                         httpMaxConnectionsPerRoute        = 10;
+  private long                        httpKeepAliveSecs                 = 60;
+  private long                        httpIdleTimeoutSecs               = 30;
+  private long                        wsApiBatchWindow                  = 0;
+  private int                         wsApiBatchSize                    = 20;
+  private int                         wsApiPageSize                     = 1000;
+  private int                         workflowLazySteps                 = 10000;
+  private int                         workflowStepWindow                = 1000;
 
   private String                      dbDriver;
   private String                      dbUrl;
@@ -358,6 +442,24 @@ public class ApiConfig {
         case CACHEEXPIRY:
           cacheExpiryMillis = Long.parseLong((String) props.get(key));
           break;
+        case CACHE_MAX_ENTRIES:
+          cacheMaxEntries = Integer.parseInt((String) props.get(key));
+          break;
+        case CACHE_MAX_SIZE_MB:
+          cacheMaxSizeMB = Long.parseLong((String) props.get(key));
+          break;
+        case CACHE_PERSISTENT:
+          cachePersistent = Boolean.parseBoolean((String) props.get(key));
+          break;
+        case PDSTORE_DIR:
+          pdStoreDir = ((String) props.get(key)).trim().isEmpty() ? null : new File((String) props.get(key));
+          break;
+        case PDSTORE_MAX_SIZE_MB:
+          pdStoreMaxSizeMB = Long.parseLong((String) props.get(key));
+          break;
+        case BPMLCACHE_DIR:
+          bpmlCacheDir = ((String) props.get(key)).trim().isEmpty() ? null : new File((String) props.get(key));
+          break;
         case WSAPILIST:
           useWsApiFor(Arrays.asList(((String) props.get(key)).split("\\s*,\\s*")));
           break;
@@ -520,6 +622,9 @@ public class ApiConfig {
         case API_RANGE_SIZE:
           apiRangeSize = Integer.parseInt((String) props.get(key));
           break;
+        case API_PREFETCH_PAGES:
+          apiPrefetchPages = Integer.parseInt((String) props.get(key));
+          break;
         case EXECBP_CMD:
           sfgExecBpCmd = (String) props.get(key);
           break;
@@ -529,9 +634,81 @@ public class ApiConfig {
         case EXECBP_WORKDIR:
           sfgExecBpDir = (String) props.get(key);
           break;
+        case EXECBP_GZIP:
+          sfgExecBpGzip = Boolean.parseBoolean((String) props.get(key));
+          break;
         case API_REQ_RETRIES:
           apiRequestRetries = Integer.parseInt((String) props.get(key));
           break;
+        case ASYNC_THREADS:
+          asyncThreads = Integer.parseInt((String) props.get(key));
+          break;
+        case ASYNC_VIRTUAL_THREADS:
+          asyncVirtualThreads = Boolean.parseBoolean((String) props.get(key));
+          break;
+        case RATE_LIMIT:
+          rateLimit = Double.parseDouble((String) props.get(key));
+          break;
+        case RATE_LIMIT_BURST:
+          rateLimitBurst = Double.parseDouble((String) props.get(key));
+          break;
+        case RETRY_BACKOFF:
+          retryBackoff = Long.parseLong((String) props.get(key));
+          break;
+        case RETRY_MAX_BACKOFF:
+          retryMaxBackoff = Long.parseLong((String) props.get(key));
+          break;
+        case CB_FAILURES:
+          circuitBreakerFailures = Integer.parseInt((String) props.get(key));
+          break;
+        case CB_OPEN_SECONDS:
+          circuitBreakerOpenSeconds = Long.parseLong((String) props.get(key));
+          break;
+        case TIMEOUT_CONNECT:
+          timeoutConnect = Integer.parseInt((String) props.get(key));
+          break;
+        case TIMEOUT_READ:
+          timeoutRead = Integer.parseInt((String) props.get(key));
+          break;
+        case TIMEOUT_WRITE:
+          timeoutWrite = Integer.parseInt((String) props.get(key));
+          break;
+        case BULK_CONCURRENCY:
+          bulkConcurrency = Integer.parseInt((String) props.get(key));
+          break;
+        case BULK_RETRIES:
+          bulkRetries = Integer.parseInt((String) props.get(key));
+          break;
+        case BULK_RETRY_DELAY:
+          bulkRetryDelay = Long.parseLong((String) props.get(key));
+          break;
+        case HTTP_MAX_CONNECTIONS:
+          httpMaxConnections = Integer.parseInt((String) props.get(key));
+          break;
+        case HTTP_MAX_CONNECTIONS_PER_ROUTE:
+          httpMaxConnectionsPerRoute = Integer.parseInt((String) props.get(key));
+          break;
+        case HTTP_KEEPALIVE:
+          httpKeepAliveSecs = Long.parseLong((String) props.get(key));
+          break;
+        case HTTP_IDLE_TIMEOUT:
+          httpIdleTimeoutSecs = Long.parseLong((String) props.get(key));
+          break;
+        case WSAPI_BATCH_WINDOW:
+          wsApiBatchWindow = Long.parseLong((String) props.get(key));
+          break;
+        case WSAPI_BATCH_SIZE:
+          wsApiBatchSize = Integer.parseInt((String) props.get(key));
+          break;
+        case WSAPI_PAGE_SIZE:
+          wsApiPageSize = Integer.parseInt((String) props.get(key));
+          break;
+        case WORKFLOW_LAZY_STEPS:
+          workflowLazySteps = Integer.parseInt((String) props.get(key));
+          break;
+        case WORKFLOW_STEP_WINDOW:
+          workflowStepWindow = Integer.parseInt((String) props.get(key));
+          break;
         case USER:
           user = (String) props.get(key);
           break;
@@ -580,7 +757,7 @@ public class ApiConfig {
     this.apiCredentials = "Basic " + Base64.getEncoder().encodeToString((apiUser + ":" + password).getBytes());
   }
 
-  public HttpClientConnectionManager getHttpClientConnectionManager() throws ApiException {
+  public synchronized PoolingHttpClientConnectionManager getHttpClientConnectionManager() throws ApiException {
     if (httpClientConnectionManager == null) {
       if (trustAllCerts) {
         try {
@@ -595,23 +772,220 @@ public class ApiConfig {
           SSLConnectionSocketFactory        sslsf                  = new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
           Registry<ConnectionSocketFactory> socketFactoryRegistry  = RegistryBuilder.<ConnectionSocketFactory> create().register("https", sslsf)
               .register("http", new PlainConnectionSocketFactory()).build();
-          httpClientConnectionManager = new BasicHttpClientConnectionManager(socketFactoryRegistry);
+          httpClientConnectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
           this.trustAllCerts = true;
         } catch (KeyStoreException | KeyManagementException | NoSuchAlgorithmException e) {
           throw new ApiException("Error creating connection factory: " + e.getMessage(), e);
         }
       } else {
-        httpClientConnectionManager = new BasicHttpClientConnectionManager();
+        httpClientConnectionManager = new PoolingHttpClientConnectionManager();
         this.trustAllCerts = false;
       }
+      httpClientConnectionManager.setMaxTotal(httpMaxConnections);
+      httpClientConnectionManager.setDefaultMaxPerRoute(httpMaxConnectionsPerRoute);
+      // check stale connections that were idle for more than 2s before reusing them
+      httpClientConnectionManager.setValidateAfterInactivity(2000);
     }
     return httpClientConnectionManager;
   }
 
+  /**
+   * Returns the HTTP client shared by all API clients (B2Bi REST API, WS API and SSP CM API). The client is thread safe and uses a pooled
+   * connection manager (see {@link #HTTP_MAX_CONNECTIONS}, {@link #HTTP_MAX_CONNECTIONS_PER_ROUTE}). Expired and idle connections are evicted
+   * by a background thread.
+   * 
+   * @return shared http client
+   * @throws ApiException
+   */
+  public synchronized CloseableHttpClient getHttpClient() throws ApiException {
+    if (httpClient == null) {
+      final RequestConfig requestConfig = getRequestConfig(false);
+      httpClient = HttpClientBuilder.create().setConnectionManager(getHttpClientConnectionManager())
+          .setKeepAliveStrategy(getKeepAliveStrategy()).disableAutomaticRetries()
+          .setDefaultRequestConfig(requestConfig).evictExpiredConnections().evictIdleConnections(httpIdleTimeoutSecs, TimeUnit.SECONDS).build();
+    }
+    return httpClient;
+  }
+
+  /**
+   * Request config with timeouts for read (GET) or write (POST, PUT, DELETE) requests. Timeouts &lt;= 0 disable the timeout.
+   */
+  public RequestConfig getRequestConfig(boolean write) {
+    int socketTimeout = (int) TimeUnit.SECONDS.toMillis(write ? timeoutWrite : timeoutRead);
+    return RequestConfig.custom().setConnectTimeout((int) TimeUnit.SECONDS.toMillis(timeoutConnect)).setConnectionRequestTimeout(socketTimeout)
+        .setSocketTimeout(socketTimeout).setContentCompressionEnabled(false).build();
+  }
+
+  public synchronized ApiResilience getResilience() {
+    if (resilience == null) {
+      resilience = new ApiResilience(this);
+    }
+    return resilience;
+  }
+
+  /**
+   * Closes shared http client (if any) and releases all pooled connections.
+   */
+  public synchronized void closeHttpClient() {
+    if (httpClient != null) {
+      try {
+        httpClient.close();
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Error closing http client: {0}", e.getMessage());
+      }
+      httpClient = null;
+      httpClientConnectionManager = null;
+    }
+  }
+
+  /**
+   * Returns executor for asynchronous API calls. At most {@link #ASYNC_THREADS} calls run concurrently. If the runtime
+   * supports virtual threads (and {@link #ASYNC_VIRTUAL_THREADS} is not disabled), each call runs in a virtual thread,
+   * otherwise a fixed pool of daemon threads is used.
+   * 
+   * @return executor
+   */
+  public synchronized Executor getAsyncExecutor() {
+    if (asyncExecutor == null) {
+      final int maxThreads = Math.max(1, asyncThreads);
+      Executor  vte        = asyncVirtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+      if (vte != null) {
+        final Semaphore permits = new Semaphore(maxThreads);
+        asyncExecutor = r -> vte.execute(() -> {
+          permits.acquireUninterruptibly();
+          try {
+            r.run();
+          } finally {
+            permits.release();
+          }
+        });
+        LOGGER.log(Level.FINE, "Use virtual threads for async API calls (max. concurrency: {0}).", maxThreads);
+      } else {
+        final AtomicInteger threadNum = new AtomicInteger();
+        asyncExecutor = Executors.newFixedThreadPool(maxThreads, r -> {
+          Thread t = new Thread(r, "api-async-" + threadNum.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+        LOGGER.log(Level.FINE, "Use thread pool for async API calls (threads: {0}).", maxThreads);
+      }
+    }
+    return asyncExecutor;
+  }
+
+  // Executors.newVirtualThreadPerTaskExecutor() is available with Java 21+ only
+  private static Executor newVirtualThreadPerTaskExecutor() {
+    try {
+      return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.log(Level.FINER, "Virtual threads not available: {0}", e.toString());
+      return null;
+    }
+  }
+
+  // honor "Keep-Alive: timeout=n" sent by server, otherwise keep connections for httpKeepAliveSecs
+  private ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+    return (HttpResponse response, HttpContext context) -> {
+      HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+      while (it.hasNext()) {
+        HeaderElement he = it.nextElement();
+        if (he.getValue() != null && "timeout".equalsIgnoreCase(he.getName())) {
+          try {
+            return Long.parseLong(he.getValue()) * 1000L;
+          } catch (NumberFormatException ignore) {
+            // use default
+          }
+        }
+      }
+      return httpKeepAliveSecs * 1000L;
+    };
+  }
+
+  public int getHttpMaxConnections() {
+    return httpMaxConnections;
+  }
+
+  public int getHttpMaxConnectionsPerRoute() {
+    return httpMaxConnectionsPerRoute;
+  }
+
   public int getApiRangeSize() {
     return apiRangeSize;
   }
 
+  public int getApiPrefetchPages() {
+    return apiPrefetchPages;
+  }
+
+  public double getRateLimit() {
+    return rateLimit;
+  }
+
+  public double getRateLimitBurst() {
+    return rateLimitBurst;
+  }
+
+  public long getRetryBackoff() {
+    return retryBackoff;
+  }
+
+  public long getRetryMaxBackoff() {
+    return retryMaxBackoff;
+  }
+
+  public int getCircuitBreakerFailures() {
+    return circuitBreakerFailures;
+  }
+
+  public long getCircuitBreakerOpenSeconds() {
+    return circuitBreakerOpenSeconds;
+  }
+
+  public int getBulkConcurrency() {
+    return bulkConcurrency;
+  }
+
+  public int getBulkRetries() {
+    return bulkRetries;
+  }
+
+  public long getBulkRetryDelay() {
+    return bulkRetryDelay;
+  }
+
+  /**
+   * @return time (ms) concurrent WS API lookups are collected and sent as one batch request (0: no batching)
+   */
+  public long getWsApiBatchWindow() {
+    return wsApiBatchWindow;
+  }
+
+  public int getWsApiBatchSize() {
+    return wsApiBatchSize;
+  }
+
+  /**
+   * @return rows per page of paged WS API listings (workflows), 0 reads all rows in one request
+   */
+  public int getWsApiPageSize() {
+    return wsApiPageSize;
+  }
+
+  /**
+   * @return workflows with more steps are loaded step window by step window on access (requires WS API "steps"), 0
+   *         always loads all steps
+   */
+  public int getWorkflowLazySteps() {
+    return workflowLazySteps;
+  }
+
+  /**
+   * @return steps per window loaded on access for large workflows
+   */
+  public int getWorkflowStepWindow() {
+    return workflowStepWindow;
+  }
+
   public boolean isCacheResults() {
     return cacheResults;
   }
@@ -621,6 +995,7 @@ public class ApiConfig {
     if (cacheResults) {
       cacheResults = cacheDir.isDirectory() || cacheDir.mkdirs();
     } else {
+      closeResponseCache();
       if (cacheDir != null && cacheDir.isDirectory()) {
         try (Stream<Path> pathStream = Files.walk(cacheDir.toPath())) {
           pathStream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
@@ -631,6 +1006,71 @@ public class ApiConfig {
     }
   }
 
+  /**
+   * Returns response cache (in-memory LRU, optionally backed by a persistent cache file in cache dir) used if
+   * {@link #isCacheResults()}.
+   * 
+   * @return response cache
+   */
+  public synchronized ResponseCache getResponseCache() {
+    if (responseCache == null) {
+      responseCache = new ResponseCache(cacheExpiryMillis, cacheMaxEntries, cacheMaxSizeMB * 1024 * 1024,
+          cachePersistent ? new File(cacheDir, "apicache.dat") : null);
+    }
+    return responseCache;
+  }
+
+  private synchronized void closeResponseCache() {
+    if (responseCache != null) {
+      responseCache.close();
+      responseCache = null;
+    }
+  }
+
+  /**
+   * Returns the persistent store of decoded ProcessData (see {@link ProcessDataStore}), entries are kept per WS API
+   * host.
+   * 
+   * @return ProcessData store or null if sfgapi.pdstore.dir is not configured
+   */
+  public synchronized ProcessDataStore getProcessDataStore() {
+    if (processDataStore == null && pdStoreDir != null) {
+      processDataStore = new ProcessDataStore(pdStoreDir, getAuthority(wsApiBaseURI), pdStoreMaxSizeMB * 1024 * 1024);
+    }
+    return processDataStore;
+  }
+
+  /**
+   * Directory of the persistent cache of parsed BPML sources (WFD versions do not change).
+   * 
+   * @return cache directory or null if sfgapi.bpmlcache.dir is not configured
+   */
+  public File getBpmlCacheDir() {
+    return bpmlCacheDir;
+  }
+
+  /**
+   * Name that identifies the B2Bi instance in persistent caches (host:port of REST API, or WS API if REST API is not
+   * configured).
+   * 
+   * @return host:port or null
+   */
+  public String getServerNamespace() {
+    String ns = getAuthority(apiBaseURI);
+    return ns == null ? getAuthority(wsApiBaseURI) : ns;
+  }
+
+  private static String getAuthority(String uri) {
+    if (uri != null) {
+      try {
+        return URI.create(uri).getAuthority();
+      } catch (IllegalArgumentException e) {
+        LOGGER.log(Level.FINER, "Invalid URI {0}: {1}", new Object[] { uri, e.getMessage() });
+      }
+    }
+    return null;
+  }
+
   public File getCacheDir() {
     return cacheDir;
   }
@@ -930,6 +1370,10 @@ public class ApiConfig {
     return sfgExecBpDir;
   }
 
+  public boolean isSfgExecBpGzip() {
+    return sfgExecBpGzip;
+  }
+
   public int getApiRequestRetries() {
     return apiRequestRetries;
   }
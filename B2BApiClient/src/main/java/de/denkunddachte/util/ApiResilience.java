@@ -0,0 +1,331 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import de.denkunddachte.exception.ApiException;
+
+/**
+ * Resilience layer for API requests:
+ * <ul>
+ * <li>token bucket rate limiter per service ({@link ApiConfig#RATE_LIMIT})</li>
+ * <li>retries with exponential backoff and jitter on HTTP 429/502/503/504 and I/O errors/timeouts
+ * ({@link ApiConfig#API_REQ_RETRIES}, {@link ApiConfig#RETRY_BACKOFF}). POST requests are only retried if the server did
+ * not process them (connect errors, 429, 503).</li>
+ * <li>circuit breaker per host that fails fast after {@link ApiConfig#CB_FAILURES} consecutive failures and lets a
+ * single trial request pass after {@link ApiConfig#CB_OPEN_SECONDS}</li>
+ * <li>timeouts per operation: {@link ApiConfig#TIMEOUT_READ} for GET, {@link ApiConfig#TIMEOUT_WRITE} for POST, PUT and
+ * DELETE (unless the request has its own RequestConfig)</li>
+ * </ul>
+ * Counters are available with {@link #getMetrics()}.
+ */
+public class ApiResilience {
+  private static final Logger               LOGGER          = Logger.getLogger(ApiResilience.class.getName());
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final int                         maxRetries;
+  private final long                        backoffMillis;
+  private final long                        maxBackoffMillis;
+  private final double                      rateLimit;
+  private final double                      rateLimitBurst;
+  private final int                         cbFailures;
+  private final long                        cbOpenMillis;
+  private final RequestConfig               readConfig;
+  private final RequestConfig               writeConfig;
+  private final Map<String, RateLimiter>    rateLimiters    = new ConcurrentHashMap<>();
+  private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+  // metrics
+  private final LongAdder                   requests        = new LongAdder();
+  private final LongAdder                   retries         = new LongAdder();
+  private final LongAdder                   failures        = new LongAdder();
+  private final LongAdder                   timeouts        = new LongAdder();
+  private final LongAdder                   rejected        = new LongAdder();
+  private final LongAdder                   circuitOpened   = new LongAdder();
+  private final LongAdder                   throttledMillis = new LongAdder();
+
+  public ApiResilience(ApiConfig cfg) {
+    this.maxRetries = Math.max(0, cfg.getApiRequestRetries());
+    this.backoffMillis = Math.max(1, cfg.getRetryBackoff());
+    this.maxBackoffMillis = Math.max(backoffMillis, cfg.getRetryMaxBackoff());
+    this.rateLimit = cfg.getRateLimit();
+    this.rateLimitBurst = cfg.getRateLimitBurst();
+    this.cbFailures = cfg.getCircuitBreakerFailures();
+    this.cbOpenMillis = TimeUnit.SECONDS.toMillis(cfg.getCircuitBreakerOpenSeconds());
+    this.readConfig = cfg.getRequestConfig(false);
+    this.writeConfig = cfg.getRequestConfig(true);
+  }
+
+  /**
+   * Execute request.
+   *
+   * @param client
+   *          HTTP client
+   * @param request
+   *          request (entity must be repeatable to be retried)
+   * @param svcName
+   *          service name used for rate limiting
+   * @return response (the caller must close it)
+   * @throws IOException
+   *           if the request failed after all retries
+   * @throws ApiException
+   *           if the circuit breaker is open or the thread was interrupted
+   */
+  public CloseableHttpResponse execute(CloseableHttpClient client, HttpRequestBase request, String svcName) throws IOException, ApiException {
+    final boolean        write   = !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod());
+    final RateLimiter    limiter = getRateLimiter(svcName);
+    final CircuitBreaker breaker = getCircuitBreaker(request.getURI().getHost() + ":" + request.getURI().getPort());
+    if (request.getConfig() == null) {
+      request.setConfig(write ? writeConfig : readConfig);
+    }
+    int attempt = 0;
+    while (true) {
+      if (!breaker.allowRequest()) {
+        rejected.increment();
+        throw new ApiException("Circuit breaker for " + breaker.name + " is open after " + cbFailures + " failed requests, retry in "
+            + TimeUnit.MILLISECONDS.toSeconds(breaker.remainingOpenMillis()) + "s: " + request.getMethod() + " " + request.getURI());
+      }
+      acquire(limiter);
+      requests.increment();
+      CloseableHttpResponse response;
+      try {
+        response = client.execute(request);
+      } catch (IOException e) {
+        failures.increment();
+        if (e instanceof InterruptedIOException) {
+          timeouts.increment();
+        }
+        breaker.onFailure();
+        boolean notSent = e instanceof ConnectException || e instanceof ConnectTimeoutException;
+        if (attempt >= maxRetries || (!notSent && "POST".equals(request.getMethod())) || !isRepeatable(request)) {
+          throw e;
+        }
+        backoff(request, svcName, ++attempt, 0, e.toString());
+        continue;
+      } catch (RuntimeException e) {
+        breaker.onAbort();
+        throw e;
+      }
+
+      int code = response.getStatusLine().getStatusCode();
+      if (code == 502 || code == 503 || code == 504) {
+        failures.increment();
+        breaker.onFailure();
+      } else {
+        breaker.onSuccess();
+      }
+      if (attempt < maxRetries && isRetryable(request, code) && isRepeatable(request)) {
+        long retryAfter = getRetryAfter(response);
+        EntityUtils.consumeQuietly(response.getEntity());
+        response.close();
+        backoff(request, svcName, ++attempt, retryAfter, "HTTP " + code);
+        continue;
+      }
+      return response;
+    }
+  }
+
+  private static boolean isRetryable(HttpRequestBase request, int code) {
+    switch (code) {
+    case 429:
+    case 503:
+      return true;
+    case 502:
+    case 504:
+      // POST may have been processed
+      return !"POST".equals(request.getMethod());
+    default:
+      return false;
+    }
+  }
+
+  private static boolean isRepeatable(HttpRequestBase request) {
+    return !(request instanceof HttpEntityEnclosingRequest) || ((HttpEntityEnclosingRequest) request).getEntity() == null
+        || ((HttpEntityEnclosingRequest) request).getEntity().isRepeatable();
+  }
+
+  private static long getRetryAfter(CloseableHttpResponse response) {
+    Header h = response.getFirstHeader("Retry-After");
+    if (h != null) {
+      try {
+        return TimeUnit.SECONDS.toMillis(Long.parseLong(h.getValue().trim()));
+      } catch (NumberFormatException e) {
+        // HTTP date is not supported
+      }
+    }
+    return 0;
+  }
+
+  private void backoff(HttpRequestBase request, String svcName, int attempt, long retryAfter, String reason) throws ApiException {
+    long delay = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+    delay = Math.max(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1), Math.min(retryAfter, maxBackoffMillis));
+    LOGGER.log(Level.FINE, "Retry {0} {1} ({2}/{3}) in {4}ms: {5}", new Object[] { request.getMethod(), request.getURI(), attempt, maxRetries, delay, reason });
+    retries.increment();
+    ApiStats.getInstance().recordRetry(ApiStats.SFGAPI, svcName, request.getMethod());
+    request.reset();
+    try {
+      TimeUnit.MILLISECONDS.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiException("Interrupted while waiting to retry " + request + "!", e);
+    }
+  }
+
+  private void acquire(RateLimiter limiter) throws ApiException {
+    if (limiter == null) {
+      return;
+    }
+    if (!limiter.tryAcquire()) {
+      long start = System.currentTimeMillis();
+      try {
+        limiter.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ApiException("Interrupted while waiting for rate limiter!", e);
+      }
+      throttledMillis.add(System.currentTimeMillis() - start);
+    }
+  }
+
+  private RateLimiter getRateLimiter(String svcName) {
+    if (rateLimit <= 0) {
+      return null;
+    }
+    return rateLimiters.computeIfAbsent(svcName == null ? "" : svcName, k -> new RateLimiter(rateLimit, rateLimitBurst > 0 ? rateLimitBurst : rateLimit));
+  }
+
+  private CircuitBreaker getCircuitBreaker(String host) {
+    return circuitBreakers.computeIfAbsent(host, k -> new CircuitBreaker(k));
+  }
+
+  public State getCircuitBreakerState(String host) {
+    CircuitBreaker cb = circuitBreakers.get(host);
+    return cb == null ? State.CLOSED : cb.getState();
+  }
+
+  /**
+   * @return counters (requests, retries, failures, timeouts, rejected, circuitOpened, throttledMillis) and the state of
+   *         each circuit breaker (circuitBreaker.&lt;host:port&gt;)
+   */
+  public Map<String, Object> getMetrics() {
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put("requests", requests.sum());
+    m.put("retries", retries.sum());
+    m.put("failures", failures.sum());
+    m.put("timeouts", timeouts.sum());
+    m.put("rejected", rejected.sum());
+    m.put("circuitOpened", circuitOpened.sum());
+    m.put("throttledMillis", throttledMillis.sum());
+    for (CircuitBreaker cb : circuitBreakers.values()) {
+      m.put("circuitBreaker." + cb.name, cb.getState());
+    }
+    return m;
+  }
+
+  @Override
+  public String toString() {
+    return "ApiResilience " + getMetrics();
+  }
+
+  private class CircuitBreaker {
+    private final String name;
+    private State        state = State.CLOSED;
+    private int          consecutiveFailures;
+    private long         openedAt;
+    private boolean      trialRunning;
+
+    CircuitBreaker(String name) {
+      this.name = name;
+    }
+
+    synchronized State getState() {
+      return state;
+    }
+
+    synchronized long remainingOpenMillis() {
+      return Math.max(0, openedAt + cbOpenMillis - System.currentTimeMillis());
+    }
+
+    synchronized boolean allowRequest() {
+      if (cbFailures <= 0) {
+        return true;
+      }
+      if (state == State.OPEN) {
+        if (remainingOpenMillis() > 0) {
+          return false;
+        }
+        state = State.HALF_OPEN;
+        LOGGER.log(Level.INFO, "Circuit breaker for {0} is half open, sending trial request.", name);
+      }
+      if (state == State.HALF_OPEN) {
+        if (trialRunning) {
+          return false;
+        }
+        trialRunning = true;
+      }
+      return true;
+    }
+
+    // request ended without a result (e.g. RuntimeException), allow next trial request
+    synchronized void onAbort() {
+      trialRunning = false;
+    }
+
+    synchronized void onSuccess() {
+      if (state != State.CLOSED) {
+        LOGGER.log(Level.INFO, "Circuit breaker for {0} closed.", name);
+      }
+      state = State.CLOSED;
+      consecutiveFailures = 0;
+      trialRunning = false;
+    }
+
+    synchronized void onFailure() {
+      consecutiveFailures++;
+      trialRunning = false;
+      if (cbFailures > 0 && (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= cbFailures))) {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        circuitOpened.increment();
+        LOGGER.log(Level.WARNING, "Circuit breaker for {0} opened after {1} failed requests, fail fast for {2}s.",
+            new Object[] { name, consecutiveFailures, TimeUnit.MILLISECONDS.toSeconds(cbOpenMillis) });
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result envelope of a single API request: HTTP status, API error, timing and bytes transferred. The envelope is created
+ * when the request is sent and completed by the API client when the response was read. It is owned by the thread that
+ * executes the request, so it is not synchronized.
+ */
+public class ApiResponse {
+  private final String method;
+  private final String uri;
+  private final long   startTime;
+  private final long   startNanos;
+  private long         elapsedNanos = -1;
+  private int          httpCode;
+  private String       reason;
+  private String       errorMsg;
+  private long         bytesSent;
+  private long         bytesReceived;
+  private String       statsClient;
+  private String       statsService;
+
+  public ApiResponse(String method, String uri) {
+    this.method = method;
+    this.uri = uri;
+    this.startTime = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Create completed envelope for requests that were not sent to the server (e.g. dry run).
+   */
+  public static ApiResponse of(String method, String uri, int httpCode, String reason) {
+    ApiResponse r = new ApiResponse(method, uri);
+    r.setStatus(httpCode, reason);
+    r.complete();
+    return r;
+  }
+
+  public void setStatus(int httpCode, String reason) {
+    this.httpCode = httpCode;
+    this.reason = reason;
+  }
+
+  public void setErrorMsg(String errorMsg) {
+    this.errorMsg = errorMsg;
+  }
+
+  public void setBytesSent(long bytesSent) {
+    this.bytesSent = bytesSent;
+  }
+
+  public void setBytesReceived(long bytesReceived) {
+    this.bytesReceived = bytesReceived;
+  }
+
+  /**
+   * Record this request in {@link ApiStats} when it is completed.
+   */
+  public void setStats(String client, String service) {
+    this.statsClient = client;
+    this.statsService = service;
+  }
+
+  /**
+   * Stop the request timer. Subsequent calls are ignored.
+   */
+  public void complete() {
+    if (elapsedNanos < 0) {
+      elapsedNanos = System.nanoTime() - startNanos;
+      if (statsClient != null) {
+        ApiStats.getInstance().record(statsClient, statsService, this);
+      }
+    }
+  }
+
+  public boolean isComplete() {
+    return elapsedNanos >= 0;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getUri() {
+    return uri;
+  }
+
+  public int getHttpCode() {
+    return httpCode;
+  }
+
+  public String getReason() {
+    return reason;
+  }
+
+  public String getErrorMsg() {
+    return errorMsg;
+  }
+
+  public boolean isSuccess() {
+    return httpCode >= 200 && httpCode < 300 && errorMsg == null;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * @return elapsed time in ms (time until now, if the request was not yet completed)
+   */
+  public long getElapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(elapsedNanos < 0 ? System.nanoTime() - startNanos : elapsedNanos);
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos < 0 ? System.nanoTime() - startNanos : elapsedNanos;
+  }
+
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  @Override
+  public String toString() {
+    return "ApiResponse [method=" + method + ", uri=" + uri + ", httpCode=" + httpCode + ", reason=" + reason + ", errorMsg=" + errorMsg + ", elapsed="
+        + getElapsedMillis() + "ms, bytesSent=" + bytesSent + ", bytesReceived=" + bytesReceived + "]";
+  }
+}
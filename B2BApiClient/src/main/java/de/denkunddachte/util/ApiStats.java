@@ -0,0 +1,379 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Request statistics per client (SFG REST/WS API, SSP CM API, LDAP, JPA), service and operation: number of requests,
+ * errors, latency percentiles, bytes sent/received, cache hits and retries. The API clients record into the global
+ * instance ({@link #getInstance()}), the statistics can be read with {@link #getEntries()} or exported with
+ * {@link #toJSON()} and {@link #toPrometheus()}.
+ * <p>
+ * Latencies are counted in a histogram with logarithmic buckets (10% width), so percentiles are approximations with a
+ * relative error of less than 10%. Recording is lock free.
+ */
+public class ApiStats {
+  public static final String    SFGAPI   = "sfgapi";
+  public static final String    SSPCMAPI = "sspcmapi";
+  public static final String    LDAP     = "ldap";
+  public static final String    JPA      = "jpa";
+
+  private static final ApiStats INSTANCE = new ApiStats();
+
+  private final Map<String, Entry> entries = new ConcurrentSkipListMap<>();
+  private final long               created  = System.currentTimeMillis();
+
+  public static ApiStats getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Record a request.
+   *
+   * @param client
+   *          client (e.g. {@link #SFGAPI})
+   * @param service
+   *          REST service, WS API or entity
+   * @param operation
+   *          HTTP method or operation name
+   * @param nanos
+   *          elapsed time in ns
+   * @param error
+   *          true, if the request failed
+   * @param bytesSent
+   *          bytes sent
+   * @param bytesReceived
+   *          bytes received
+   */
+  public void record(String client, String service, String operation, long nanos, boolean error, long bytesSent, long bytesReceived) {
+    Entry e = getEntry(client, service, operation);
+    e.count.increment();
+    if (error) {
+      e.errors.increment();
+    }
+    e.bytesSent.add(bytesSent);
+    e.bytesReceived.add(bytesReceived);
+    e.totalNanos.add(nanos);
+    e.maxNanos.accumulate(nanos);
+    e.histogram.incrementAndGet(bucket(nanos));
+  }
+
+  public void record(String client, String service, String operation, long nanos, boolean error) {
+    record(client, service, operation, nanos, error, 0, 0);
+  }
+
+  /**
+   * Record completed API request. Requests with HTTP status outside 2xx/3xx (or without status) are counted as errors.
+   */
+  public void record(String client, String service, ApiResponse r) {
+    record(client, service, r.getMethod(), r.getElapsedNanos(), r.getHttpCode() < 200 || r.getHttpCode() >= 400,
+        r.getBytesSent(), r.getBytesReceived());
+  }
+
+  public void recordCacheHit(String client, String service, String operation) {
+    getEntry(client, service, operation).cacheHits.increment();
+  }
+
+  public void recordRetry(String client, String service, String operation) {
+    getEntry(client, service, operation).retries.increment();
+  }
+
+  /**
+   * Start timer for a request that is recorded with {@link Timer#stop(boolean)}.
+   */
+  public Timer start(String client, String service, String operation) {
+    return new Timer(client, service, operation);
+  }
+
+  private Entry getEntry(String client, String service, String operation) {
+    String key = client + '/' + service + '/' + operation;
+    Entry  e   = entries.get(key);
+    if (e == null) {
+      e = entries.computeIfAbsent(key, k -> new Entry(client, service, operation));
+    }
+    return e;
+  }
+
+  public List<Entry> getEntries() {
+    return new ArrayList<>(entries.values());
+  }
+
+  public Entry getEntry(String client, String service, String operation, boolean create) {
+    return create ? getEntry(client, service, operation) : entries.get(client + '/' + service + '/' + operation);
+  }
+
+  public boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  public void reset() {
+    entries.clear();
+  }
+
+  /**
+   * @return statistics as JSON object: <code>{"since": ..., "entries": [{"client": ..., "service": ..., "operation": ...,
+   *         "count": ..., "p50": ...}, ...]}</code> (times in ms)
+   */
+  public JSONObject toJSON() {
+    JSONObject o = new JSONObject();
+    o.put("since", created);
+    JSONArray a = new JSONArray();
+    for (Entry e : entries.values()) {
+      a.put(e.toJSON());
+    }
+    o.put("entries", a);
+    return o;
+  }
+
+  /**
+   * @return statistics in Prometheus text exposition format
+   */
+  public String toPrometheus() {
+    StringBuilder sb = new StringBuilder();
+    promHeader(sb, "b2bapi_requests_total", "counter", "Number of requests.");
+    entries.values().forEach(e -> promLine(sb, "b2bapi_requests_total", e, null, e.getCount()));
+    promHeader(sb, "b2bapi_errors_total", "counter", "Number of failed requests.");
+    entries.values().forEach(e -> promLine(sb, "b2bapi_errors_total", e, null, e.getErrors()));
+    promHeader(sb, "b2bapi_cache_hits_total", "counter", "Number of requests answered from cache.");
+    entries.values().forEach(e -> promLine(sb, "b2bapi_cache_hits_total", e, null, e.getCacheHits()));
+    promHeader(sb, "b2bapi_retries_total", "counter", "Number of retried requests.");
+    entries.values().forEach(e -> promLine(sb, "b2bapi_retries_total", e, null, e.getRetries()));
+    promHeader(sb, "b2bapi_sent_bytes_total", "counter", "Bytes sent.");
+    entries.values().forEach(e -> promLine(sb, "b2bapi_sent_bytes_total", e, null, e.getBytesSent()));
+    promHeader(sb, "b2bapi_received_bytes_total", "counter", "Bytes received.");
+    entries.values().forEach(e -> promLine(sb, "b2bapi_received_bytes_total", e, null, e.getBytesReceived()));
+    promHeader(sb, "b2bapi_request_duration_seconds", "summary", "Request latency.");
+    for (Entry e : entries.values()) {
+      if (e.getCount() > 0) {
+        promLine(sb, "b2bapi_request_duration_seconds", e, "0.5", e.getPercentileMillis(50) / 1000d);
+        promLine(sb, "b2bapi_request_duration_seconds", e, "0.95", e.getPercentileMillis(95) / 1000d);
+        promLine(sb, "b2bapi_request_duration_seconds", e, "0.99", e.getPercentileMillis(99) / 1000d);
+        promLine(sb, "b2bapi_request_duration_seconds_sum", e, null, e.getTotalMillis() / 1000d);
+        promLine(sb, "b2bapi_request_duration_seconds_count", e, null, e.getCount());
+      }
+    }
+    return sb.toString();
+  }
+
+  private static void promHeader(StringBuilder sb, String name, String type, String help) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void promLine(StringBuilder sb, String name, Entry e, String quantile, Number value) {
+    sb.append(name).append("{client=\"").append(promEscape(e.client)).append("\",service=\"").append(promEscape(e.service)).append("\",operation=\"")
+        .append(promEscape(e.operation)).append('"');
+    if (quantile != null) {
+      sb.append(",quantile=\"").append(quantile).append('"');
+    }
+    sb.append("} ").append(value).append('\n');
+  }
+
+  private static String promEscape(String s) {
+    return String.valueOf(s).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /**
+   * @return statistics as text table
+   */
+  public String format() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%-8s %-32s %-10s %7s %6s %6s %6s %9s %9s %9s %9s %10s %10s%n", "CLIENT", "SERVICE", "OPERATION", "COUNT", "ERRORS",
+        "CACHED", "RETRY", "AVG ms", "P50 ms", "P95 ms", "P99 ms", "SENT", "RECEIVED"));
+    for (Entry e : entries.values()) {
+      sb.append(String.format(Locale.ROOT, "%-8s %-32s %-10s %7d %6d %6d %6d %9.1f %9.1f %9.1f %9.1f %10d %10d%n", e.client, e.service, e.operation,
+          e.getCount(), e.getErrors(), e.getCacheHits(), e.getRetries(), e.getMeanMillis(), e.getPercentileMillis(50), e.getPercentileMillis(95),
+          e.getPercentileMillis(99), e.getBytesSent(), e.getBytesReceived()));
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return format();
+  }
+
+  // histogram buckets: upper bound of bucket i is MIN_NANOS * GROWTH^i, last bucket collects everything above
+  private static final double MIN_NANOS   = 10_000d;
+  private static final double GROWTH      = 1.1d;
+  private static final double LOG_GROWTH  = Math.log(GROWTH);
+  private static final int    NUM_BUCKETS = 210;
+
+  static int bucket(long nanos) {
+    if (nanos <= MIN_NANOS) {
+      return 0;
+    }
+    return Math.min(NUM_BUCKETS - 1, (int) Math.ceil(Math.log(nanos / MIN_NANOS) / LOG_GROWTH));
+  }
+
+  static double bucketUpperNanos(int bucket) {
+    return MIN_NANOS * Math.pow(GROWTH, bucket);
+  }
+
+  public static class Entry {
+    private final String          client;
+    private final String          service;
+    private final String          operation;
+    private final LongAdder       count         = new LongAdder();
+    private final LongAdder       errors        = new LongAdder();
+    private final LongAdder       cacheHits     = new LongAdder();
+    private final LongAdder       retries       = new LongAdder();
+    private final LongAdder       bytesSent     = new LongAdder();
+    private final LongAdder       bytesReceived = new LongAdder();
+    private final LongAdder       totalNanos    = new LongAdder();
+    private final LongAccumulator maxNanos      = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray histogram     = new AtomicLongArray(NUM_BUCKETS);
+
+    Entry(String client, String service, String operation) {
+      this.client = client;
+      this.service = service;
+      this.operation = operation;
+    }
+
+    public String getClient() {
+      return client;
+    }
+
+    public String getService() {
+      return service;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    public long getCacheHits() {
+      return cacheHits.sum();
+    }
+
+    public long getRetries() {
+      return retries.sum();
+    }
+
+    public long getBytesSent() {
+      return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+      return bytesReceived.sum();
+    }
+
+    public double getTotalMillis() {
+      return totalNanos.sum() / 1_000_000d;
+    }
+
+    public double getMeanMillis() {
+      long c = getCount();
+      return c == 0 ? 0d : getTotalMillis() / c;
+    }
+
+    public double getMaxMillis() {
+      return maxNanos.get() / 1_000_000d;
+    }
+
+    /**
+     * @param percentile
+     *          percentile (0-100)
+     * @return approximate latency percentile in ms
+     */
+    public double getPercentileMillis(double percentile) {
+      long[] h     = new long[NUM_BUCKETS];
+      long   total = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        h[i] = histogram.get(i);
+        total += h[i];
+      }
+      if (total == 0) {
+        return 0d;
+      }
+      long rank = Math.max(1L, (long) Math.ceil(total * percentile / 100d));
+      long n    = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        n += h[i];
+        if (n >= rank) {
+          return Math.min(bucketUpperNanos(i), maxNanos.get()) / 1_000_000d;
+        }
+      }
+      return getMaxMillis();
+    }
+
+    public JSONObject toJSON() {
+      JSONObject o = new JSONObject();
+      o.put("client", client);
+      o.put("service", service);
+      o.put("operation", operation);
+      o.put("count", getCount());
+      o.put("errors", getErrors());
+      o.put("cacheHits", getCacheHits());
+      o.put("retries", getRetries());
+      o.put("bytesSent", getBytesSent());
+      o.put("bytesReceived", getBytesReceived());
+      o.put("totalMillis", round(getTotalMillis()));
+      o.put("meanMillis", round(getMeanMillis()));
+      o.put("maxMillis", round(getMaxMillis()));
+      o.put("p50", round(getPercentileMillis(50)));
+      o.put("p95", round(getPercentileMillis(95)));
+      o.put("p99", round(getPercentileMillis(99)));
+      return o;
+    }
+
+    private static double round(double d) {
+      return Math.round(d * 1000d) / 1000d;
+    }
+
+    @Override
+    public String toString() {
+      return "Entry [" + client + "/" + service + "/" + operation + ", count=" + getCount() + ", errors=" + getErrors() + ", p50="
+          + getPercentileMillis(50) + "ms, p99=" + getPercentileMillis(99) + "ms]";
+    }
+  }
+
+  public class Timer {
+    private final String client;
+    private final String service;
+    private final String operation;
+    private final long   start = System.nanoTime();
+
+    Timer(String client, String service, String operation) {
+      this.client = client;
+      this.service = service;
+      this.operation = operation;
+    }
+
+    public void stop(boolean error) {
+      record(client, service, operation, System.nanoTime() - start, error);
+    }
+  }
+}
@@ -0,0 +1,313 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent store of decoded ProcessData and status reports of workflow steps. The data of a step (WORKFLOW_CONTEXT
+ * row) does not change once it was written, so entries are addressed by WFC_ID only and never expire. Each entry is a
+ * GZIP compressed file <code>&lt;dir&gt;/&lt;namespace&gt;/&lt;nn&gt;/&lt;wfcId&gt;.pd.gz</code>, the namespace
+ * separates B2Bi instances (WFC_IDs are not unique across systems). If the store exceeds maxBytes, least recently used
+ * entries are deleted. Files are written to a temporary file and renamed, so several processes can share the store.
+ * Errors are logged and treated as cache misses.
+ */
+public class ProcessDataStore {
+  private static final Logger LOGGER    = Logger.getLogger(ProcessDataStore.class.getName());
+  private static final int    MAGIC     = 0x50440001;
+  private static final String SUFFIX    = ".pd.gz";
+  private static final int    BUFSIZE   = 64 * 1024;
+  // evict down to this fraction of maxBytes
+  private static final double EVICT_PCT = 0.8;
+
+  private final File          dir;
+  private final long          maxBytes;
+  private final AtomicLong    bytes     = new AtomicLong(-1);
+
+  // statistics
+  private final AtomicLong    hits      = new AtomicLong();
+  private final AtomicLong    misses    = new AtomicLong();
+  private final AtomicLong    writes    = new AtomicLong();
+  private final AtomicLong    evictions = new AtomicLong();
+
+  /**
+   * Stored data of a step.
+   */
+  public static final class Entry {
+    private final Hashtable<String, String> processData;
+    private final Hashtable<String, String> statusReport;
+
+    public Entry(Hashtable<String, String> processData, Hashtable<String, String> statusReport) {
+      this.processData = processData;
+      this.statusReport = statusReport;
+    }
+
+    public Hashtable<String, String> getProcessData() {
+      return processData;
+    }
+
+    public Hashtable<String, String> getStatusReport() {
+      return statusReport;
+    }
+  }
+
+  /**
+   * @param baseDir
+   *          store directory
+   * @param namespace
+   *          subdirectory for the B2Bi instance (e.g. host:port of the WS API)
+   * @param maxBytes
+   *          max. size of all files in namespace
+   */
+  public ProcessDataStore(File baseDir, String namespace, long maxBytes) {
+    this.dir = new File(baseDir, namespace == null || namespace.isEmpty() ? "default" : namespace.replaceAll("[^A-Za-z0-9._-]", "_"));
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Read stored step data.
+   *
+   * @param wfcId
+   *          WFC_ID
+   * @return stored data or null
+   */
+  public Entry get(String wfcId) {
+    File f = getFile(wfcId);
+    if (f == null || !f.isFile()) {
+      misses.incrementAndGet();
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(f), BUFSIZE), BUFSIZE))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Invalid file format!");
+      }
+      Entry e = new Entry(readTable(in), readTable(in));
+      if (!f.setLastModified(System.currentTimeMillis())) {
+        LOGGER.log(Level.FINER, "Could not touch {0}.", f);
+      }
+      hits.incrementAndGet();
+      return e;
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Error reading {0}, remove entry: {1}", new Object[] { f, e.getMessage() });
+      delete(f);
+      misses.incrementAndGet();
+      return null;
+    }
+  }
+
+  /**
+   * Store step data. Existing entries are replaced.
+   *
+   * @param wfcId
+   *          WFC_ID
+   * @param processData
+   *          decoded ProcessData (or null)
+   * @param statusReport
+   *          decoded status report (or null)
+   */
+  public void put(String wfcId, Hashtable<String, String> processData, Hashtable<String, String> statusReport) {
+    File f = getFile(wfcId);
+    if (f == null) {
+      return;
+    }
+    File tmp = null;
+    try {
+      File parent = f.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+        throw new IOException("Could not create directory " + parent + "!");
+      }
+      // prefix needs at least 3 characters
+      tmp = File.createTempFile("." + wfcId + "_", ".tmp", parent);
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp), BUFSIZE), BUFSIZE))) {
+        out.writeInt(MAGIC);
+        writeTable(out, processData);
+        writeTable(out, statusReport);
+      }
+      long oldSize = f.length();
+      try {
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      writes.incrementAndGet();
+      if (bytes.get() < 0 || bytes.addAndGet(f.length() - oldSize) > maxBytes) {
+        evict();
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Error writing {0}: {1}", new Object[] { f, e.getMessage() });
+      if (tmp != null) {
+        delete(tmp);
+      }
+    }
+  }
+
+  /**
+   * Remove all entries of namespace.
+   */
+  public synchronized void clear() {
+    for (File f : listEntries()) {
+      delete(f);
+    }
+    bytes.set(0);
+  }
+
+  // null if wfcId is not a valid file name
+  private File getFile(String wfcId) {
+    if (wfcId == null || !wfcId.matches("[0-9A-Za-z_-]+")) {
+      return null;
+    }
+    String sub = wfcId.length() > 2 ? wfcId.substring(wfcId.length() - 2) : wfcId;
+    return new File(new File(dir, sub), wfcId + SUFFIX);
+  }
+
+  // delete least recently used files until size is below EVICT_PCT * maxBytes. Size is determined on first call and
+  // tracked afterwards (entries written by other processes are counted with the next eviction).
+  private synchronized void evict() {
+    List<File> files = listEntries();
+    long       total = 0;
+    for (File f : files) {
+      total += f.length();
+    }
+    if (total > maxBytes) {
+      files.sort(Comparator.comparingLong(File::lastModified));
+      long limit = (long) (maxBytes * EVICT_PCT);
+      for (File f : files) {
+        if (total <= limit) {
+          break;
+        }
+        long len = f.length();
+        if (delete(f)) {
+          total -= len;
+          evictions.incrementAndGet();
+        }
+      }
+      LOGGER.log(Level.FINE, "Evicted entries from {0}: {1}", new Object[] { dir, this });
+    }
+    bytes.set(total);
+  }
+
+  private List<File> listEntries() {
+    List<File> result = new ArrayList<>();
+    if (dir.isDirectory()) {
+      try (Stream<Path> s = Files.walk(dir.toPath(), 2)) {
+        s.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).forEach(p -> result.add(p.toFile()));
+      } catch (IOException | RuntimeException e) {
+        LOGGER.log(Level.WARNING, "Error listing {0}: {1}", new Object[] { dir, e.getMessage() });
+      }
+    }
+    return result;
+  }
+
+  private static boolean delete(File f) {
+    try {
+      return Files.deleteIfExists(f.toPath());
+    } catch (IOException e) {
+      LOGGER.log(Level.FINER, "Could not delete {0}: {1}", new Object[] { f, e.getMessage() });
+      return false;
+    }
+  }
+
+  // <size:int (-1: null)> { <key:string><value:string> }, string: <length:int><UTF-8 bytes>
+  private static void writeTable(DataOutputStream out, Hashtable<String, String> table) throws IOException {
+    if (table == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(table.size());
+    for (Map.Entry<String, String> e : table.entrySet()) {
+      writeString(out, e.getKey());
+      writeString(out, String.valueOf(e.getValue()));
+    }
+  }
+
+  private static Hashtable<String, String> readTable(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    if (size < 0) {
+      return null;
+    }
+    Hashtable<String, String> result = new Hashtable<>(Math.max(11, size * 2));
+    for (int i = 0; i < size; i++) {
+      result.put(readString(in), readString(in));
+    }
+    return result;
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int len = in.readInt();
+    if (len < 0) {
+      throw new IOException("Invalid string length " + len + "!");
+    }
+    byte[] b = new byte[len];
+    in.readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  public File getDir() {
+    return dir;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getWrites() {
+    return writes.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public String toString() {
+    return "ProcessDataStore [dir=" + dir + ", bytes=" + bytes.get() + ", maxBytes=" + maxBytes + ", hits=" + hits.get() + ", misses=" + misses.get()
+        + ", writes=" + writes.get() + ", evictions=" + evictions.get() + "]";
+  }
+}
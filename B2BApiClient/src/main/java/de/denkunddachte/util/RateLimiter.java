@@ -0,0 +1,101 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. The bucket holds up to <code>burst</code> tokens and is refilled with
+ * <code>permitsPerSecond</code> tokens per second. A rate <= 0 disables the limiter.
+ */
+public class RateLimiter {
+  private final double permitsPerSecond;
+  private final double burst;
+  private double       tokens;
+  private long         lastRefill;
+
+  public RateLimiter(double permitsPerSecond) {
+    this(permitsPerSecond, Math.max(1d, permitsPerSecond));
+  }
+
+  public RateLimiter(double permitsPerSecond, double burst) {
+    this.permitsPerSecond = permitsPerSecond;
+    this.burst = Math.max(1d, burst);
+    this.tokens = this.burst;
+    this.lastRefill = System.nanoTime();
+  }
+
+  public double getRate() {
+    return permitsPerSecond;
+  }
+
+  public boolean isEnabled() {
+    return permitsPerSecond > 0;
+  }
+
+  /**
+   * Take a token, wait until one is available.
+   *
+   * @throws InterruptedException
+   */
+  public void acquire() throws InterruptedException {
+    long waitNanos;
+    while ((waitNanos = reserve()) > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Take a token without waiting.
+   *
+   * @return true if a token was available
+   */
+  public synchronized boolean tryAcquire() {
+    if (!isEnabled()) {
+      return true;
+    }
+    refill();
+    if (tokens >= 1d) {
+      tokens -= 1d;
+      return true;
+    }
+    return false;
+  }
+
+  // returns 0, if token was taken, else nanos to wait for next token
+  private synchronized long reserve() {
+    if (!isEnabled()) {
+      return 0;
+    }
+    refill();
+    if (tokens >= 1d) {
+      tokens -= 1d;
+      return 0;
+    }
+    return Math.max(1L, (long) ((1d - tokens) / permitsPerSecond * 1_000_000_000d));
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    tokens = Math.min(burst, tokens + (now - lastRefill) / 1_000_000_000d * permitsPerSecond);
+    lastRefill = now;
+  }
+
+  @Override
+  public String toString() {
+    return "RateLimiter [permitsPerSecond=" + permitsPerSecond + ", burst=" + burst + "]";
+  }
+}
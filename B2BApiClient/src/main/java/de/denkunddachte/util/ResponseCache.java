@@ -0,0 +1,459 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache for API responses. Entries are kept in an in-memory LRU map bounded by number of entries and size, entries expire
+ * after TTL milliseconds. Optionally, entries are also written to a single persistent cache file (second tier) so that they
+ * survive the JVM. Entries are indexed by service name (first path element of the key), so invalidating a service only
+ * touches the affected entries.
+ */
+public class ResponseCache {
+  private static final Logger               LOGGER      = Logger.getLogger(ResponseCache.class.getName());
+  private static final int                  TOMBSTONE   = -1;
+  private static final double               COMPACT_PCT = 0.5;
+
+  private final long                        ttlMillis;
+  private final int                         maxEntries;
+  private final long                        maxBytes;
+  private final LinkedHashMap<String, Item> entries     = new LinkedHashMap<>(256, 0.75f, true);
+  private final Map<String, Set<String>>    svcIndex    = new HashMap<>();
+  private long                              bytes;
+
+  // persistent tier
+  private File                              cacheFile;
+  private RandomAccessFile                  raf;
+  private FileLock                          lock;
+  private final Map<String, long[]>         fileIndex   = new HashMap<>();
+  private long                              liveBytes;
+
+  // statistics
+  private long                              hits;
+  private long                              fileHits;
+  private long                              misses;
+  private long                              evictions;
+  private long                              invalidations;
+
+  private static final class Item {
+    private final String data;
+    private final long   created;
+
+    private Item(String data, long created) {
+      this.data = data;
+      this.created = created;
+    }
+  }
+
+  /**
+   * @param ttlMillis
+   *          time to live of entries
+   * @param maxEntries
+   *          max. number of entries in memory
+   * @param maxBytes
+   *          max. (approx.) size of entries in memory
+   * @param cacheFile
+   *          persistent cache file (or null for memory only)
+   */
+  public ResponseCache(long ttlMillis, int maxEntries, long maxBytes, File cacheFile) {
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    if (cacheFile != null) {
+      openCacheFile(cacheFile);
+    }
+  }
+
+  public static String getKey(String svcName, String parameter) {
+    return (parameter != null && !parameter.isEmpty()) ? svcName + '/' + parameter : svcName;
+  }
+
+  private static String getService(String key) {
+    int i = 0;
+    while (i < key.length() && key.charAt(i) != '/' && key.charAt(i) != '?') {
+      i++;
+    }
+    return key.substring(0, i);
+  }
+
+  public synchronized String get(String svcName, String parameter) {
+    final String key  = getKey(svcName, parameter);
+    Item         item = entries.get(key);
+    if (item != null && isExpired(item.created)) {
+      removeKey(key);
+      item = null;
+    }
+    if (item == null && raf != null) {
+      item = readFromFile(key);
+      if (item != null) {
+        fileHits++;
+        putEntry(key, item);
+      }
+    }
+    if (item == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return item.data;
+  }
+
+  public synchronized void put(String svcName, String parameter, String data) {
+    if (data == null) {
+      remove(svcName, parameter);
+      return;
+    }
+    final String key  = getKey(svcName, parameter);
+    Item         item = new Item(data, System.currentTimeMillis());
+    putEntry(key, item);
+    if (raf != null) {
+      writeToFile(key, item);
+    }
+  }
+
+  public synchronized void remove(String svcName, String parameter) {
+    removeKey(getKey(svcName, parameter));
+  }
+
+  /**
+   * Removes all entries of service (or entries with key prefix svcName if svcName includes a path).
+   * 
+   * @param svcName
+   *          service name
+   */
+  public synchronized void invalidate(String svcName) {
+    final Set<String> keys = svcIndex.get(getService(svcName));
+    if (keys == null) {
+      return;
+    }
+    final boolean wholeService = svcName.equals(getService(svcName));
+    for (String key : keys.toArray(new String[keys.size()])) {
+      if (wholeService || key.startsWith(svcName)) {
+        removeKey(key);
+        invalidations++;
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    svcIndex.clear();
+    bytes = 0;
+    if (raf != null) {
+      try {
+        raf.setLength(0);
+        fileIndex.clear();
+        liveBytes = 0;
+      } catch (IOException e) {
+        disableCacheFile(e);
+      }
+    }
+  }
+
+  public synchronized void close() {
+    LOGGER.log(Level.FINE, "Close cache: {0}", this);
+    if (raf != null) {
+      try {
+        if (lock != null) {
+          lock.release();
+        }
+        raf.close();
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Error closing cache file {0}: {1}", new Object[] { cacheFile, e.getMessage() });
+      }
+      raf = null;
+      lock = null;
+    }
+  }
+
+  private boolean isExpired(long created) {
+    return created <= System.currentTimeMillis() - ttlMillis;
+  }
+
+  private void putEntry(String key, Item item) {
+    removeEntry(key);
+    entries.put(key, item);
+    bytes += size(key, item);
+    svcIndex.computeIfAbsent(getService(key), k -> new HashSet<>()).add(key);
+    Iterator<Map.Entry<String, Item>> it = entries.entrySet().iterator();
+    while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+      Map.Entry<String, Item> eldest = it.next();
+      if (eldest.getKey().equals(key)) {
+        // keep entry just added even if it exceeds maxBytes on its own
+        continue;
+      }
+      it.remove();
+      bytes -= size(eldest.getKey(), eldest.getValue());
+      unindex(eldest.getKey());
+      evictions++;
+    }
+  }
+
+  // remove from memory and persistent tier
+  private void removeKey(String key) {
+    removeEntry(key);
+    if (raf != null && fileIndex.containsKey(key)) {
+      writeToFile(key, null);
+    }
+    unindex(key);
+  }
+
+  // remove from memory only
+  private void removeEntry(String key) {
+    Item item = entries.remove(key);
+    if (item != null) {
+      bytes -= size(key, item);
+      unindex(key);
+    }
+  }
+
+  private void unindex(String key) {
+    if (fileIndex.containsKey(key)) {
+      return; // still present in persistent tier
+    }
+    Set<String> keys = svcIndex.get(getService(key));
+    if (keys != null) {
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        svcIndex.remove(getService(key));
+      }
+    }
+  }
+
+  private static long size(String key, Item item) {
+    return 2L * (key.length() + item.data.length()) + 64;
+  }
+
+  // persistent tier: records are appended to the cache file: <created:long><key:UTF><length:int><data:UTF-8 bytes>,
+  // length -1 marks removed entries. The index (key -> offset, length, created) is rebuilt when the file is opened.
+
+  private void openCacheFile(File file) {
+    try {
+      File dir = file.getAbsoluteFile().getParentFile();
+      if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Could not create cache directory " + dir + "!");
+      }
+      raf = new RandomAccessFile(file, "rw");
+      lock = tryLock(raf);
+      if (lock == null) {
+        raf.close();
+        raf = null;
+        LOGGER.log(Level.WARNING, "Cache file {0} is locked by another process, use in-memory cache only.", file);
+        return;
+      }
+      cacheFile = file;
+      loadIndex();
+      if (raf.length() > 1024 * 1024 && liveBytes < raf.length() * COMPACT_PCT) {
+        compact();
+      }
+      LOGGER.log(Level.FINE, "Opened cache file {0} with {1} entries.", new Object[] { file, fileIndex.size() });
+    } catch (IOException e) {
+      disableCacheFile(e);
+    }
+  }
+
+  // null if locked by another process (or another cache instance of this JVM)
+  private static FileLock tryLock(RandomAccessFile f) throws IOException {
+    try {
+      return f.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      return null;
+    }
+  }
+
+  private void loadIndex() throws IOException {
+    final long now = System.currentTimeMillis();
+    long       pos = 0;
+    raf.seek(0);
+    try {
+      while (pos < raf.length()) {
+        long   created = raf.readLong();
+        String key     = raf.readUTF();
+        int    len     = raf.readInt();
+        long   dataPos = raf.getFilePointer();
+        if (len != TOMBSTONE && dataPos + len > raf.length()) {
+          throw new EOFException();
+        }
+        if (len == TOMBSTONE) {
+          dropFromFileIndex(key);
+        } else {
+          raf.seek(dataPos + len);
+          dropFromFileIndex(key);
+          if (created > now - ttlMillis) {
+            fileIndex.put(key, new long[] { dataPos, len, created });
+            liveBytes += len;
+            svcIndex.computeIfAbsent(getService(key), k -> new HashSet<>()).add(key);
+          }
+        }
+        pos = raf.getFilePointer();
+      }
+    } catch (EOFException e) {
+      LOGGER.log(Level.WARNING, "Truncate incomplete record at offset {0} of cache file {1}.", new Object[] { pos, cacheFile });
+      raf.setLength(pos);
+    }
+  }
+
+  private void dropFromFileIndex(String key) {
+    long[] old = fileIndex.remove(key);
+    if (old != null) {
+      liveBytes -= old[1];
+    }
+  }
+
+  private void compact() throws IOException {
+    LOGGER.log(Level.FINE, "Compact cache file {0}: size={1}, live={2}", new Object[] { cacheFile, raf.length(), liveBytes });
+    File                tmp = new File(cacheFile.getPath() + ".tmp");
+    Map<String, long[]> idx = new HashMap<>();
+    try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+      out.setLength(0);
+      for (Map.Entry<String, long[]> e : fileIndex.entrySet()) {
+        byte[] data = new byte[(int) e.getValue()[1]];
+        raf.seek(e.getValue()[0]);
+        raf.readFully(data);
+        out.writeLong(e.getValue()[2]);
+        out.writeUTF(e.getKey());
+        out.writeInt(data.length);
+        idx.put(e.getKey(), new long[] { out.getFilePointer(), data.length, e.getValue()[2] });
+        out.write(data);
+      }
+    }
+    lock.release();
+    raf.close();
+    if (!cacheFile.delete() || !tmp.renameTo(cacheFile)) {
+      throw new IOException("Could not replace " + cacheFile + " with compacted " + tmp + "!");
+    }
+    raf = new RandomAccessFile(cacheFile, "rw");
+    lock = tryLock(raf);
+    if (lock == null) {
+      throw new IOException("Could not lock cache file " + cacheFile + " after compaction!");
+    }
+    fileIndex.clear();
+    fileIndex.putAll(idx);
+  }
+
+  private Item readFromFile(String key) {
+    long[] pos = fileIndex.get(key);
+    if (pos == null) {
+      return null;
+    }
+    if (isExpired(pos[2])) {
+      writeToFile(key, null);
+      unindex(key);
+      return null;
+    }
+    try {
+      byte[] data = new byte[(int) pos[1]];
+      raf.seek(pos[0]);
+      raf.readFully(data);
+      return new Item(new String(data, StandardCharsets.UTF_8), pos[2]);
+    } catch (IOException e) {
+      disableCacheFile(e);
+      return null;
+    }
+  }
+
+  private void writeToFile(String key, Item item) {
+    try {
+      byte[]                data = item == null ? null : item.data.getBytes(StandardCharsets.UTF_8);
+      ByteArrayOutputStream bos  = new ByteArrayOutputStream(data == null ? 64 : data.length + 64);
+      DataOutputStream      dos  = new DataOutputStream(bos);
+      dos.writeLong(item == null ? System.currentTimeMillis() : item.created);
+      dos.writeUTF(key);
+      dos.writeInt(data == null ? TOMBSTONE : data.length);
+      long dataPos = raf.length() + bos.size();
+      if (data != null) {
+        dos.write(data);
+      }
+      dos.flush();
+      raf.seek(raf.length());
+      raf.write(bos.toByteArray());
+      dropFromFileIndex(key);
+      if (data != null) {
+        fileIndex.put(key, new long[] { dataPos, data.length, item.created });
+        liveBytes += data.length;
+      }
+    } catch (IOException e) {
+      disableCacheFile(e);
+    }
+  }
+
+  private void disableCacheFile(IOException e) {
+    LOGGER.log(Level.WARNING, "Error accessing cache file {0}, use in-memory cache only: {1}", new Object[] { cacheFile, e.getMessage() });
+    close();
+    for (String key : fileIndex.keySet().toArray(new String[fileIndex.size()])) {
+      fileIndex.remove(key);
+      if (!entries.containsKey(key)) {
+        unindex(key);
+      }
+    }
+    liveBytes = 0;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getFileHits() {
+    return fileHits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getInvalidations() {
+    return invalidations;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized int getPersistentSize() {
+    return fileIndex.size();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "ResponseCache [entries=" + entries.size() + ", bytes=" + bytes + ", persistentEntries=" + fileIndex.size() + ", hits=" + hits
+        + " (persistent=" + fileHits + "), misses=" + misses + ", evictions=" + evictions + ", invalidations=" + invalidations + "]";
+  }
+}
@@ -0,0 +1,273 @@
+/*
+  Copyright 2018 - 2023 denk & dachte Software GmbH
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package de.denkunddachte.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.denkunddachte.exception.ApiException;
+
+/**
+ * Streaming XML pretty-printer: the document is read with StAX and written indented to a {@link Writer} event by event,
+ * so no DOM is built. Whitespace-only text between elements is dropped, elements containing text are written on one
+ * line, empty elements are written as <code>&lt;name/&gt;</code>. DTDs are not processed.
+ */
+public final class XmlFormatter {
+  private static final Logger          LOGGER  = Logger.getLogger(XmlFormatter.class.getName());
+  private static final String          NL      = System.lineSeparator();
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private final XMLStreamReader        xr;
+  private final Writer                 out;
+  private final int                    indent;
+  private int                          depth;
+  // start tag written without closing '>'
+  private boolean                      startOpen;
+  // current element contains text, so no line breaks are inserted
+  private boolean                      inText;
+
+  private XmlFormatter(XMLStreamReader xr, Writer out, int indent) {
+    this.xr = xr;
+    this.out = out;
+    this.indent = Math.max(0, indent);
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory f = XMLInputFactory.newInstance();
+    f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    f.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return f;
+  }
+
+  /**
+   * Format XML string.
+   *
+   * @param xml
+   *          XML document
+   * @param indent
+   *          spaces per level
+   * @return indented document
+   * @throws ApiException
+   *           if the document is not well-formed
+   */
+  public static String format(String xml, int indent) throws ApiException {
+    if (xml == null) {
+      return null;
+    }
+    StringWriter wr = new StringWriter(xml.length() + xml.length() / 4);
+    format(new StringReader(xml), wr, indent);
+    return wr.toString();
+  }
+
+  /**
+   * Read XML from <code>in</code> and write it indented to <code>out</code>. Neither stream is closed, <code>out</code>
+   * is flushed.
+   *
+   * @param in
+   *          XML document
+   * @param out
+   *          output
+   * @param indent
+   *          spaces per level
+   * @throws ApiException
+   *           if the document is not well-formed or could not be written
+   */
+  public static void format(Reader in, Writer out, int indent) throws ApiException {
+    XMLStreamReader xr = null;
+    try {
+      xr = FACTORY.createXMLStreamReader(in);
+      new XmlFormatter(xr, out, indent).run();
+      out.flush();
+    } catch (XMLStreamException | IOException e) {
+      throw new ApiException("Could not format XML: " + e.getMessage(), e);
+    } finally {
+      if (xr != null) {
+        try {
+          xr.close();
+        } catch (XMLStreamException e) {
+          LOGGER.log(Level.FINER, "Error closing XMLStreamReader: {0}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void run() throws XMLStreamException, IOException {
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+    while (xr.hasNext()) {
+      switch (xr.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        startElement();
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        endElement();
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.SPACE:
+        if (!xr.isWhiteSpace()) {
+          closeStart();
+          escape(xr.getTextCharacters(), xr.getTextStart(), xr.getTextLength(), false);
+          inText = true;
+        }
+        break;
+      case XMLStreamConstants.CDATA:
+        closeStart();
+        out.write("<![CDATA[");
+        out.write(xr.getTextCharacters(), xr.getTextStart(), xr.getTextLength());
+        out.write("]]>");
+        inText = true;
+        break;
+      case XMLStreamConstants.COMMENT:
+        closeStart();
+        newLine(depth);
+        out.write("<!--");
+        out.write(xr.getText());
+        out.write("-->");
+        break;
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        closeStart();
+        newLine(depth);
+        out.write("<?");
+        out.write(xr.getPITarget());
+        if (xr.getPIData() != null && !xr.getPIData().isEmpty()) {
+          out.write(' ');
+          out.write(xr.getPIData());
+        }
+        out.write("?>");
+        break;
+      default:
+        break;
+      }
+    }
+    out.write(NL);
+  }
+
+  private void startElement() throws IOException {
+    closeStart();
+    if (!inText) {
+      newLine(depth);
+    }
+    out.write('<');
+    out.write(qname(xr.getPrefix(), xr.getLocalName()));
+    for (int i = 0; i < xr.getNamespaceCount(); i++) {
+      out.write(isEmpty(xr.getNamespacePrefix(i)) ? " xmlns" : " xmlns:" + xr.getNamespacePrefix(i));
+      writeAttributeValue(xr.getNamespaceURI(i));
+    }
+    for (int i = 0; i < xr.getAttributeCount(); i++) {
+      out.write(' ');
+      out.write(qname(xr.getAttributePrefix(i), xr.getAttributeLocalName(i)));
+      writeAttributeValue(xr.getAttributeValue(i));
+    }
+    startOpen = true;
+    inText = false;
+    depth++;
+  }
+
+  private void endElement() throws IOException {
+    depth--;
+    if (startOpen) {
+      out.write("/>");
+      startOpen = false;
+    } else {
+      if (!inText) {
+        newLine(depth);
+      }
+      out.write("</");
+      out.write(qname(xr.getPrefix(), xr.getLocalName()));
+      out.write('>');
+    }
+    inText = false;
+  }
+
+  private void closeStart() throws IOException {
+    if (startOpen) {
+      out.write('>');
+      startOpen = false;
+    }
+  }
+
+  private void newLine(int level) throws IOException {
+    out.write(NL);
+    for (int i = level * indent; i > 0; i--) {
+      out.write(' ');
+    }
+  }
+
+  private void writeAttributeValue(String value) throws IOException {
+    out.write("=\"");
+    if (value != null) {
+      escape(value.toCharArray(), 0, value.length(), true);
+    }
+    out.write('"');
+  }
+
+  private void escape(char[] text, int start, int length, boolean attribute) throws IOException {
+    int last = start;
+    int end  = start + length;
+    for (int i = start; i < end; i++) {
+      String rep;
+      switch (text[i]) {
+      case '&':
+        rep = "&amp;";
+        break;
+      case '<':
+        rep = "&lt;";
+        break;
+      case '>':
+        rep = attribute ? null : "&gt;";
+        break;
+      case '"':
+        rep = attribute ? "&quot;" : null;
+        break;
+      case '\n':
+        rep = attribute ? "&#10;" : null;
+        break;
+      case '\r':
+        rep = "&#13;";
+        break;
+      case '\t':
+        rep = attribute ? "&#9;" : null;
+        break;
+      default:
+        rep = null;
+      }
+      if (rep != null) {
+        out.write(text, last, i - last);
+        out.write(rep);
+        last = i + 1;
+      }
+    }
+    out.write(text, last, end - last);
+  }
+
+  private static String qname(String prefix, String localName) {
+    return isEmpty(prefix) ? localName : prefix + ":" + localName;
+  }
+
+  private static boolean isEmpty(String s) {
+    return s == null || s.isEmpty();
+  }
+}
@@ -0,0 +1,183 @@
+package de.denkunddachte.sfgapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.util.ApiConfig;
+import de.denkunddachte.util.ApiResponse;
+
+class BulkOperationTest {
+  private HttpServer          server;
+  // HTTP status of the next responses, then 201 Created
+  private volatile int        failCode;
+  private volatile int        failCount;
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private static class Stub extends ApiClient {
+    @Override
+    public String getServiceName() {
+      return "stubs";
+    }
+
+    @Override
+    public String getIdProperty() {
+      return "id";
+    }
+
+    @Override
+    public JSONObject toJSON() {
+      return new JSONObject().put("id", "stub");
+    }
+
+    @Override
+    protected ApiClient readJSON(JSONObject json) {
+      return this;
+    }
+
+    @Override
+    public String getId() {
+      return "stub";
+    }
+  }
+
+  @BeforeEach
+  void startServer() throws IOException, ApiException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/svc/stubs", ex -> {
+      ex.getRequestBody().close();
+      if (requests.incrementAndGet() <= failCount) {
+        ex.sendResponseHeaders(failCode, -1);
+      } else {
+        byte[] body = "{\"Location\":\"/stubs/stub\"}".getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(201, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+          os.write(body);
+        }
+      }
+      ex.close();
+    });
+    server.start();
+    // no retries in the request layer, so only the bulk operation retries
+    Map<String, String> cfg = new HashMap<>();
+    cfg.put(ApiConfig.BASEURI, "http://localhost:" + server.getAddress().getPort() + "/svc");
+    cfg.put(ApiConfig.API_REQ_RETRIES, "0");
+    cfg.put(ApiConfig.CB_FAILURES, "1000");
+    ApiClient.setConfig(ApiConfig.updateInstance(cfg));
+  }
+
+  @AfterEach
+  void stopServer() throws ApiException {
+    server.stop(0);
+    ApiConfig.reset();
+    ApiClient.setConfig(ApiConfig.getInstance());
+  }
+
+  private static ApiResponse response(int httpCode) {
+    return ApiResponse.of("POST", "/mailboxes", httpCode, null);
+  }
+
+  private BulkOperation.Result<Stub> run(BulkOperation<Stub> bulk, int httpCode, int failures) throws ApiException {
+    failCode = httpCode;
+    failCount = failures;
+    BulkOperation.Report<Stub> report = bulk.add(new Stub()).setConcurrency(1).setRetries(3).setRetryDelay(1).run();
+    assertEquals(1, report.getResults().size());
+    return report.getResults().get(0);
+  }
+
+  @Test
+  void testIsRetryable() {
+    assertTrue(BulkOperation.isRetryable(response(429), false));
+    assertTrue(BulkOperation.isRetryable(response(503), false));
+    assertFalse(BulkOperation.isRetryable(response(502), false));
+    assertFalse(BulkOperation.isRetryable(response(504), false));
+    assertTrue(BulkOperation.isRetryable(response(502), true));
+    assertTrue(BulkOperation.isRetryable(response(504), true));
+    assertFalse(BulkOperation.isRetryable(response(500), true));
+    assertFalse(BulkOperation.isRetryable(response(409), true));
+    assertFalse(BulkOperation.isRetryable(response(200), true));
+    assertFalse(BulkOperation.isRetryable(null, true));
+  }
+
+  @Test
+  void testSuccess() throws ApiException {
+    BulkOperation.Result<Stub> result = run(new BulkOperation<>(BulkOperation.Operation.CREATE), 503, 0);
+    assertTrue(result.isSuccess());
+    assertEquals(1, result.getAttempts());
+    assertEquals(201, result.getResponse().getHttpCode());
+  }
+
+  @Test
+  void testRetryNotProcessed() throws ApiException {
+    BulkOperation.Result<Stub> result = run(new BulkOperation<>(BulkOperation.Operation.CREATE), 503, 2);
+    assertTrue(result.isSuccess());
+    assertEquals(3, result.getAttempts());
+    assertEquals(3, requests.get());
+  }
+
+  @Test
+  void testNoRetryOfNonIdempotentAction() throws ApiException {
+    BulkOperation.Result<Stub> result = run(new BulkOperation<>(BulkOperation.Operation.CREATE), 502, 1);
+    assertFalse(result.isSuccess());
+    assertEquals(1, result.getAttempts());
+    assertEquals(1, requests.get());
+    assertEquals(502, result.getResponse().getHttpCode());
+    assertNotNull(result.getError());
+  }
+
+  @Test
+  void testRetryOfIdempotentAction() throws ApiException {
+    BulkOperation.Result<Stub> result = run(new BulkOperation<>("create", ApiClient::create, true), 504, 1);
+    assertTrue(result.isSuccess());
+    assertEquals(2, result.getAttempts());
+    assertEquals(2, requests.get());
+  }
+
+  @Test
+  void testRetryLimit() throws ApiException {
+    BulkOperation.Result<Stub> result = run(new BulkOperation<>(BulkOperation.Operation.CREATE), 429, 100);
+    assertFalse(result.isSuccess());
+    // first attempt + 3 retries
+    assertEquals(4, result.getAttempts());
+    assertEquals(4, requests.get());
+    assertEquals(429, result.getResponse().getHttpCode());
+  }
+
+  @Test
+  void testNoRetryOfOtherErrors() throws ApiException {
+    BulkOperation.Result<Stub> result = run(new BulkOperation<>("create", ApiClient::create, true), 500, 1);
+    assertFalse(result.isSuccess());
+    assertEquals(1, result.getAttempts());
+    assertEquals("HTTP 500 Internal Server Error", result.getErrorMsg());
+  }
+
+  @Test
+  void testNoRetryOnException() throws ApiException {
+    AtomicInteger              calls  = new AtomicInteger();
+    BulkOperation.Result<Stub> result = run(new BulkOperation<>("update", obj -> {
+      calls.incrementAndGet();
+      throw new ApiException("connection reset");
+    }, true), 503, 0);
+    assertFalse(result.isSuccess());
+    assertEquals(1, calls.get());
+    assertEquals("connection reset", result.getError().getMessage());
+  }
+}
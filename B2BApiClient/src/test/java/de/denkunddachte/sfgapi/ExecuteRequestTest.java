@@ -0,0 +1,101 @@
+package de.denkunddachte.sfgapi;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExecuteRequestTest {
+  @TempDir
+  Path dir;
+
+  private static byte[] data(int len) {
+    byte[] b = new byte[len];
+    new Random(len).nextBytes(b);
+    return b;
+  }
+
+  private static byte[] write(HttpEntity entity) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    entity.writeTo(bos);
+    return bos.toByteArray();
+  }
+
+  private static byte[] gunzip(byte[] data) throws IOException {
+    try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(data))) {
+      return IOUtils.toByteArray(is);
+    }
+  }
+
+  @Test
+  void testParameter() {
+    assertEquals("?api=executebp&bpname=BP_X&bpversion=3&json=1&filename=doc.xml", WorkflowDefinition.getExecuteParameter("BP_X", 3, "doc.xml", false));
+    assertEquals("?api=executebp&bpname=BP_X&bpversion=0&json=1&filename=in.dat&gzip=1", WorkflowDefinition.getExecuteParameter("BP_X", 0, null, true));
+  }
+
+  @Test
+  void testFileEntityIsRepeatable() throws IOException {
+    byte[] content = data(3 * 1024 * 1024 + 17);
+    File   f       = dir.resolve("doc.bin").toFile();
+    Files.write(f.toPath(), content);
+    HttpEntity e = WorkflowDefinition.getExecuteEntity(new FileEntity(f), false);
+    assertTrue(e.isRepeatable());
+    assertFalse(e.isStreaming());
+    assertEquals(content.length, e.getContentLength());
+    // sent again when the request is retried
+    assertArrayEquals(content, write(e));
+    assertArrayEquals(content, write(e));
+  }
+
+  @Test
+  void testInputStreamEntityIsNotRepeatable() throws IOException {
+    byte[]     content = data(100_000);
+    HttpEntity e       = WorkflowDefinition.getExecuteEntity(new InputStreamEntity(new ByteArrayInputStream(content)), false);
+    assertFalse(e.isRepeatable());
+    assertEquals(-1, e.getContentLength());
+    assertArrayEquals(content, write(e));
+  }
+
+  @Test
+  void testGzip() throws IOException {
+    byte[] content = data(1024 * 1024);
+    File   f       = dir.resolve("doc.bin").toFile();
+    Files.write(f.toPath(), content);
+    HttpEntity e = WorkflowDefinition.getExecuteEntity(new FileEntity(f), true);
+    assertEquals("gzip", e.getContentEncoding().getValue());
+    assertTrue(e.isChunked());
+    assertEquals(-1, e.getContentLength());
+    assertTrue(e.isRepeatable());
+    assertArrayEquals(content, gunzip(write(e)));
+    assertArrayEquals(content, gunzip(write(e)));
+
+    InputStreamEntity is = new InputStreamEntity(new ByteArrayInputStream(content));
+    e = WorkflowDefinition.getExecuteEntity(is, true);
+    assertFalse(e.isRepeatable());
+    assertArrayEquals(content, gunzip(write(e)));
+  }
+
+  @Test
+  void testNoGzip() {
+    InputStreamEntity is = new InputStreamEntity(new ByteArrayInputStream(new byte[0]));
+    assertSame(is, WorkflowDefinition.getExecuteEntity(is, false));
+  }
+}
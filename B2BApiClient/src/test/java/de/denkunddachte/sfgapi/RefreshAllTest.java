@@ -0,0 +1,103 @@
+package de.denkunddachte.sfgapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import de.denkunddachte.exception.ApiException;
+
+class RefreshAllTest {
+  // more than sfgapi.async.threads, so all async threads wait in refreshAll() at the same time
+  private static final int CALLS = 64;
+
+  private static class Stub extends ApiClient {
+    private final AtomicInteger refreshed;
+    private final boolean       fail;
+
+    Stub(AtomicInteger refreshed, boolean fail) {
+      this.refreshed = refreshed;
+      this.fail = fail;
+    }
+
+    @Override
+    public String getServiceName() {
+      return "stub";
+    }
+
+    @Override
+    public String getIdProperty() {
+      return "id";
+    }
+
+    @Override
+    public JSONObject toJSON() {
+      return new JSONObject();
+    }
+
+    @Override
+    protected ApiClient readJSON(JSONObject json) {
+      return this;
+    }
+
+    @Override
+    public String getId() {
+      return "stub";
+    }
+
+    @Override
+    public boolean isRefreshRequired() {
+      return true;
+    }
+
+    @Override
+    public void refresh() throws ApiException {
+      if (fail) {
+        throw new ApiException("refresh failed");
+      }
+      refreshed.incrementAndGet();
+    }
+  }
+
+  @Test
+  void testRefreshAll() throws ApiException {
+    AtomicInteger refreshed = new AtomicInteger();
+    ApiClient.refreshAll(Arrays.asList(new Stub(refreshed, false), new Stub(refreshed, false)));
+    assertEquals(2, refreshed.get());
+  }
+
+  @Test
+  void testRefreshAllFromAsyncCall() throws Exception {
+    AtomicInteger                   refreshed = new AtomicInteger();
+    List<CompletableFuture<Object>> futures   = new ArrayList<>();
+    for (int i = 0; i < CALLS; i++) {
+      futures.add(ApiClient.async(() -> {
+        ApiClient.refreshAll(Arrays.asList(new Stub(refreshed, false), new Stub(refreshed, false)));
+        return null;
+      }));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+    assertEquals(2 * CALLS, refreshed.get());
+  }
+
+  @Test
+  void testRefreshAllError() throws Exception {
+    AtomicInteger refreshed = new AtomicInteger();
+    ApiException  e         = assertThrows(ApiException.class, () -> ApiClient.refreshAll(Arrays.asList(new Stub(refreshed, true))));
+    assertEquals("refresh failed", e.getMessage());
+    CompletableFuture<Object> f = ApiClient.async(() -> {
+      ApiClient.refreshAll(Arrays.asList(new Stub(refreshed, true)));
+      return null;
+    });
+    e = (ApiException) assertThrows(Exception.class, () -> f.get(30, TimeUnit.SECONDS)).getCause();
+    assertEquals("refresh failed", e.getMessage());
+  }
+}
@@ -0,0 +1,103 @@
+package de.denkunddachte.sfgapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.sfgapi.ApiClient.ApiCall;
+import de.denkunddachte.sfgapi.ApiClient.ResponseType;
+
+class WsApiBatcherTest {
+
+  @Test
+  void testParseParameter() throws ApiException {
+    Map<String, String> p = WsApiBatcher.parseParameter("&bpname=My%20BP&default=1&json=1&&flag");
+    assertEquals(2, p.size());
+    assertEquals("My BP", p.get("bpname"));
+    assertEquals("1", p.get("default"));
+    assertTrue(WsApiBatcher.parseParameter(null).isEmpty());
+    // not usable as XML element name
+    assertNull(WsApiBatcher.parseParameter("&a-b=1"));
+    assertNull(WsApiBatcher.parseParameter("&1x=1"));
+  }
+
+  @Test
+  void testToXml() {
+    Map<String, String> p = new LinkedHashMap<>();
+    p.put("bpname", "A&B <x>");
+    p.put("default", "1");
+    String xml = WsApiBatcher.toXml(Arrays.asList(new WsApiBatcher.Query("wfd", p, ResponseType.JSON),
+        new WsApiBatcher.Query("version", new LinkedHashMap<>(), ResponseType.JSON)));
+    assertEquals("<batch><query id=\"0\"><api>wfd</api><bpname>A&amp;B &lt;x&gt;</bpname><default>1</default></query>"
+        + "<query id=\"1\"><api>version</api></query></batch>", xml);
+  }
+
+  @Test
+  void testGetResponses() throws ApiException {
+    WsApiBatcher            b = new WsApiBatcher(10, 10);
+    Map<String, JSONObject> r = b.getResponses(new JSONObject("{\"batch\":{\"response\":[{\"id\":0,\"api\":\"wfd\",\"result\":{\"row\":1}},"
+        + "{\"api\":\"wfd\"},{\"id\":2,\"api\":\"xslt\",\"result\":\"\"}]}}"));
+    assertEquals(2, r.size());
+    assertEquals("wfd", r.get("0").getString("api"));
+    assertEquals("xslt", r.get("2").getString("api"));
+    // single response is not wrapped in an array
+    r = b.getResponses(new JSONObject("{\"batch\":{\"response\":{\"id\":0,\"api\":\"wfd\"}}}"));
+    assertEquals(1, r.size());
+    assertFalse(b.isDisabled());
+  }
+
+  @Test
+  void testBatchNotSupported() {
+    WsApiBatcher b = new WsApiBatcher(10, 10);
+    assertThrows(ApiException.class, () -> b.getResponses(new JSONObject("{\"errorCode\":500,\"errorDescription\":\"x\"}")));
+    assertFalse(b.isDisabled());
+    assertThrows(ApiException.class, () -> b.getResponses(new JSONObject("{\"errorCode\":400,\"errorDescription\":\"unknown api\"}")));
+    assertTrue(b.isDisabled());
+  }
+
+  @Test
+  void testSingleLookupIsNotDelayed() throws ApiException {
+    WsApiBatcher b     = new WsApiBatcher(60_000, 10);
+    long         start = System.currentTimeMillis();
+    assertEquals("single", b.lookup("wfd", "&bpname=X", ResponseType.JSON, () -> "single"));
+    assertEquals("single", b.lookup("wfd", "&bpname=Y", ResponseType.JSON, () -> "single"));
+    assertTrue(System.currentTimeMillis() - start < 10_000);
+  }
+
+  @Test
+  void testLookupWaitsForWindowWhileOtherLookupIsActive() throws Exception {
+    WsApiBatcher    b       = new WsApiBatcher(100, 10);
+    CountDownLatch  started = new CountDownLatch(1);
+    CountDownLatch  release = new CountDownLatch(1);
+    ApiCall<Object> blocked = () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "A";
+    };
+    CompletableFuture<Object> first = ApiClient.async(() -> b.lookup("wfd", "&bpname=A", ResponseType.JSON, blocked));
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    // batch with a single query falls back to a single request after the window
+    long start = System.nanoTime();
+    assertEquals("B", b.lookup("wfd", "&bpname=B", ResponseType.JSON, () -> "B"));
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+    release.countDown();
+    assertEquals("A", first.get(10, TimeUnit.SECONDS));
+  }
+}
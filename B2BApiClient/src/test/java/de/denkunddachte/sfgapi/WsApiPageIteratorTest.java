@@ -0,0 +1,194 @@
+package de.denkunddachte.sfgapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
+
+class WsApiPageIteratorTest {
+  private static final Pattern LIMIT  = Pattern.compile("&limit=(\\d+)");
+  private static final Pattern LASTID = Pattern.compile("&lastid=(\\d+)");
+
+  // WS API with rows id=1..rows (each id in <copies> rows with branch=1..copies), supports limit and lastid if paging is
+  // true
+  private static class FakeWsApi implements WsApiPageIterator.PageReader {
+    private final int          rows;
+    private final int          copies;
+    private final boolean      paging;
+    private final boolean      ascending;
+    private final List<String> requests = new ArrayList<>();
+
+    FakeWsApi(int rows, boolean paging, boolean ascending) {
+      this(rows, 1, paging, ascending);
+    }
+
+    FakeWsApi(int rows, int copies, boolean paging, boolean ascending) {
+      this.rows = rows;
+      this.copies = copies;
+      this.paging = paging;
+      this.ascending = ascending;
+    }
+
+    @Override
+    public JSONArray read(String svcName, String parameter) throws ApiException {
+      requests.add(parameter);
+      String  p      = parameter == null ? "" : parameter;
+      Matcher limit  = LIMIT.matcher(p);
+      Matcher lastid = LASTID.matcher(p);
+      int     max    = paging && limit.find() ? Integer.parseInt(limit.group(1)) : Integer.MAX_VALUE;
+      long    last   = paging && lastid.find() ? Long.parseLong(lastid.group(1)) : -1;
+      JSONArray result = new JSONArray();
+      for (int i = 0; i < rows * copies && result.length() < max; i++) {
+        long id = ascending ? i / copies + 1 : rows - i / copies;
+        if (last < 0 || (ascending ? id > last : id < last)) {
+          result.put(new JSONObject().put("id", id).put("branch", i % copies + 1).put("name", "row" + id));
+        }
+      }
+      return result;
+    }
+  }
+
+  private static List<Long> ids(WsApiPageIterator<Long> it) {
+    List<Long> result = new ArrayList<>();
+    it.forEachRemaining(result::add);
+    return result;
+  }
+
+  private static WsApiPageIterator<Long> iterator(FakeWsApi api, int pageSize) {
+    return new WsApiPageIterator<>(api, "workflows", "&from=x", "id", pageSize, api.ascending, json -> json.getLong("id"));
+  }
+
+  @Test
+  void testPagesDescending() {
+    FakeWsApi               api = new FakeWsApi(25, true, false);
+    WsApiPageIterator<Long> it  = iterator(api, 10);
+    List<Long>              ids = ids(it);
+    assertEquals(25, ids.size());
+    assertEquals(25L, ids.get(0));
+    assertEquals(1L, ids.get(24));
+    assertEquals(3, it.getPageCount());
+    assertEquals(25, it.getRowCount());
+    // rows of the last key of a full page are read again with the next page
+    assertEquals("&from=x&limit=10", api.requests.get(0));
+    assertEquals("&from=x&limit=10&lastid=17", api.requests.get(1));
+    assertEquals("&from=x&limit=10&lastid=8", api.requests.get(2));
+  }
+
+  @Test
+  void testPagesAscending() {
+    FakeWsApi  api = new FakeWsApi(12, true, true);
+    List<Long> ids = ids(iterator(api, 5));
+    assertEquals(12, ids.size());
+    assertEquals(1L, ids.get(0));
+    assertEquals(12L, ids.get(11));
+    assertEquals("&from=x&limit=5&lastid=8", api.requests.get(2));
+  }
+
+  @Test
+  void testFullLastPage() {
+    FakeWsApi               api = new FakeWsApi(20, true, false);
+    WsApiPageIterator<Long> it  = iterator(api, 10);
+    assertEquals(20, ids(it).size());
+    // a full page may be followed by more rows
+    assertEquals(3, it.getPageCount());
+  }
+
+  @Test
+  void testDuplicateKeysAtPageBoundary() {
+    // 10 workflows with 2 branch rows each, pages end between the rows of a workflow
+    FakeWsApi                 api  = new FakeWsApi(10, 2, true, false);
+    WsApiPageIterator<String> it   = new WsApiPageIterator<>(api, "workflows", null, "id", 5, false,
+        json -> json.getLong("id") + "/" + json.getInt("branch"));
+    List<String>              rows = new ArrayList<>();
+    it.forEachRemaining(rows::add);
+    assertEquals(20, rows.size());
+    assertEquals(20, new HashSet<>(rows).size());
+    assertEquals("10/1", rows.get(0));
+    assertEquals("1/2", rows.get(19));
+    assertEquals("&limit=5&lastid=9", api.requests.get(1));
+  }
+
+  @Test
+  void testPageWithOneKey() {
+    // more rows with the same key than fit on a page: page is read again with a larger limit
+    FakeWsApi               api = new FakeWsApi(3, 4, true, true);
+    WsApiPageIterator<Long> it  = iterator(api, 3);
+    List<Long>              ids = ids(it);
+    assertEquals(12, ids.size());
+    assertEquals(Arrays.asList(1L, 1L, 1L, 1L), ids.subList(0, 4));
+    assertEquals("&from=x&limit=3", api.requests.get(0));
+    assertEquals("&from=x&limit=6", api.requests.get(1));
+  }
+
+  @Test
+  void testPagingNotSupported() {
+    FakeWsApi               api = new FakeWsApi(25, false, false);
+    WsApiPageIterator<Long> it  = iterator(api, 10);
+    assertEquals(25, ids(it).size());
+    assertEquals(1, it.getPageCount());
+  }
+
+  @Test
+  void testLastIdIgnored() {
+    // limit is supported, lastid is not: first page returned again
+    FakeWsApi api = new FakeWsApi(25, true, false) {
+      @Override
+      public JSONArray read(String svcName, String parameter) throws ApiException {
+        return super.read(svcName, parameter.replaceAll("&lastid=\\d+", ""));
+      }
+    };
+    WsApiPageIterator<Long> it = iterator(api, 10);
+    assertEquals(10, ids(it).size());
+    assertEquals(2, it.getPageCount());
+  }
+
+  @Test
+  void testNoPaging() {
+    FakeWsApi               api = new FakeWsApi(3, true, false);
+    WsApiPageIterator<Long> it  = new WsApiPageIterator<>(api, "workflows", null, "id", 0, false, json -> json.getLong("id"));
+    assertEquals(3, ids(it).size());
+    assertNull(api.requests.get(0));
+  }
+
+  @Test
+  void testSkipUnmappedRows() {
+    FakeWsApi               api = new FakeWsApi(10, true, false);
+    WsApiPageIterator<Long> it  = new WsApiPageIterator<>(api, "workflows", null, "id", 4, false,
+        json -> json.getLong("id") % 2 == 0 ? json.getLong("id") : null);
+    List<Long>              ids = ids(it);
+    assertEquals(5, ids.size());
+    assertEquals(10, it.getRowCount());
+  }
+
+  @Test
+  void testEmpty() {
+    WsApiPageIterator<Long> it = iterator(new FakeWsApi(0, true, false), 10);
+    assertFalse(it.hasNext());
+    assertEquals(1, it.getPageCount());
+  }
+
+  @Test
+  void testError() {
+    WsApiPageIterator<Long> it = new WsApiPageIterator<>((svc, p) -> {
+      throw new ApiException("HTTP 500");
+    }, "workflows", null, "id", 10, false, json -> json.getLong("id"));
+    UncheckedApiException e = assertThrows(UncheckedApiException.class, it::hasNext);
+    assertEquals("HTTP 500", e.getCause().getMessage());
+    assertFalse(it.hasNext());
+    assertEquals(0, it.getPageCount());
+  }
+}
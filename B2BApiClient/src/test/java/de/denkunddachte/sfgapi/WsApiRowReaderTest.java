@@ -0,0 +1,103 @@
+package de.denkunddachte.sfgapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
+
+class WsApiRowReaderTest {
+  private static final String XML = "<?xml version=\"1.0\"?><result><meta>x</meta>"
+      + "<row><id>1</id><path>/a</path><desc><![CDATA[a&b]]></desc></row>"
+      + "<row><id>2</id><path>/a/b</path><path>ignored</path></row>"
+      + "<row><id>3</id><path>/c</path><extra><x>1</x><y>2</y></extra></row></result>";
+
+  private static InputStream in(String s) {
+    return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testReadAll() throws ApiException {
+    List<String> paths = WsApiRowReader.readAll(in(XML), row -> row.get("path"));
+    assertEquals(3, paths.size());
+    assertEquals("/a", paths.get(0));
+    // first element wins
+    assertEquals("/a/b", paths.get(1));
+  }
+
+  @Test
+  void testRowFields() throws ApiException {
+    List<String> result = new ArrayList<>();
+    int          rows   = WsApiRowReader.read(in(XML), row -> row.getIndex() + ":" + row.get("desc") + ":" + row.opt("desc") + ":" + row.get("extra"),
+        result::add);
+    assertEquals(3, rows);
+    assertEquals("0:a&b:a&b:", result.get(0));
+    assertEquals("1::null:", result.get(1));
+    // text content of descendants
+    assertEquals("2::null:12", result.get(2));
+  }
+
+  @Test
+  void testMapperSkipsRows() throws ApiException {
+    List<String> result = new ArrayList<>();
+    int          rows   = WsApiRowReader.read(in(XML), row -> row.get("id").equals("2") ? null : row.get("id"), result::add);
+    assertEquals(3, rows);
+    assertEquals(2, result.size());
+  }
+
+  @Test
+  void testNoResult() throws ApiException {
+    assertEquals(0, WsApiRowReader.read(in("<error><message>failed</message></error>"), row -> row, r -> {
+    }));
+    assertEquals(0, WsApiRowReader.readAll(in("<result/>"), row -> row).size());
+  }
+
+  @Test
+  void testIterator() throws ApiException {
+    try (WsApiRowReader.RowIterator<String> it = WsApiRowReader.iterator(in(XML), row -> row.get("id"))) {
+      assertTrue(it.hasNext());
+      assertEquals("1", it.next());
+      assertEquals(1, it.getRowCount());
+      assertEquals("2", it.next());
+      assertEquals("3", it.next());
+      assertFalse(it.hasNext());
+      assertEquals(3, it.getRowCount());
+      assertThrows(NoSuchElementException.class, it::next);
+    }
+  }
+
+  @Test
+  void testIteratorReadError() throws ApiException {
+    try (WsApiRowReader.RowIterator<String> it = WsApiRowReader.iterator(in("<result><row><id>1</id></row><row><id>2</i"), row -> row.get("id"))) {
+      assertEquals("1", it.next());
+      assertThrows(UncheckedApiException.class, it::hasNext);
+      assertFalse(it.hasNext());
+    }
+  }
+
+  @Test
+  void testReadError() {
+    assertThrows(ApiException.class, () -> WsApiRowReader.read(in("<result><row><id>1</id>"), row -> row.get("id"), r -> {
+    }));
+  }
+
+  @Test
+  void testMapperError() {
+    ApiException e = assertThrows(ApiException.class, () -> WsApiRowReader.read(in(XML), row -> {
+      throw new ApiException("bad row " + row.getIndex());
+    }, r -> {
+    }));
+    assertEquals("bad row 0", e.getMessage());
+  }
+}
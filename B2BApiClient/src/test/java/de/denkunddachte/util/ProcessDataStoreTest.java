@@ -0,0 +1,151 @@
+package de.denkunddachte.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Hashtable;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProcessDataStoreTest {
+  private static final long MB = 1024 * 1024L;
+
+  @TempDir
+  Path                      dir;
+
+  private static Hashtable<String, String> table(String... kv) {
+    Hashtable<String, String> t = new Hashtable<>();
+    for (int i = 0; i < kv.length; i += 2) {
+      t.put(kv[i], kv[i + 1]);
+    }
+    return t;
+  }
+
+  // incompressible value, so file sizes are predictable
+  private static Hashtable<String, String> randomData(long seed, int len) {
+    Random        rnd = new Random(seed);
+    StringBuilder sb  = new StringBuilder(len);
+    for (int i = 0; i < len; i++) {
+      sb.append((char) (0x21 + rnd.nextInt(90)));
+    }
+    return table("data", sb.toString());
+  }
+
+  private File entryFile(ProcessDataStore store, String wfcId) {
+    return new File(new File(store.getDir(), wfcId.substring(wfcId.length() - 2)), wfcId + ".pd.gz");
+  }
+
+  @Test
+  void testPutGet() {
+    ProcessDataStore store = new ProcessDataStore(dir.toFile(), "host:5080", MB);
+    assertNull(store.get("WFC_0001"));
+    store.put("WFC_0001", table("/ProcessData/a", "1", "/ProcessData/b", "äöü €"), table("report", "ok"));
+    ProcessDataStore.Entry e = store.get("WFC_0001");
+    assertNotNull(e);
+    assertEquals("1", e.getProcessData().get("/ProcessData/a"));
+    assertEquals("äöü €", e.getProcessData().get("/ProcessData/b"));
+    assertEquals("ok", e.getStatusReport().get("report"));
+    assertEquals(1, store.getHits());
+    assertEquals(1, store.getMisses());
+    assertEquals(1, store.getWrites());
+    assertTrue(entryFile(store, "WFC_0001").isFile());
+    // namespace is a valid directory name
+    assertEquals("host_5080", store.getDir().getName());
+  }
+
+  @Test
+  void testNullTables() {
+    ProcessDataStore store = new ProcessDataStore(dir.toFile(), null, MB);
+    store.put("1", null, null);
+    ProcessDataStore.Entry e = store.get("1");
+    assertNotNull(e);
+    assertNull(e.getProcessData());
+    assertNull(e.getStatusReport());
+    assertEquals("default", store.getDir().getName());
+  }
+
+  @Test
+  void testReplace() {
+    ProcessDataStore store = new ProcessDataStore(dir.toFile(), "ns", MB);
+    store.put("42", table("a", "1"), null);
+    store.put("42", table("a", "2"), null);
+    assertEquals("2", store.get("42").getProcessData().get("a"));
+  }
+
+  @Test
+  void testNamespacesAreSeparated() {
+    ProcessDataStore a = new ProcessDataStore(dir.toFile(), "a", MB);
+    ProcessDataStore b = new ProcessDataStore(dir.toFile(), "b", MB);
+    a.put("100", table("k", "a"), null);
+    assertNull(b.get("100"));
+    assertEquals("a", new ProcessDataStore(dir.toFile(), "a", MB).get("100").getProcessData().get("k"));
+  }
+
+  @Test
+  void testInvalidWfcId() {
+    ProcessDataStore store = new ProcessDataStore(dir.toFile(), "ns", MB);
+    store.put("../x", table("k", "v"), null);
+    store.put(null, table("k", "v"), null);
+    assertNull(store.get("../x"));
+    assertNull(store.get(null));
+    assertEquals(0, store.getWrites());
+    assertFalse(store.getDir().exists());
+  }
+
+  @Test
+  void testCorruptEntryIsRemoved() throws IOException {
+    ProcessDataStore store = new ProcessDataStore(dir.toFile(), "ns", MB);
+    store.put("4711", table("k", "v"), null);
+    File f = entryFile(store, "4711");
+    Files.write(f.toPath(), "garbage".getBytes(StandardCharsets.US_ASCII));
+    assertNull(store.get("4711"));
+    assertFalse(f.exists());
+    assertEquals(1, store.getMisses());
+  }
+
+  @Test
+  void testEvictLeastRecentlyUsed() {
+    ProcessDataStore probe = new ProcessDataStore(dir.toFile(), "probe", MB);
+    probe.put("99", randomData(99, 2000), null);
+    long             size  = entryFile(probe, "99").length();
+
+    ProcessDataStore store = new ProcessDataStore(dir.toFile(), "ns", (long) (size * 4.5));
+    long             now   = System.currentTimeMillis();
+    for (int i = 1; i <= 3; i++) {
+      store.put("10" + i, randomData(i, 2000), null);
+      assertTrue(entryFile(store, "10" + i).setLastModified(now - (4 - i) * 1000_000L));
+    }
+    // 101 is oldest, but used now
+    assertNotNull(store.get("101"));
+    store.put("104", randomData(4, 2000), null);
+    assertEquals(0, store.getEvictions());
+    store.put("105", randomData(5, 2000), null);
+    // 5 entries > 4.5 entries: evict down to 80% (3.6 entries)
+    assertEquals(2, store.getEvictions());
+    assertFalse(entryFile(store, "102").exists());
+    assertFalse(entryFile(store, "103").exists());
+    assertTrue(entryFile(store, "101").exists());
+    assertTrue(entryFile(store, "104").exists());
+    assertTrue(entryFile(store, "105").exists());
+  }
+
+  @Test
+  void testClear() {
+    ProcessDataStore store = new ProcessDataStore(dir.toFile(), "ns", MB);
+    store.put("1", table("k", "v"), null);
+    store.put("22", table("k", "v"), null);
+    store.clear();
+    assertNull(store.get("1"));
+    assertNull(store.get("22"));
+  }
+}
@@ -0,0 +1,65 @@
+package de.denkunddachte.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+  @Test
+  void testDisabled() throws InterruptedException {
+    RateLimiter rl = new RateLimiter(0);
+    assertFalse(rl.isEnabled());
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(rl.tryAcquire());
+      rl.acquire();
+    }
+  }
+
+  @Test
+  void testBurst() {
+    RateLimiter rl = new RateLimiter(1, 5);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(rl.tryAcquire(), "token " + i);
+    }
+    assertFalse(rl.tryAcquire());
+  }
+
+  @Test
+  void testDefaultBurstIsRate() {
+    RateLimiter rl = new RateLimiter(3);
+    assertTrue(rl.tryAcquire());
+    assertTrue(rl.tryAcquire());
+    assertTrue(rl.tryAcquire());
+    assertFalse(rl.tryAcquire());
+  }
+
+  @Test
+  void testRefill() throws InterruptedException {
+    RateLimiter rl = new RateLimiter(20, 1);
+    assertTrue(rl.tryAcquire());
+    assertFalse(rl.tryAcquire());
+    TimeUnit.MILLISECONDS.sleep(120);
+    assertTrue(rl.tryAcquire());
+    // burst caps the refill
+    TimeUnit.MILLISECONDS.sleep(200);
+    assertTrue(rl.tryAcquire());
+    assertFalse(rl.tryAcquire());
+  }
+
+  @Test
+  void testAcquireWaitsForRate() throws InterruptedException {
+    RateLimiter rl    = new RateLimiter(50, 1);
+    long        start = System.nanoTime();
+    for (int i = 0; i < 6; i++) {
+      rl.acquire();
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    // first token from bucket, 5 more at 20ms each
+    assertTrue(millis >= 90, "elapsed " + millis + "ms");
+    assertTrue(millis < 2000, "elapsed " + millis + "ms");
+  }
+}
@@ -0,0 +1,197 @@
+package de.denkunddachte.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResponseCacheTest {
+  private static final long HOUR = 3600 * 1000L;
+
+  @TempDir
+  Path                      dir;
+
+  private File cacheFile() {
+    return dir.resolve("apicache.dat").toFile();
+  }
+
+  @Test
+  void testGetPut() {
+    ResponseCache c = new ResponseCache(HOUR, 100, 1024 * 1024, null);
+    assertNull(c.get("mailboxes", "x=1"));
+    c.put("mailboxes", "x=1", "data");
+    c.put("mailboxes", null, "all");
+    assertEquals("data", c.get("mailboxes", "x=1"));
+    assertEquals("all", c.get("mailboxes", ""));
+    assertEquals(2, c.getHits());
+    assertEquals(1, c.getMisses());
+    c.put("mailboxes", "x=1", null);
+    assertNull(c.get("mailboxes", "x=1"));
+  }
+
+  @Test
+  void testExpiry() {
+    ResponseCache c = new ResponseCache(0, 100, 1024 * 1024, null);
+    c.put("svc", "a", "data");
+    assertNull(c.get("svc", "a"));
+    assertEquals(0, c.size());
+  }
+
+  @Test
+  void testEvictLeastRecentlyUsed() {
+    ResponseCache c = new ResponseCache(HOUR, 3, 1024 * 1024, null);
+    c.put("svc", "1", "a");
+    c.put("svc", "2", "b");
+    c.put("svc", "3", "c");
+    c.get("svc", "1");
+    c.put("svc", "4", "d");
+    assertEquals(3, c.size());
+    assertEquals(1, c.getEvictions());
+    assertNull(c.get("svc", "2"));
+    assertEquals("a", c.get("svc", "1"));
+  }
+
+  @Test
+  void testEvictBySize() {
+    ResponseCache c = new ResponseCache(HOUR, 100, 1000, null);
+    c.put("svc", "1", new String(new char[300]));
+    c.put("svc", "2", new String(new char[300]));
+    assertEquals(1, c.size());
+    assertNull(c.get("svc", "1"));
+    // entry larger than maxBytes is kept on its own
+    c.put("svc", "3", new String(new char[2000]));
+    assertEquals(1, c.size());
+    assertTrue(c.get("svc", "3") != null);
+  }
+
+  @Test
+  void testInvalidate() {
+    ResponseCache c = new ResponseCache(HOUR, 100, 1024 * 1024, null);
+    c.put("mailboxes", "/a", "a");
+    c.put("mailboxes", "/b", "b");
+    c.put("mailboxes", "?searchFor=x", "x");
+    c.put("useraccounts", "u", "u");
+    c.invalidate("mailboxes//a");
+    assertNull(c.get("mailboxes", "/a"));
+    assertEquals("b", c.get("mailboxes", "/b"));
+    c.invalidate("mailboxes");
+    assertNull(c.get("mailboxes", "/b"));
+    assertNull(c.get("mailboxes", "?searchFor=x"));
+    assertEquals("u", c.get("useraccounts", "u"));
+    assertEquals(3, c.getInvalidations());
+  }
+
+  @Test
+  void testPersistentTier() {
+    ResponseCache c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    c.put("svc", "1", "one äöü");
+    c.put("svc", "2", "two");
+    c.put("svc", "2", "two v2");
+    c.put("svc", "3", "three");
+    c.remove("svc", "3");
+    c.close();
+
+    c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    assertEquals(2, c.getPersistentSize());
+    assertEquals("one äöü", c.get("svc", "1"));
+    assertEquals("two v2", c.get("svc", "2"));
+    // tombstone
+    assertNull(c.get("svc", "3"));
+    assertEquals(2, c.getFileHits());
+    // invalidate must also remove entries that are only in the file
+    c.close();
+    c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    c.invalidate("svc");
+    c.close();
+    c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    assertEquals(0, c.getPersistentSize());
+    c.close();
+  }
+
+  @Test
+  void testExpiredEntriesNotLoaded() throws InterruptedException {
+    ResponseCache c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    c.put("svc", "1", "one");
+    c.close();
+    Thread.sleep(5);
+    c = new ResponseCache(1, 100, 1024 * 1024, cacheFile());
+    assertEquals(0, c.getPersistentSize());
+    assertNull(c.get("svc", "1"));
+    c.close();
+  }
+
+  @Test
+  void testTruncatedRecord() throws IOException {
+    ResponseCache c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    c.put("svc", "1", "one");
+    c.put("svc", "2", "two");
+    c.close();
+    long len;
+    try (RandomAccessFile f = new RandomAccessFile(cacheFile(), "rw")) {
+      len = f.length();
+      f.setLength(len - 2);
+    }
+    c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    assertEquals("one", c.get("svc", "1"));
+    assertNull(c.get("svc", "2"));
+    assertTrue(cacheFile().length() < len - 2);
+    // appends after truncation are readable
+    c.put("svc", "3", "three");
+    c.close();
+    c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    assertEquals("three", c.get("svc", "3"));
+    c.close();
+  }
+
+  @Test
+  void testCompaction() {
+    String        data = new String(new char[64 * 1024]).replace('\0', 'x');
+    ResponseCache c    = new ResponseCache(HOUR, 100, 64 * 1024 * 1024, cacheFile());
+    for (int i = 0; i < 40; i++) {
+      c.put("svc", String.valueOf(i % 4), data + i);
+    }
+    c.close();
+    long size = cacheFile().length();
+    assertTrue(size > 1024 * 1024);
+
+    c = new ResponseCache(HOUR, 100, 64 * 1024 * 1024, cacheFile());
+    assertTrue(cacheFile().length() < size / 4, "cache file was not compacted");
+    assertEquals(4, c.getPersistentSize());
+    assertEquals(data + 39, c.get("svc", "3"));
+    assertEquals(data + 36, c.get("svc", "0"));
+    c.close();
+  }
+
+  @Test
+  void testLockedFile() {
+    ResponseCache c1 = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    ResponseCache c2 = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    c1.put("svc", "1", "one");
+    c2.put("svc", "2", "two");
+    c1.close();
+    c2.close();
+    ResponseCache c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    assertEquals("one", c.get("svc", "1"));
+    // second instance used memory only
+    assertNull(c.get("svc", "2"));
+    c.close();
+  }
+
+  @Test
+  void testClear() {
+    ResponseCache c = new ResponseCache(HOUR, 100, 1024 * 1024, cacheFile());
+    c.put("svc", "1", "one");
+    c.clear();
+    assertEquals(0, c.size());
+    assertEquals(0, c.getPersistentSize());
+    assertEquals(0, cacheFile().length());
+    c.close();
+  }
+}
@@ -0,0 +1,82 @@
+package de.denkunddachte.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import de.denkunddachte.exception.ApiException;
+
+class XmlFormatterTest {
+  private static final String NL   = System.lineSeparator();
+  private static final String DECL = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+  @Test
+  void testIndent() throws ApiException {
+    String xml = "<ProcessData>\n  \n<a>1</a><b><c/><d x=\"1\">t</d></b></ProcessData>";
+    assertEquals(DECL + NL + "<ProcessData>" + NL + "  <a>1</a>" + NL + "  <b>" + NL + "    <c/>" + NL + "    <d x=\"1\">t</d>" + NL + "  </b>" + NL
+        + "</ProcessData>" + NL, XmlFormatter.format(xml, 2));
+  }
+
+  @Test
+  void testNoIndent() throws ApiException {
+    assertEquals(DECL + NL + "<a>" + NL + "<b/>" + NL + "</a>" + NL, XmlFormatter.format("<a><b></b></a>", 0));
+  }
+
+  @Test
+  void testMixedContent() throws ApiException {
+    // no line breaks inside elements with text
+    assertEquals(DECL + NL + "<p>text <b>bold</b> more</p>" + NL, XmlFormatter.format("<p>text <b>bold</b> more</p>", 2));
+  }
+
+  @Test
+  void testEscape() throws ApiException {
+    String out = XmlFormatter.format("<a v=\"x &quot;y&quot; &lt; &amp;\">1 &lt; 2 &amp;&amp; 3 &gt; 2</a>", 2);
+    assertTrue(out.contains("<a v=\"x &quot;y&quot; &lt; &amp;\">1 &lt; 2 &amp;&amp; 3 &gt; 2</a>"), out);
+  }
+
+  @Test
+  void testCdataCommentPi() throws ApiException {
+    String out = XmlFormatter.format("<a><!-- c --><?target data?><b><![CDATA[<raw>&]]></b></a>", 2);
+    assertTrue(out.contains(NL + "  <!-- c -->"), out);
+    assertTrue(out.contains(NL + "  <?target data?>"), out);
+    // CDATA is coalesced with text
+    assertTrue(out.contains("<b>&lt;raw&gt;&amp;</b>"), out);
+  }
+
+  @Test
+  void testNamespaces() throws ApiException {
+    String out = XmlFormatter.format("<x:a xmlns:x=\"urn:x\" xmlns=\"urn:d\"><b x:attr=\"1\"/></x:a>", 2);
+    assertTrue(out.contains("<x:a xmlns:x=\"urn:x\" xmlns=\"urn:d\">"), out);
+    assertTrue(out.contains("<b x:attr=\"1\"/>"), out);
+  }
+
+  @Test
+  void testStreaming() throws ApiException {
+    StringBuilder sb = new StringBuilder("<rows>");
+    for (int i = 0; i < 1000; i++) {
+      sb.append("<row id=\"").append(i).append("\"/>");
+    }
+    StringWriter wr = new StringWriter();
+    XmlFormatter.format(new StringReader(sb.append("</rows>").toString()), wr, 1);
+    assertTrue(wr.toString().contains(NL + " <row id=\"999\"/>" + NL + "</rows>"));
+  }
+
+  @Test
+  void testInvalid() throws ApiException {
+    assertNull(XmlFormatter.format(null, 2));
+    assertThrows(ApiException.class, () -> XmlFormatter.format("<a><b></a>", 2));
+  }
+
+  @Test
+  void testDtdNotProcessed() {
+    // external entities must not be resolved
+    String xml = "<!DOCTYPE a [<!ENTITY e SYSTEM \"file:///etc/passwd\">]><a>&e;</a>";
+    assertThrows(ApiException.class, () -> XmlFormatter.format(xml, 2));
+  }
+}
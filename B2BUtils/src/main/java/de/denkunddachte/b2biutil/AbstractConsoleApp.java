@@ -7,6 +7,7 @@ import java.io.InputStreamReader;
 import java.io.Writer;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.format.DateTimeFormatter;
@@ -28,6 +29,7 @@ import de.denkunddachte.ft.ExportOutput;
 import de.denkunddachte.ft.Exportable;
 import de.denkunddachte.sfgapi.ApiClient;
 import de.denkunddachte.util.ApiConfig;
+import de.denkunddachte.util.ApiStats;
 import de.denkunddachte.utils.CommandLineParser;
 import de.denkunddachte.utils.CommandLineParser.CommandLineException;
 import de.denkunddachte.utils.CommandLineParser.CommandLineOption;
@@ -68,6 +70,7 @@ public abstract class AbstractConsoleApp implements AutoCloseable {
       OPTIONS.add("yes", "Assume yes in intercative actions.");
       OPTIONS.add(Common.PROP_SHOWVERSION, "Show version information.");
       OPTIONS.add(UPDATE_WS_API, "Install/update WS API WFD on server.");
+      OPTIONS.add(Common.PROP_STATS + ":s", "Show request statistics at exit (text, json, prometheus or file name *.json, *.prom, *.txt).");
       OPTIONS.add("debug|D=s", "Set debug to stdout to level (use java.util.logging level)", LogConfig.PROP_LOG_STDERR);
       OPTIONS.add("help", "Show this help.", Config.PROP_HELP);
 
@@ -275,7 +278,46 @@ public abstract class AbstractConsoleApp implements AutoCloseable {
   public void close() throws ApiException {
     if (exporter != null)
       exporter.close();
+    if (cfg != null && cfg.hasProperty(Common.PROP_STATS)) {
+      printStats(cfg.getString(Common.PROP_STATS));
+    }
+  }
 
+  /**
+   * Print request statistics collected by the API clients to stderr or write them to file.
+   *
+   * @param target
+   *          format (text, json, prometheus) or file name (format by extension: .json, .prom, default: text)
+   */
+  protected void printStats(String target) throws ApiException {
+    ApiStats stats  = ApiStats.getInstance();
+    String   format = target == null || target.isEmpty() ? "text" : target.toLowerCase();
+    File     file   = null;
+    if (!format.equals("text") && !format.equals("json") && !format.equals("prometheus")) {
+      file = new File(target);
+      format = format.endsWith(".json") ? "json" : format.endsWith(".prom") ? "prometheus" : "text";
+    }
+    String out;
+    switch (format) {
+    case "json":
+      out = stats.toJSON().toString(2) + LF;
+      break;
+    case "prometheus":
+      out = stats.toPrometheus();
+      break;
+    default:
+      out = stats.format();
+    }
+    if (file == null) {
+      System.err.print(out);
+    } else {
+      try {
+        Files.write(file.toPath(), out.getBytes(StandardCharsets.UTF_8));
+        LOG.log(Level.FINE, "Wrote request statistics to {0}.", file);
+      } catch (IOException e) {
+        throw new ApiException("Could not write statistics to " + file + "!", e);
+      }
+    }
   }
 
   private boolean newApiAvailable(String installedVersion) throws ApiException {
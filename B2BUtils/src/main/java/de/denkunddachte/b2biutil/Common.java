@@ -4,6 +4,7 @@ public class Common {
   public static final String PROP_VERSION          = "version";
   public static final String PROP_SHOWVERSION      = "showversion";
   public static final String PROP_NOUTF8           = "noutf8";
+  public static final String PROP_STATS            = "stats";
   
   public static final String ANSI_RESET = "\u001B[0m";
   public static final String ANSI_BLACK = "\u001B[30m";
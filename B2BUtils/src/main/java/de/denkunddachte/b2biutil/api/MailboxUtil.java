@@ -5,13 +5,16 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import de.denkunddachte.b2biutil.AbstractConsoleApp;
 import de.denkunddachte.exception.ApiException;
-import de.denkunddachte.sfgapi.ApiClient;
+import de.denkunddachte.sfgapi.BulkOperation;
+import de.denkunddachte.sfgapi.BulkOperation.Operation;
 import de.denkunddachte.sfgapi.Mailbox;
 import de.denkunddachte.sfgapi.Mailbox.CreateParent;
 import de.denkunddachte.sfgapi.MailboxItem;
@@ -110,11 +113,9 @@ public class MailboxUtil extends AbstractConsoleApp {
         api.list(cfg.getString(Props.PROP_LIST), cfg.getBoolean(Props.PROP_CASE_SENSITIVE), cfg.getBoolean(Props.PROP_RECURSE),
             cfg.getBoolean(Props.PROP_SHOW_DETAILS), cfg.getBoolean(Props.PROP_SHOW_DESCRIPTION));
       } else if (cfg.hasProperty(Props.PROP_CREATE)) {
-        for (String mbxPath : cfg.getString(Props.PROP_CREATE).split(",")) {
-          api.create(mbxPath, StringUtils.expandVariables(cfg.getProperty(Props.PROP_DESCRIPTION)), cfg.getBoolean(Props.PROP_CASE_SENSITIVE),
-              cfg.getBoolean(Props.PROP_CREATE_PARENTS), cfg.getBoolean(Props.PROP_INHERIT_FROM_PARENT), cfg.getProperty(Props.PROP_GROUPS),
-              cfg.getProperty(Props.PROP_USERS));
-        }
+        api.create(cfg.getString(Props.PROP_CREATE).split(","), StringUtils.expandVariables(cfg.getProperty(Props.PROP_DESCRIPTION)),
+            cfg.getBoolean(Props.PROP_CASE_SENSITIVE), cfg.getBoolean(Props.PROP_CREATE_PARENTS), cfg.getBoolean(Props.PROP_INHERIT_FROM_PARENT),
+            cfg.getProperty(Props.PROP_GROUPS), cfg.getProperty(Props.PROP_USERS));
       } else if (cfg.hasProperty(Props.PROP_MODIFY)) {
         Set<String> groups, users;
         boolean     replace = false;
@@ -126,14 +127,18 @@ public class MailboxUtil extends AbstractConsoleApp {
           users = toSet(cfg.getString(Props.PROP_ADD_USERS));
           groups = toSet(cfg.getString(Props.PROP_ADD_GROUPS));
         }
+        BulkOperation<Mailbox> updates = new BulkOperation<>(Operation.UPDATE);
         for (String mbxPath : cfg.getString(Props.PROP_MODIFY).split(",")) {
           api.modify(mbxPath, cfg.getBoolean(Props.PROP_CASE_SENSITIVE), cfg.getBoolean(Props.PROP_RECURSE), users, groups, replace,
-              toSet(cfg.getString(Props.PROP_DEL_USERS)), toSet(cfg.getString(Props.PROP_DEL_USERS)));
+              toSet(cfg.getString(Props.PROP_DEL_USERS)), toSet(cfg.getString(Props.PROP_DEL_USERS)), updates);
         }
+        api.runBulk(updates, "Updated mailbox %s%n", "Could not update mailbox %s: %s%n");
       } else if (cfg.hasProperty(Props.PROP_DELETE)) {
+        BulkOperation<Mailbox> deletes = new BulkOperation<>(Operation.DELETE);
         for (String mbxPath : cfg.getString(Props.PROP_DELETE).split(",")) {
-          api.delete(mbxPath, cfg.getBoolean(Props.PROP_CASE_SENSITIVE), cfg.getBoolean(Props.PROP_RECURSE), cfg.getBoolean(Props.PROP_FORCE));
+          api.delete(mbxPath, cfg.getBoolean(Props.PROP_CASE_SENSITIVE), cfg.getBoolean(Props.PROP_RECURSE), cfg.getBoolean(Props.PROP_FORCE), deletes);
         }
+        api.runBulk(deletes, "Deleted mailbox(es): %s%n", "Could not delete mailbox(es) %s: %s%n");
       }
       rc = api.getRc();
     } catch (CommandLineException e) {
@@ -217,12 +222,65 @@ public class MailboxUtil extends AbstractConsoleApp {
 
   }
 
-  private void create(String mbxPath, String description, boolean caseSensitive, boolean createParents, boolean inheritFromParent, String groups, String users)
-      throws ApiException {
+  private void create(String[] mbxPaths, String description, boolean caseSensitive, boolean createParents, boolean inheritFromParent, String groups,
+      String users) throws ApiException {
+    // create level by level, so parents in mbxPaths exist before children are prepared (inheritFromParent) and created
+    Map<Integer, List<String>> levels = new TreeMap<>();
+    for (String mbxPath : mbxPaths) {
+      levels.computeIfAbsent(getDepth(mbxPath), k -> new ArrayList<>()).add(mbxPath);
+    }
+    for (List<String> level : levels.values()) {
+      BulkOperation<Mailbox> creates = new BulkOperation<>(Operation.CREATE);
+      if (createParents) {
+        // mailboxes may share parents that must not be created concurrently
+        creates.setConcurrency(1);
+      }
+      for (String mbxPath : level) {
+        Mailbox mbx = create(mbxPath, description, caseSensitive, createParents, inheritFromParent, groups, users);
+        if (mbx != null) {
+          creates.add(mbx);
+        }
+      }
+      runBulk(creates, "Created mailbox %s.%n", "Mailbox %s not created: %s%n");
+    }
+  }
+
+  private static int getDepth(String mbxPath) {
+    int depth = 0;
+    for (int i = 0; i < mbxPath.length(); i++) {
+      if (mbxPath.charAt(i) == '/' && i < mbxPath.length() - 1) {
+        depth++;
+      }
+    }
+    return depth;
+  }
+
+  private void runBulk(BulkOperation<Mailbox> bulk, String okFormat, String errorFormat) throws ApiException {
+    if (bulk.isEmpty()) {
+      return;
+    }
+    BulkOperation.Report<Mailbox> report = bulk.run();
+    for (BulkOperation.Result<Mailbox> r : report.getResults()) {
+      if (r.isSuccess()) {
+        System.out.format(okFormat, r.getObject().getPath());
+      } else {
+        System.err.format(errorFormat, r.getObject().getPath(), r.getErrorMsg());
+      }
+    }
+    if (!report.isSuccess()) {
+      setRc(1);
+    }
+    if (report.getResults().size() > 1) {
+      System.out.println(report);
+    }
+  }
+
+  private Mailbox create(String mbxPath, String description, boolean caseSensitive, boolean createParents, boolean inheritFromParent, String groups,
+      String users) throws ApiException {
     Mailbox mbx = Mailbox.find(mbxPath, caseSensitive);
     if (mbx != null) {
       System.out.format("Mailbox %s exists: %s%n", mbxPath, mbx);
-      return;
+      return null;
     }
 
     mbx = new Mailbox(mbxPath, description);
@@ -247,16 +305,11 @@ public class MailboxUtil extends AbstractConsoleApp {
       }
     }
 
-    if (mbx.create()) {
-      System.out.format("Created mailbox %s.%n", mbx.getPath());
-    } else {
-      setRc(1);
-      System.err.format("Mailbox %s not created: error code=%s, error=%s%n", mbx.getPath(), ApiClient.getApiReturnCode(), ApiClient.getApiErrorMsg());
-    }
+    return mbx;
   }
 
   private void modify(String mbxPath, boolean caseSensitive, boolean recurse, Set<String> addUsers, Set<String> addGroups, boolean replace,
-      Set<String> delUsers, Set<String> delGroups) throws ApiException {
+      Set<String> delUsers, Set<String> delGroups, BulkOperation<Mailbox> updates) throws ApiException {
     Mailbox mbx = Mailbox.find(mbxPath, caseSensitive);
     if (mbx == null) {
       System.out.format("Mailbox %s does not exist!%n", mbxPath);
@@ -324,17 +377,12 @@ public class MailboxUtil extends AbstractConsoleApp {
       }
 
       if (update) {
-        if (m.update()) {
-          System.out.format("Updated mailbox %s%n", m);
-        } else {
-          System.err.format("Could not update mailbox %s: %s%n", m, ApiClient.getApiErrorMsg());
-          setRc(1);
-        }
+        updates.add(m);
       }
     }
   }
 
-  private void delete(String mbxPath, boolean caseSensitive, boolean recurse, boolean force) throws ApiException {
+  private void delete(String mbxPath, boolean caseSensitive, boolean recurse, boolean force, BulkOperation<Mailbox> deletes) throws ApiException {
     Mailbox mbx = Mailbox.find(mbxPath, caseSensitive);
     LOG.log(Level.FINE, "delete(): mbxPath={0}, caseSensitive={1}, recurse={2}, force={3}, mbx={4}",
         new Object[] { mbxPath, caseSensitive, recurse, force, mbx });
@@ -344,12 +392,7 @@ public class MailboxUtil extends AbstractConsoleApp {
       return;
     }
     if ((recurse && force) || mbx.getContents().isEmpty() || (mbx.getSubMailboxList().isEmpty() && force)) {
-      if (mbx.delete()) {
-        System.out.format("Deleted mailbox(es): %s%n", mbx);
-      } else {
-        System.err.format("Could not delete mailbox(es) %s: %s%n", mbx.getPath(), ApiClient.getApiErrorMsg());
-        setRc(1);
-      }
+      deletes.add(mbx);
       return;
     }
 
@@ -361,7 +404,7 @@ public class MailboxUtil extends AbstractConsoleApp {
     // mbx contains submbx
     for (MailboxItem mi : mbx.getSubMailboxList()) {
       LOG.log(Level.FINE, "delete(): subMailbox={0}", mi);
-      delete(mbx.getPath() + "/" + mi.getName(), caseSensitive, recurse, force);
+      delete(mbx.getPath() + "/" + mi.getName(), caseSensitive, recurse, force, deletes);
     }
   }
 
@@ -6,8 +6,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,6 +19,8 @@ import de.denkunddachte.b2biutil.AbstractConsoleApp;
 import de.denkunddachte.enums.ExecState;
 import de.denkunddachte.exception.ApiException;
 import de.denkunddachte.sfgapi.ApiClient;
+import de.denkunddachte.sfgapi.BulkOperation;
+import de.denkunddachte.sfgapi.BulkOperation.Operation;
 import de.denkunddachte.sfgapi.Property;
 import de.denkunddachte.sfgapi.PropertyFiles;
 import de.denkunddachte.sfgapi.PropertyNodeValue;
@@ -307,24 +313,74 @@ public class PropertiesManager extends AbstractConsoleApp {
       return;
     }
 
+    final Map<String, Property> existing = new HashMap<>(pf.getProperties());
     if (clearBefore) {
       System.out.format("Delete existing properties with prefix %s.%n", prefix);
-      deleteProperties(prefix, "*", 0);
+      BulkOperation.Report<Property> deleted = deleteProperties(prefix, "*", 0);
+      if (deleted != null) {
+        deleted.getSucceeded().forEach(r -> existing.remove(r.getObject().getPropertyKey()));
+      }
     }
     final List<String> keys = new ArrayList<>(props.size());
     for (Object k : props.keySet()) {
       keys.add((String) k);
     }
     Collections.sort(keys);
-    Pattern p = Pattern.compile("(\\S+)\\[node(\\d+)\\]");
+    // collect new and changed properties, create new properties without node values (create() would post them and
+    // create them again), then add node values and update in bulk
+    Map<String, Property>             created    = new LinkedHashMap<>();
+    Map<String, Property>             updated    = new LinkedHashMap<>();
+    Map<String, Map<Integer, String>> nodeValues = new HashMap<>();
+    Pattern                           p          = Pattern.compile("(\\S+)\\[node(\\d+)\\]");
     for (String key : keys) {
-      Matcher m = p.matcher(key);
-      if (m.matches()) {
-        setProperty(prefix, m.group(1), Integer.parseInt(m.group(2)), props.getProperty(key));
+      Matcher m       = p.matcher(key);
+      String  propKey = m.matches() ? m.group(1) : key;
+      int     node    = m.matches() ? Integer.parseInt(m.group(2)) : 0;
+      if (node > 0) {
+        nodeValues.computeIfAbsent(propKey, k -> new TreeMap<>()).put(node, props.getProperty(key));
+      }
+      Property prop = existing.get(propKey);
+      if (prop != null) {
+        updated.put(propKey, prop);
+      } else {
+        prop = created.computeIfAbsent(propKey, k -> new Property(pf, k, null));
+      }
+      if (node == 0) {
+        prop.setPropertyValue(props.getProperty(key));
+      }
+    }
+    BulkOperation.Report<Property> report = runBulk(prefix, new BulkOperation<Property>(Operation.CREATE).addAll(created.values()),
+        "Created property [%s]%s%n", "Failed to create property [%s]%s: %s%n");
+    if (report != null) {
+      report.getSucceeded().stream().map(BulkOperation.Result::getObject).filter(prop -> nodeValues.containsKey(prop.getPropertyKey()))
+          .forEach(prop -> updated.put(prop.getPropertyKey(), prop));
+    }
+    for (Property prop : updated.values()) {
+      for (Map.Entry<Integer, String> nv : nodeValues.getOrDefault(prop.getPropertyKey(), Collections.emptyMap()).entrySet()) {
+        prop.setNodeValue(nv.getKey(), nv.getValue());
+      }
+    }
+    runBulk(prefix, new BulkOperation<Property>(Operation.UPDATE).addAll(updated.values()), "Updated property [%s]%s%n", "Failed to set property [%s]%s: %s%n");
+  }
+
+  private BulkOperation.Report<Property> runBulk(String prefix, BulkOperation<Property> bulk, String okFormat, String errorFormat) throws ApiException {
+    if (bulk.isEmpty()) {
+      return null;
+    }
+    BulkOperation.Report<Property> report = bulk.run();
+    for (BulkOperation.Result<Property> r : report.getResults()) {
+      Property prop = r.getObject();
+      if (r.isSuccess()) {
+        System.out.format(okFormat, prefix, prop.getPropertyKey());
       } else {
-        setProperty(prefix, key, 0, props.getProperty(key));
+        System.err.format(errorFormat, prefix, prop.getPropertyKey(), r.getErrorMsg());
       }
     }
+    if (!report.isSuccess()) {
+      setRc(1);
+    }
+    System.out.println(report);
+    return report;
   }
 
   private PropertyFiles getPropertyFile(String prefix, String description, boolean create) throws ApiException {
@@ -368,15 +424,14 @@ public class PropertiesManager extends AbstractConsoleApp {
     }
   }
 
-  private void deleteProperties(String prefix, String globPattern, int node) throws ApiException {
+  private BulkOperation.Report<Property> deleteProperties(String prefix, String globPattern, int node) throws ApiException {
     PropertyFiles pf = PropertyFiles.find(prefix);
     if (pf == null) {
       System.err.format("No such property prefix: %s%n", prefix);
-      return;
+      return null;
     }
-    int     deleted = 0;
-    int     failed  = 0;
-    Pattern pattern = null;
+    BulkOperation<Property> deletes = new BulkOperation<>(Operation.DELETE);
+    Pattern                 pattern = null;
     if (globPattern != null) {
       pattern = Pattern.compile(StringUtils.globToRegexp(globPattern));
     }
@@ -384,28 +439,12 @@ public class PropertiesManager extends AbstractConsoleApp {
       if (pattern != null && !pattern.matcher(p.getPropertyKey()).matches() && !pattern.matcher(p.getPropertyValue()).matches()) {
         continue;
       }
-      if (node == 0) {
-        if (p.delete()) {
-          System.out.format("Deleted property [%s]%s=%s%n", prefix, p.getPropertyKey(), p.getPropertyValue());
-          deleted++;
-        } else {
-          System.err.format("Failed to deleted property [%s]%s=%s: %s%n", prefix, p.getPropertyKey(), p.getPropertyValue(), ApiClient.getApiErrorMsg());
-          failed++;
-        }
-      } else {
-        if (p.hasNodeValue(node)) {
-          if (p.delete()) {
-            System.out.format("Deleted property node value [%s]%s=%s (node%s)%n", prefix, p.getPropertyKey(), p.getNodeValue(node), node);
-            deleted++;
-          } else {
-            System.err.format("Failed to deleted property node value [%s]%s=%s (node%s): %s%n", prefix, p.getPropertyKey(), p.getNodeValue(node), node,
-                ApiClient.getApiErrorMsg());
-            failed++;
-          }
-        }
+      if (node == 0 || p.hasNodeValue(node)) {
+        deletes.add(p);
       }
     }
-    System.out.format("Deleted %d properties, %d deletions failed.", deleted, failed);
+    return runBulk(prefix, deletes, "Deleted property [%s]%s" + (node > 0 ? " (node" + node + ")" : "") + "%n",
+        "Failed to delete property [%s]%s" + (node > 0 ? " (node" + node + ")" : "") + ": %s%n");
   }
 
   private void refresh(String prefix) throws ApiException {
@@ -23,6 +23,10 @@ public class BPML {
 
   private final List<Activity> activities = new ArrayList<>();
   private String               name;
+  // activity index: descriptions and locations by activity id, built on first access
+  private String[]             descriptions;
+  private String[]             locations;
+  private String[]             qualifiedLocations;
 
   public BPML(String bpName, int depth, String location) {
     super();
@@ -30,9 +34,10 @@ public class BPML {
     activities.add(new Activity(ActivityType.INIT, bpName, depth, location));
   }
 
-  public void addActivity(Activity currentAct) {
+  public synchronized void addActivity(Activity currentAct) {
     currentAct.id = activities.size();
     activities.add(currentAct);
+    descriptions = null;
   }
 
   public String getName() {
@@ -51,7 +56,37 @@ public class BPML {
   }
 
   public String getActivityDescription(int id) throws ApiException {
-    Activity a = getActivity(id);
+    getActivity(id);
+    return index()[id];
+  }
+
+  public String getActivityLocation(int id, String main) throws ApiException {
+    getActivity(id);
+    index();
+    return main == null || !main.equalsIgnoreCase(name) ? qualifiedLocations[id] : locations[id];
+  }
+
+  // build descriptions/locations of all activities once, steps of a workflow refer to the same activities many times
+  private synchronized String[] index() {
+    String[] result = descriptions;
+    if (result == null) {
+      int size = activities.size();
+      String[] loc  = new String[size];
+      String[] qloc = new String[size];
+      result = new String[size];
+      for (Activity a : activities) {
+        result[a.getId()] = describe(a);
+        loc[a.getId()] = a.getLocation();
+        qloc[a.getId()] = a.getLocation() + " " + name;
+      }
+      locations = loc;
+      qualifiedLocations = qloc;
+      descriptions = result;
+    }
+    return result;
+  }
+
+  private static String describe(Activity a) {
     switch (a.getType()) {
     case INIT:
       return "INIT";
@@ -69,11 +104,6 @@ public class BPML {
     return a.getName() + (a.getOptVal() == null ? "" : " [" + a.getOptVal() + "]");
   }
 
-  public String getActivityLocation(int id, String main) throws ApiException {
-    Activity a = getActivity(id);
-    return a.getLocation() + (main == null || !main.equalsIgnoreCase(name) ? " " + name : "");
-  }
-
   @Override
   public String toString() {
     return "BPML [name=" + name + ", activities=" + activities.size() + "]";
@@ -0,0 +1,239 @@
+package de.denkunddachte.b2biutil.workflow;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.sfgapi.WorkflowDefinition;
+import de.denkunddachte.util.ApiConfig;
+
+/**
+ * Cache of parsed BPML sources keyed by WFD name and version. A WFD version never changes once it was checked in, so
+ * entries never expire. Parsed sources are kept in memory; if sfgapi.bpmlcache.dir is set, the BPML source is also
+ * written GZIP compressed to <code>&lt;dir&gt;/&lt;namespace&gt;/&lt;name&gt;_&lt;version&gt;.bpml.gz</code> and
+ * parsed from there in later runs instead of downloading the WFD again. Errors of the persistent cache are logged and
+ * treated as cache misses.
+ */
+public final class BPMLCache {
+  private static final Logger     LOGGER  = Logger.getLogger(BPMLCache.class.getName());
+  private static final String     SUFFIX  = ".bpml.gz";
+  private static BPMLCache        instance;
+
+  private final Map<String, BPML> entries = new ConcurrentHashMap<>();
+  private final File              dir;
+  private final AtomicLong        hits    = new AtomicLong();
+  private final AtomicLong        loads   = new AtomicLong();
+
+  /**
+   * @param baseDir
+   *          directory of persistent cache (null: memory only)
+   * @param namespace
+   *          subdirectory for the B2Bi instance
+   */
+  public BPMLCache(File baseDir, String namespace) {
+    this.dir = baseDir == null ? null
+        : new File(baseDir, namespace == null || namespace.isEmpty() ? "default" : namespace.replaceAll("[^A-Za-z0-9._-]", "_"));
+  }
+
+  public static synchronized BPMLCache getInstance() throws ApiException {
+    if (instance == null) {
+      ApiConfig cfg = ApiConfig.getInstance();
+      instance = new BPMLCache(cfg.getBpmlCacheDir(), cfg.getServerNamespace());
+    }
+    return instance;
+  }
+
+  public static String key(String wfdName, int wfdVersion) {
+    return wfdName + "/" + wfdVersion;
+  }
+
+  /**
+   * Get parsed BPML of WFD version. Version 0 (default version) is resolved with the WFD API on every call.
+   *
+   * @param wfdName
+   *          WFD name
+   * @param wfdVersion
+   *          WFD version
+   * @return parsed BPML
+   * @throws ApiException
+   *           if the WFD does not exist or cannot be parsed
+   */
+  public BPML get(String wfdName, int wfdVersion) throws ApiException {
+    if (wfdVersion > 0) {
+      BPML bpml = lookup(key(wfdName, wfdVersion));
+      if (bpml != null) {
+        return bpml;
+      }
+    }
+    WorkflowDefinition wfd = WorkflowDefinition.find(wfdName, wfdVersion);
+    if (wfd == null) {
+      throw new ApiException("WFD " + key(wfdName, wfdVersion) + " not found!");
+    }
+    return get(wfd);
+  }
+
+  /**
+   * Get parsed BPML of WFD. The BPML source of the WFD is parsed and cached if the version is not cached yet.
+   *
+   * @param wfd
+   *          WFD (with business process)
+   * @return parsed BPML
+   * @throws ApiException
+   *           if the BPML cannot be parsed
+   */
+  public BPML get(WorkflowDefinition wfd) throws ApiException {
+    String key  = key(wfd.getName(), wfd.getWfdVersion());
+    BPML   bpml = lookup(key);
+    if (bpml == null) {
+      if (wfd.getBusinessProcess() == null) {
+        throw new ApiException("WFD " + key + " has no business process!");
+      }
+      bpml = BPML.parse(wfd.getBusinessProcess());
+      loads.incrementAndGet();
+      if (wfd.getWfdVersion() > 0) {
+        entries.put(key, bpml);
+        store(wfd.getName(), wfd.getWfdVersion(), wfd.getBusinessProcess());
+      }
+    }
+    return bpml;
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  // memory, then persistent cache
+  private BPML lookup(String key) {
+    BPML bpml = entries.get(key);
+    if (bpml == null) {
+      String src = read(key);
+      if (src != null) {
+        try {
+          bpml = BPML.parse(src);
+          entries.put(key, bpml);
+        } catch (ApiException e) {
+          LOGGER.log(Level.WARNING, "Error parsing cached BPML {0}: {1}", new Object[] { key, e.getMessage() });
+          delete(getFile(key));
+          return null;
+        }
+      }
+    }
+    if (bpml != null) {
+      hits.incrementAndGet();
+    }
+    return bpml;
+  }
+
+  private String read(String key) {
+    File f = getFile(key);
+    if (f == null || !f.isFile()) {
+      return null;
+    }
+    try (BufferedReader rd = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(f)), StandardCharsets.UTF_8))) {
+      StringBuilder sb  = new StringBuilder((int) Math.min(1 << 22, f.length() * 8));
+      char[]        buf = new char[8192];
+      int           n;
+      while ((n = rd.read(buf)) != -1) {
+        sb.append(buf, 0, n);
+      }
+      LOGGER.log(Level.FINER, "Read BPML {0} from {1}.", new Object[] { key, f });
+      return sb.toString();
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Error reading {0}, remove entry: {1}", new Object[] { f, e.getMessage() });
+      delete(f);
+      return null;
+    }
+  }
+
+  private void store(String wfdName, int wfdVersion, String src) {
+    File f = getFile(key(wfdName, wfdVersion));
+    if (f == null) {
+      return;
+    }
+    File tmp = null;
+    try {
+      File parent = f.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+        throw new IOException("Could not create directory " + parent + "!");
+      }
+      tmp = File.createTempFile("bpml_", ".tmp", parent);
+      try (Writer wr = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tmp)), StandardCharsets.UTF_8))) {
+        wr.write(src);
+      }
+      try {
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Error writing {0}: {1}", new Object[] { f, e.getMessage() });
+      if (tmp != null) {
+        delete(tmp);
+      }
+    }
+  }
+
+  // null if persistent cache is disabled
+  private File getFile(String key) {
+    if (dir == null) {
+      return null;
+    }
+    int idx = key.lastIndexOf('/');
+    try {
+      return new File(dir, URLEncoder.encode(key.substring(0, idx), "UTF-8").replace("*", "%2A") + "_" + key.substring(idx + 1) + SUFFIX);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void delete(File f) {
+    if (f != null) {
+      try {
+        Files.deleteIfExists(f.toPath());
+      } catch (IOException e) {
+        LOGGER.log(Level.FINER, "Could not delete {0}: {1}", new Object[] { f, e.getMessage() });
+      }
+    }
+  }
+
+  public File getDir() {
+    return dir;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getLoads() {
+    return loads.get();
+  }
+
+  @Override
+  public String toString() {
+    return "BPMLCache [dir=" + dir + ", entries=" + entries.size() + ", hits=" + hits.get() + ", loads=" + loads.get() + "]";
+  }
+}
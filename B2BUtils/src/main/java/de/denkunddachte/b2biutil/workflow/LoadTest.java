@@ -0,0 +1,271 @@
+package de.denkunddachte.b2biutil.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.denkunddachte.enums.ExecState;
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.sfgapi.Workflow;
+import de.denkunddachte.sfgapi.WorkflowDefinition;
+
+/**
+ * Launches a BP <code>runs</code> times from <code>concurrency</code> client threads and collects per-run latency:
+ * client latency is the time until execute() returned, server latency is the time from start of the workflow to the
+ * end of the last workflow of the execution tree. Thread starts are spread evenly over the ramp-up time. If template is
+ * set, <code>${run}</code>, <code>${thread}</code>, <code>${time}</code> and <code>${uuid}</code> are replaced in
+ * primary document and filename for each run.
+ */
+public class LoadTest {
+  private static final Logger LOG     = Logger.getLogger(LoadTest.class.getName());
+  private static final String SUCCESS = ExecState.SUCCESS.name();
+
+  private final WorkflowDefinition wfd;
+  private final int                runs;
+  private final int                concurrency;
+  private final long               rampUpMillis;
+  private File                     primaryDoc;
+  private String                   data;
+  private String                   filename;
+  private boolean                  template;
+  private final List<Run>          results = Collections.synchronizedList(new ArrayList<>());
+  private long                     wallMillis;
+
+  public static final class Run {
+    private final int    run;
+    private final long   workflowId;
+    private final String state;
+    private final long   clientMillis;
+    private final long   serverMillis;
+
+    Run(int run, long workflowId, String state, long clientMillis, long serverMillis) {
+      this.run = run;
+      this.workflowId = workflowId;
+      this.state = state;
+      this.clientMillis = clientMillis;
+      this.serverMillis = serverMillis;
+    }
+
+    public int getRun() {
+      return run;
+    }
+
+    public long getWorkflowId() {
+      return workflowId;
+    }
+
+    /**
+     * @return exeState of the first unsuccessful workflow of the execution tree (or SUCCESS), "ERROR: &lt;exception&gt;"
+     *         if the BP could not be launched
+     */
+    public String getState() {
+      return state;
+    }
+
+    public boolean isSuccess() {
+      return SUCCESS.equals(state);
+    }
+
+    public long getClientMillis() {
+      return clientMillis;
+    }
+
+    /**
+     * @return server latency or -1 if the BP could not be launched
+     */
+    public long getServerMillis() {
+      return serverMillis;
+    }
+  }
+
+  public LoadTest(WorkflowDefinition wfd, int runs, int concurrency, int rampUpSeconds) {
+    this.wfd = wfd;
+    this.runs = runs;
+    this.concurrency = Math.max(1, Math.min(concurrency, runs));
+    this.rampUpMillis = Math.max(0, rampUpSeconds) * 1000L;
+  }
+
+  public void setPrimaryDocument(File primaryDoc) {
+    this.primaryDoc = primaryDoc;
+  }
+
+  public void setData(String data) {
+    this.data = data;
+  }
+
+  public void setFilename(String filename) {
+    this.filename = filename;
+  }
+
+  public void setTemplate(boolean template) {
+    this.template = template;
+  }
+
+  public void run() throws ApiException {
+    String payload = data;
+    if (template && primaryDoc != null) {
+      try {
+        payload = new String(Files.readAllBytes(primaryDoc.toPath()), StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        throw new ApiException("Could not read template " + primaryDoc + "!", e);
+      }
+    }
+    final String    tmpl  = payload;
+    AtomicInteger   next  = new AtomicInteger();
+    ExecutorService pool  = Executors.newFixedThreadPool(concurrency);
+    long            start = System.currentTimeMillis();
+    for (int t = 0; t < concurrency; t++) {
+      final int  thread = t;
+      final long delay  = rampUpMillis * t / concurrency;
+      pool.execute(() -> {
+        try {
+          Thread.sleep(delay);
+          int run;
+          while ((run = next.getAndIncrement()) < runs) {
+            results.add(execute(run, thread, tmpl));
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+    pool.shutdown();
+    try {
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      pool.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new ApiException("Load test interrupted!", e);
+    } finally {
+      wallMillis = System.currentTimeMillis() - start;
+    }
+  }
+
+  private Run execute(int run, int thread, String payload) {
+    long t0 = System.currentTimeMillis();
+    try {
+      String   fn = template ? substitute(filename, run, thread) : filename;
+      Workflow wf;
+      if (template && payload != null) {
+        wf = wfd.execute(substitute(payload, run, thread).getBytes(StandardCharsets.UTF_8), fn);
+      } else if (primaryDoc != null) {
+        wf = wfd.execute(primaryDoc, fn);
+      } else {
+        wf = wfd.execute(payload == null ? null : payload.getBytes(StandardCharsets.UTF_8), fn);
+      }
+      long clientMillis = System.currentTimeMillis() - t0;
+      if (wf == null) {
+        throw new ApiException("No workflow returned!");
+      }
+      LOG.log(Level.FINE, "Run {0}: workflow {1}, exeState={2}, {3} ms", new Object[] { run, wf.getWorkFlowId(), wf.getExeState(), clientMillis });
+      return new Run(run, wf.getWorkFlowId(), getState(wf), clientMillis, getEndTime(wf) - wf.getStartTime().getTime());
+    } catch (ApiException | RuntimeException e) {
+      LOG.log(Level.WARNING, "Run {0} failed: {1}", new Object[] { run, e.getMessage() });
+      return new Run(run, -1L, "ERROR: " + e.getClass().getSimpleName(), System.currentTimeMillis() - t0, -1L);
+    }
+  }
+
+  private static String substitute(String s, int run, int thread) {
+    if (s == null || !s.contains("${")) {
+      return s;
+    }
+    return s.replace("${run}", String.valueOf(run)).replace("${thread}", String.valueOf(thread))
+        .replace("${time}", String.valueOf(System.currentTimeMillis())).replace("${uuid}", UUID.randomUUID().toString());
+  }
+
+  // first unsuccessful state in execution tree
+  private static String getState(Workflow wf) {
+    if (wf.getExeState() != ExecState.SUCCESS) {
+      return String.valueOf(wf.getExeState());
+    }
+    for (Workflow child : wf.getChildren()) {
+      String state = getState(child);
+      if (!SUCCESS.equals(state)) {
+        return state;
+      }
+    }
+    return SUCCESS;
+  }
+
+  private static long getEndTime(Workflow wf) {
+    long end = wf.getEndTime() == null ? wf.getStartTime().getTime() : wf.getEndTime().getTime();
+    for (Workflow child : wf.getChildren()) {
+      end = Math.max(end, getEndTime(child));
+    }
+    return end;
+  }
+
+  public List<Run> getResults() {
+    return new ArrayList<>(results);
+  }
+
+  public long getWallMillis() {
+    return wallMillis;
+  }
+
+  public int getFailed() {
+    return (int) getResults().stream().filter(r -> !r.isSuccess()).count();
+  }
+
+  public void printReport(PrintStream out) {
+    List<Run>            res     = getResults();
+    Map<String, Integer> byState = new TreeMap<>();
+    List<Long>           client  = new ArrayList<>();
+    List<Long>           server  = new ArrayList<>();
+    for (Run r : res) {
+      byState.merge(r.getState(), 1, Integer::sum);
+      client.add(r.getClientMillis());
+      if (r.getServerMillis() >= 0) {
+        server.add(r.getServerMillis());
+      }
+    }
+    out.format("Load test %s (version: %s): %d runs, concurrency: %d, ramp-up: %d s%n", wfd.getName(),
+        (wfd.getWfdVersion() > 0 ? wfd.getWfdVersion() : "default"), res.size(), concurrency, rampUpMillis / 1000);
+    out.format("%-16s: %.1f s%n", "Wall time", wallMillis / 1000.0);
+    out.format("%-16s: %.2f runs/s%n", "Throughput", wallMillis > 0 ? res.size() * 1000.0 / wallMillis : 0.0);
+    out.format("%-16s: %d%n", "Successful", byState.getOrDefault(SUCCESS, 0));
+    out.format("%-16s: %d%n", "Failed", res.size() - byState.getOrDefault(SUCCESS, 0));
+    for (Map.Entry<String, Integer> e : byState.entrySet()) {
+      if (!SUCCESS.equals(e.getKey())) {
+        out.format("  %-30s: %d%n", e.getKey(), e.getValue());
+      }
+    }
+    out.format("%n%-16s  %8s %8s %8s %8s %8s %8s %8s%n", "Latency (ms)", "min", "avg", "p50", "p90", "p95", "p99", "max");
+    printLatency(out, "client", client);
+    printLatency(out, "server", server);
+  }
+
+  static void printLatency(PrintStream out, String label, List<Long> values) {
+    if (values.isEmpty()) {
+      out.format("%-16s: -%n", label);
+      return;
+    }
+    Collections.sort(values);
+    long sum = 0;
+    for (long v : values) {
+      sum += v;
+    }
+    out.format("%-16s: %8d %8d %8d %8d %8d %8d %8d%n", label, values.get(0), sum / values.size(), percentile(values, 50), percentile(values, 90),
+        percentile(values, 95), percentile(values, 99), values.get(values.size() - 1));
+  }
+
+  // nearest-rank percentile of sorted values
+  static long percentile(List<Long> sorted, int pct) {
+    int rank = (int) Math.ceil(pct / 100.0 * sorted.size());
+    return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1));
+  }
+}
@@ -0,0 +1,325 @@
+package de.denkunddachte.b2biutil.workflow;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.sfgapi.ApiClient;
+import de.denkunddachte.sfgapi.ApiClient.ApiCall;
+import de.denkunddachte.sfgapi.WorkflowDefinition;
+import de.denkunddachte.sfgapi.WorkflowDefinition.VERSIONS;
+import de.denkunddachte.sfgapi.XSLTDefinition;
+
+/**
+ * Incremental mirror of WFDs and XSLTs to a local directory. The manifest file <code>.mirror-manifest</code> in the
+ * output directory records file, type, name, version, modify timestamp and SHA-256 hash of every mirrored definition.
+ * A run lists the definitions with one query, downloads only versions that are new, have a different modify timestamp
+ * or whose local file was changed or removed, and deletes local files of definitions that no longer exist on the
+ * server. Downloads run on the async executor (at most sfgapi.async.threads concurrent requests), files are written to
+ * a temporary file and moved in place.
+ * <p>
+ * Files are named <code>&lt;name&gt;.bpml</code> / <code>&lt;name&gt;.xslt</code> (default versions) or
+ * <code>&lt;name&gt;-&lt;version&gt;.bpml</code> / <code>.xslt</code> (all versions). Unlike --getall, the default
+ * version is not part of the file name, so changing the default version does not rename files.
+ */
+public class Mirror {
+  private static final Logger      LOG      = Logger.getLogger(Mirror.class.getName());
+  public static final String       MANIFEST = ".mirror-manifest";
+  private static final String      WFD      = "WFD";
+  private static final String      XSLT     = "XSLT";
+
+  private final File               outdir;
+  private final Pattern            pattern;
+  private final boolean            allVersions;
+  private final Map<String, Entry> manifest = new TreeMap<>();
+  private final AtomicInteger      written  = new AtomicInteger();
+  private int                      listed;
+  private int                      unchanged;
+  private int                      deleted;
+  private int                      failed;
+  private long                     millis;
+
+  private static final class Entry {
+    private final String file;
+    private final String type;
+    private final String name;
+    private final int    version;
+    private final String modified;
+    private final String hash;
+
+    Entry(String file, String type, String name, int version, String modified, String hash) {
+      this.file = file;
+      this.type = type;
+      this.name = name;
+      this.version = version;
+      this.modified = modified;
+      this.hash = hash;
+    }
+
+    boolean isSameVersion(Item item) {
+      return type.equals(item.type) && name.equals(item.name) && version == item.version && modified.equals(item.modified);
+    }
+
+    @Override
+    public String toString() {
+      return String.join("\t", file, type, name, String.valueOf(version), modified, hash);
+    }
+  }
+
+  private static final class Item {
+    private final String          file;
+    private final String          type;
+    private final String          name;
+    private final int             version;
+    private final String          modified;
+    private final ApiCall<String> source;
+
+    Item(String file, String type, String name, int version, Object modified, ApiCall<String> source) {
+      this.file = file;
+      this.type = type;
+      this.name = name;
+      this.version = version;
+      this.modified = modified == null ? "-" : modified.toString();
+      this.source = source;
+    }
+  }
+
+  /**
+   * @param outdir
+   *          mirror directory
+   * @param pattern
+   *          regex for WFD/XSLT names (null: all)
+   * @param allVersions
+   *          mirror all versions instead of the default versions
+   */
+  public Mirror(File outdir, Pattern pattern, boolean allVersions) {
+    this.outdir = outdir;
+    this.pattern = pattern;
+    this.allVersions = allVersions;
+  }
+
+  public void mirrorWfds() throws ApiException {
+    List<Item> items = new ArrayList<>();
+    for (WorkflowDefinition wfd : WorkflowDefinition.findAll(getFilter(""), allVersions ? VERSIONS.ALL : VERSIONS.DEFAULT, false)) {
+      if (matches(wfd.getName())) {
+        final String name    = wfd.getName();
+        final int    version = wfd.getWfdVersion();
+        items.add(new Item(getFileName(name, version, ".bpml"), WFD, name, version, wfd.getTimestamp(), () -> {
+          WorkflowDefinition w = WorkflowDefinition.find(name, version);
+          return w == null ? null : w.getBusinessProcess();
+        }));
+      }
+    }
+    mirror(WFD, items);
+  }
+
+  public void mirrorXslts() throws ApiException {
+    List<Item> items = new ArrayList<>();
+    for (XSLTDefinition xslt : XSLTDefinition.findAll(getFilter("%"), allVersions ? VERSIONS.ALL : VERSIONS.DEFAULT, false)) {
+      if (matches(xslt.getName())) {
+        final String name    = xslt.getName();
+        final int    version = xslt.getVersion();
+        items.add(new Item(getFileName(name, version, ".xslt"), XSLT, name, version, xslt.getModifyTime(), () -> {
+          XSLTDefinition x = XSLTDefinition.find(name, version);
+          return x == null ? null : x.getXsltData();
+        }));
+      }
+    }
+    mirror(XSLT, items);
+  }
+
+  private void mirror(String type, List<Item> items) throws ApiException {
+    long start = System.currentTimeMillis();
+    readManifest();
+    listed += items.size();
+    Set<String>                    files   = new HashSet<>();
+    List<Item>                     pending = new ArrayList<>();
+    List<CompletableFuture<Entry>> futures = new ArrayList<>();
+    for (Item item : items) {
+      files.add(item.file);
+      Entry e = manifest.get(item.file);
+      if (e != null && e.isSameVersion(item) && e.hash.equals(hash(new File(outdir, e.file)))) {
+        unchanged++;
+        continue;
+      }
+      LOG.log(Level.FINE, "Download {0} {1}/{2} to {3}.", new Object[] { type, item.name, item.version, item.file });
+      pending.add(item);
+      futures.add(ApiClient.async(() -> download(item)));
+    }
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      // failures are collected per item below
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      Item item = pending.get(i);
+      try {
+        manifest.put(item.file, futures.get(i).join());
+      } catch (CompletionException e) {
+        failed++;
+        LOG.log(Level.WARNING, "Could not mirror {0} {1}/{2}: {3}", new Object[] { type, item.name, item.version, e.getCause() });
+        System.err.format("Could not mirror %s %s/%d: %s%n", type, item.name, item.version, e.getCause().getMessage());
+      }
+    }
+    // definitions of this type and pattern that were not listed were removed on the server
+    for (Iterator<Entry> it = manifest.values().iterator(); it.hasNext();) {
+      Entry e = it.next();
+      if (e.type.equals(type) && matches(e.name) && !files.contains(e.file)) {
+        try {
+          Files.deleteIfExists(new File(outdir, e.file).toPath());
+          System.out.format("Deleted %s (%s %s/%d)%n", e.file, type, e.name, e.version);
+          it.remove();
+          deleted++;
+        } catch (IOException ex) {
+          failed++;
+          System.err.format("Could not delete %s: %s%n", e.file, ex.getMessage());
+        }
+      }
+    }
+    writeManifest();
+    millis += System.currentTimeMillis() - start;
+  }
+
+  private Entry download(Item item) throws ApiException {
+    String src = item.source.call();
+    if (src == null) {
+      throw new ApiException(item.type + " " + item.name + "/" + item.version + " not found!");
+    }
+    byte[] data = src.getBytes(StandardCharsets.UTF_8);
+    String hash = hex(digest().digest(data));
+    File   f    = new File(outdir, item.file);
+    // modify timestamp changed, but content did not
+    if (!hash.equals(hash(f))) {
+      try {
+        write(f, data);
+      } catch (IOException e) {
+        throw new ApiException("Could not write " + f + "!", e);
+      }
+      written.incrementAndGet();
+      System.out.format("Wrote %s/%d to %s%n", item.name, item.version, f.getAbsolutePath());
+    }
+    return new Entry(item.file, item.type, item.name, item.version, item.modified, hash);
+  }
+
+  private String getFilter(String suffix) {
+    if (pattern != null && pattern.pattern().matches("^[A-Za-z0-9_-].*")) {
+      return pattern.pattern().replaceFirst("^([A-Za-z0-9_-]+).*", "$1" + suffix);
+    }
+    return null;
+  }
+
+  private boolean matches(String name) {
+    return pattern == null || pattern.matcher(name).matches();
+  }
+
+  private String getFileName(String name, int version, String ext) {
+    return allVersions ? String.format("%s-%03d%s", name, version, ext) : name + ext;
+  }
+
+  private void readManifest() throws ApiException {
+    manifest.clear();
+    File f = new File(outdir, MANIFEST);
+    if (!f.isFile()) {
+      return;
+    }
+    try (BufferedReader rd = Files.newBufferedReader(f.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = rd.readLine()) != null) {
+        String[] cols = line.split("\t");
+        if (line.startsWith("#") || cols.length != 6) {
+          continue;
+        }
+        manifest.put(cols[0], new Entry(cols[0], cols[1], cols[2], Integer.parseInt(cols[3]), cols[4], cols[5]));
+      }
+    } catch (IOException | NumberFormatException e) {
+      throw new ApiException("Could not read manifest " + f + "!", e);
+    }
+  }
+
+  private void writeManifest() throws ApiException {
+    StringBuilder sb = new StringBuilder("# file\ttype\tname\tversion\tmodified\tsha256\n");
+    for (Entry e : manifest.values()) {
+      sb.append(e).append('\n');
+    }
+    File f = new File(outdir, MANIFEST);
+    try {
+      write(f, sb.toString().getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new ApiException("Could not write manifest " + f + "!", e);
+    }
+  }
+
+  // write to temp file in same directory and move in place
+  private static void write(File f, byte[] data) throws IOException {
+    File tmp = File.createTempFile(".mirror_", ".tmp", f.getAbsoluteFile().getParentFile());
+    try {
+      Files.write(tmp.toPath(), data);
+      try {
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp.toPath());
+    }
+  }
+
+  // null if file does not exist or is not readable
+  private static String hash(File f) {
+    if (!f.isFile()) {
+      return null;
+    }
+    try {
+      return hex(digest().digest(Files.readAllBytes(f.toPath())));
+    } catch (IOException e) {
+      LOG.log(Level.FINER, "Could not read {0}: {1}", new Object[] { f, e.getMessage() });
+      return null;
+    }
+  }
+
+  private static MessageDigest digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] b) {
+    StringBuilder sb = new StringBuilder(b.length * 2);
+    for (byte x : b) {
+      sb.append(String.format("%02x", x));
+    }
+    return sb.toString();
+  }
+
+  public int getFailed() {
+    return failed;
+  }
+
+  public void printReport(PrintStream out) {
+    out.format("Mirror %s: %d listed, %d unchanged, %d written, %d deleted, %d failed (%.1f s).%n", outdir.getAbsolutePath(), listed, unchanged,
+        written.get(), deleted, failed, millis / 1000.0);
+  }
+}
@@ -24,6 +24,7 @@ public final class Props {
   public static final String PROP_STARTTIME                        = "startTime";
   public static final String PROP_SHOW                             = "show";
   public static final String PROP_FAILED                           = "failed";
+  public static final String PROP_WATCH                            = "watch";
   public static final String PROP_DATA                             = "data";
   public static final String PROP_FILENAME                         = "filename";
   public static final String PROP_SHOW_DETAILS                     = "showDetails";
@@ -51,5 +52,11 @@ public final class Props {
   public static final String PROP_MANIFEST                         = "manifest";
   public static final String PROP_PACKAGELIST                      = "pkglist";
   public static final String PROP_CREATE                           = "create";
+  public static final String PROP_LOADTEST                         = "loadtest";
+  public static final String PROP_LT_RUNS                          = "runs";
+  public static final String PROP_LT_CONCURRENCY                   = "concurrency";
+  public static final String PROP_LT_RAMPUP                        = "rampup";
+  public static final String PROP_LT_TEMPLATE                      = "template";
+  public static final String PROP_MIRROR                           = "mirror";
 
 }
@@ -1,23 +1,31 @@
 package de.denkunddachte.b2biutil.workflow;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.xmlunit.diff.Difference;
 
@@ -27,6 +35,7 @@ import de.denkunddachte.b2biutil.workflow.ResourceSync.Result;
 import de.denkunddachte.b2biutil.workflow.ResourceSync.SyncResult;
 import de.denkunddachte.enums.ExecState;
 import de.denkunddachte.exception.ApiException;
+import de.denkunddachte.exception.UncheckedApiException;
 import de.denkunddachte.sfgapi.ApiClient;
 import de.denkunddachte.sfgapi.Resources;
 import de.denkunddachte.sfgapi.Resources.TYPE;
@@ -42,11 +51,15 @@ import de.denkunddachte.utils.Config;
 import de.denkunddachte.utils.StringUtils;
 
 public class WorkflowUtil extends AbstractConsoleApp {
-  private static final Logger LOG    = Logger.getLogger(WorkflowUtil.class.getName());
+  private static final Logger LOG              = Logger.getLogger(WorkflowUtil.class.getName());
+  // polls without new steps until a workflow is no longer watched
+  private static final int    WATCH_IDLE_POLLS = 6;
+  // ProcessData is prefetched per chunk of steps for workflows with lazy loaded steps
+  private static final int    SHOW_STEP_CHUNK  = 500;
 
   private List<String>        getProcessDataForSteps;
-  private File                outdir = null;
-  private Map<String, BPML>   bpmlSrc;
+  private File                outdir           = null;
+  private BPMLCache           bpmlSrc;
 
   static {
     OPTIONS.setProgramName(WorkflowUtil.class.getName());
@@ -64,7 +77,9 @@ public class WorkflowUtil extends AbstractConsoleApp {
     OPTIONS.add(Props.PROP_ALL_VERSIONS + "|a", "Get all versions of WFD/XSLT");
     OPTIONS.add(Common.PROP_VERSION + "|v=i", "Get/execute WFD/XSLT version (use 0 to get default version");
     OPTIONS.add(Props.PROP_GETALL + ":s", "Get all WFDs/XSLTs matching pattern (regex)");
-    OPTIONS.add(Props.PROP_OUTDIR + "=s", "Output directory for --getall and --get");
+    OPTIONS.add(Props.PROP_MIRROR + ":s",
+        "Incrementally mirror WFDs/XSLTs matching pattern (regex) to --outdir: download new/changed versions, delete removed ones (see --allVersions)");
+    OPTIONS.add(Props.PROP_OUTDIR + "=s", "Output directory for --getall, --mirror and --get");
     OPTIONS.add(Props.PROP_PARSE_WFD, "Show parsed WFD (for step trace)");
 
     // sync/compare
@@ -105,6 +120,8 @@ public class WorkflowUtil extends AbstractConsoleApp {
     OPTIONS.add(Props.PROP_STARTTIME + "=s", "List workflows with start time during last <n>[hm] or in range <yyyyMMddHHmmss>-<yyyyMMddHHmmss>",
         Props.PROP_STARTTIME, "1h");
     OPTIONS.add(Props.PROP_FAILED, "Show only unsuccessful workflows");
+    OPTIONS.add(Props.PROP_WATCH + "|w:i",
+        "Watch workflow executions (with --list-bps): poll every <n> seconds (default: 10) and show new/failed workflows and new steps");
     OPTIONS.add(Common.PROP_NOUTF8, "Avoid UTF-8 output");
     OPTIONS.add(Props.PROP_SHOW + "|S=n", "Show workflow with ID <n>");
     OPTIONS.add(Props.PROP_TRACE_WFD + "|X", "Trace WFD execution");
@@ -118,6 +135,15 @@ public class WorkflowUtil extends AbstractConsoleApp {
     OPTIONS.add(Props.PROP_PROCESSDATA + "=s",
         "Get processdata for steps (comma separated list, if empty, get PD for all steps). With --outdir, PD ist written to file(s).");
 
+    // load test
+    OPTIONS.section("Load test BP (uses --version, --primaryDocument, --data, --filename)");
+    OPTIONS.add(Props.PROP_LOADTEST + "=s", "Launch workflow name --runs times and report throughput, latency and failures by exeState");
+    OPTIONS.add(Props.PROP_LT_RUNS + "=i", "Number of executions", Props.PROP_LT_RUNS, "10");
+    OPTIONS.add(Props.PROP_LT_CONCURRENCY + "=i", "Number of concurrent executions", Props.PROP_LT_CONCURRENCY, "4");
+    OPTIONS.add(Props.PROP_LT_RAMPUP + "=i", "Ramp-up time in seconds (start of concurrent clients is spread over this time)", Props.PROP_LT_RAMPUP, "0");
+    OPTIONS.add(Props.PROP_LT_TEMPLATE,
+        "Primary document and filename are templates: replace ${run}, ${thread}, ${time} and ${uuid} for each execution");
+
     OPTIONS.addProgramHelp("Some help... ");
   }
 
@@ -138,7 +164,7 @@ public class WorkflowUtil extends AbstractConsoleApp {
           && (!cfg.hasProperty(Props.PROP_FILE) || !(new File(cfg.getString(Props.PROP_FILE))).canRead())) {
         throw new CommandLineException("Option --" + Props.PROP_FILE + " not set or not readable!");
       }
-    } else if (cfg.hasProperty(Props.PROP_GETALL)) {
+    } else if (cfg.hasProperty(Props.PROP_GETALL) || cfg.hasProperty(Props.PROP_MIRROR)) {
       if (!cfg.hasProperty(Props.PROP_OUTDIR)) {
         throw new CommandLineException("Option --" + Props.PROP_OUTDIR + " not set!");
       }
@@ -149,12 +175,27 @@ public class WorkflowUtil extends AbstractConsoleApp {
       }
     } else if (cfg.hasProperty(Props.PROP_DELETE_ALL)) {
     } else if (cfg.hasProperty(Props.PROP_LIST_BP)) {
+      if (cmdline.isSet(Props.PROP_WATCH)) {
+        if (StringUtils.isNullOrWhiteSpace(cfg.getString(Props.PROP_WATCH))) {
+          cfg.setProperty(Props.PROP_WATCH, "10");
+        }
+        if (cfg.getInt(Props.PROP_WATCH) < 1) {
+          throw new CommandLineException("Option --" + Props.PROP_WATCH + " requires poll interval > 0!");
+        }
+      }
     } else if (cfg.hasProperty(Props.PROP_LIST_WFD)) {
     } else if (cfg.hasProperty(Props.PROP_SHOW)) {
       if (cfg.getLong(Props.PROP_SHOW) == 0) {
         throw new CommandLineException("Specify workflow ID with --show option!");
       }
     } else if (cfg.hasProperty(Props.PROP_EXECUTE)) {
+    } else if (cfg.hasProperty(Props.PROP_LOADTEST)) {
+      if (cfg.getInt(Props.PROP_LT_RUNS) < 1 || cfg.getInt(Props.PROP_LT_CONCURRENCY) < 1) {
+        throw new CommandLineException("Options --" + Props.PROP_LT_RUNS + " and --" + Props.PROP_LT_CONCURRENCY + " must be > 0!");
+      }
+      if (cfg.hasProperty(Props.PROP_PRIMARY_DOCUMENT) && !(new File(cfg.getString(Props.PROP_PRIMARY_DOCUMENT))).canRead()) {
+        throw new CommandLineException("Primary document " + cfg.getString(Props.PROP_PRIMARY_DOCUMENT) + " not readable!");
+      }
     } else if (cfg.hasProperty(Props.PROP_COMPARE)) {
       if (!(new File(cfg.getString(Props.PROP_COMPARE))).canRead()
           && (!cfg.hasProperty(Props.PROP_FILE) || !(new File(cfg.getString(Props.PROP_FILE))).canRead())) {
@@ -178,11 +219,15 @@ public class WorkflowUtil extends AbstractConsoleApp {
       }
     } else {
       throw new CommandLineException(
-          "No operation specified! Use --list-wfd, --get, --getall, --put, --delete, --deleteAll, --execute, --list-bp, --show, --compare, --export, --import, --sync to specify operation.");
+          "No operation specified! Use --list-wfd, --get, --getall, --put, --delete, --deleteAll, --execute, --loadtest, --list-bp, --show, --compare, --export, --import, --sync to specify operation.");
     }
 
     if (cfg.getBoolean(Props.PROP_TRACE_WFD) || cfg.getBoolean(Props.PROP_PARSE_WFD)) {
-      bpmlSrc = new HashMap<>();
+      try {
+        bpmlSrc = BPMLCache.getInstance();
+      } catch (ApiException e) {
+        throw new CommandLineException("Could not initialize BPML cache: " + e.getMessage(), e);
+      }
       cfg.setProperty(Props.PROP_SHOW_DETAILS, true);
     }
     getProcessDataForSteps = new ArrayList<>();
@@ -256,6 +301,9 @@ public class WorkflowUtil extends AbstractConsoleApp {
         }
         String msg = cfg.hasProperty(Props.PROP_COMMITMSG) ? cfg.getString(Props.PROP_COMMITMSG) : "WorkflowUtil - " + System.getProperty("user.name");
         wfu.put(name, msg, infile, cfg.getBoolean(Props.PROP_SETASDEFAULT), cfg.getProperty(Props.PROP_SET_VERSIONINFO));
+      } else if (cfg.hasProperty(Props.PROP_LIST_BP) && cfg.hasProperty(Props.PROP_WATCH)) {
+        wfu.watchBp(cfg.getString(Props.PROP_LIST_BP), cfg.getProperty(Props.PROP_STARTTIME), cfg.getBoolean(Props.PROP_FAILED), cfg.getBoolean(Props.PROP_ALL),
+            cfg.getInt(Props.PROP_WATCH));
       } else if (cfg.hasProperty(Props.PROP_LIST_BP)) {
         wfu.listBp(cfg.getString(Props.PROP_LIST_BP), cfg.getProperty(Props.PROP_STARTTIME), cfg.getBoolean(Props.PROP_FAILED), cfg.getBoolean(Props.PROP_ALL));
       } else if (cfg.hasProperty(Props.PROP_SHOW)) {
@@ -286,6 +334,15 @@ public class WorkflowUtil extends AbstractConsoleApp {
       } else if (cfg.hasProperty(Props.PROP_IMPORT)) {
         File importFile = new File(cfg.getString(Props.PROP_IMPORT));
         wfu.importResource(importFile);
+      } else if (cfg.hasProperty(Props.PROP_MIRROR)) {
+        Pattern p = null;
+        if (!StringUtils.isNullOrEmpty(cfg.getString(Props.PROP_MIRROR))) {
+          p = Pattern.compile(cfg.getString(Props.PROP_MIRROR));
+        }
+        wfu.mirror(p, new File(cfg.getString(Props.PROP_OUTDIR)), cfg.getBoolean(Props.PROP_XSLT), cfg.getBoolean(Props.PROP_ALL_VERSIONS));
+      } else if (cfg.hasProperty(Props.PROP_LOADTEST)) {
+        wfu.loadTest(cfg.getString(Props.PROP_LOADTEST), cfg.getInt(Common.PROP_VERSION, 0), cfg.getInt(Props.PROP_LT_RUNS),
+            cfg.getInt(Props.PROP_LT_CONCURRENCY), cfg.getInt(Props.PROP_LT_RAMPUP));
       }
 
       // execute can be combined with any other command
@@ -396,11 +453,7 @@ public class WorkflowUtil extends AbstractConsoleApp {
       return;
     }
     LOG.log(Level.FINEST, "Enter parseWfd(): wfd={0}", wfd.getId());
-    BPML src = bpmlSrc.get(wfd.getId());
-    if (src == null) {
-      System.err.println("No parsed source for " + wfd.getId() + "!");
-      return;
-    }
+    BPML src = bpmlSrc.get(wfd);
     System.out.format("WFD: %s%n", wfd.getId());
     for (int i = 0; i < src.getActivities().size(); i++) {
       if (i == 0) {
@@ -414,8 +467,8 @@ public class WorkflowUtil extends AbstractConsoleApp {
   private void getWfd(String wfdName, int wfdVersion, File output, boolean getAllVersions) throws ApiException {
     LOG.log(Level.FINEST, "Enter get(): wfdName={0}, wfdVersion={1}", new Object[] { wfdName, wfdVersion });
     WorkflowDefinition wfd = WorkflowDefinition.find(wfdName, wfdVersion);
-    if (bpmlSrc != null) {
-      bpmlSrc.put(wfd.getId(), BPML.parse(wfd.getBusinessProcess()));
+    if (bpmlSrc != null && wfd != null) {
+      bpmlSrc.get(wfd);
       parseWfd(wfd);
     }
 
@@ -544,6 +597,20 @@ public class WorkflowUtil extends AbstractConsoleApp {
     }
   }
 
+  private void mirror(Pattern pattern, File outdir, boolean xslt, boolean getAllVersions) throws ApiException {
+    LOG.log(Level.FINEST, "Enter mirror(): pattern={0}, outdir={1}, xslt={2}, getAllVersions={3}", new Object[] { pattern, outdir, xslt, getAllVersions });
+    Mirror mirror = new Mirror(outdir, pattern, getAllVersions);
+    if (xslt) {
+      mirror.mirrorXslts();
+    } else {
+      mirror.mirrorWfds();
+    }
+    mirror.printReport(System.out);
+    if (mirror.getFailed() > 0) {
+      setRc(1);
+    }
+  }
+
   private void delete(String wfdName, int wfdVersion, boolean deleteAllVersions, boolean includeDefaultVersion) throws ApiException {
     LOG.log(Level.FINEST, "Enter delete(): wfdName={0}, wfdVersion={1}, deleteAllVersions={2}, includeDefaultVersion={3}",
         new Object[] { wfdName, wfdVersion, deleteAllVersions, includeDefaultVersion });
@@ -698,6 +765,92 @@ public class WorkflowUtil extends AbstractConsoleApp {
     }
   }
 
+  /*
+   * Poll for new workflows and new steps of active workflows until interrupted. High-watermarks are the last workflow id
+   * seen and the last step id of each active workflow, so each poll only reads new rows.
+   */
+  private void watchBp(String bpName, String startTime, boolean showOnlyFailed, boolean showSystemWorkflows, int interval) throws ApiException {
+    LOG.log(Level.FINEST, "Enter watchBp(): bpName={0}, startTime={1}, showSystemWorkflows={2}, interval={3}",
+        new Object[] { bpName, startTime, showSystemWorkflows, interval });
+    long                lastWorkflowId = 0;
+    Map<Long, Workflow> active         = new LinkedHashMap<>();
+    Map<Long, Integer>  idlePolls      = new HashMap<>();
+    System.out.format("Watching workflows (poll interval: %ds, press Ctrl-C to stop)...%n%n", interval);
+    System.out.format("%-8s %-2s %-12s %-6s %-5s %-50s %s%n", "Time", OK, "Workflow ID", "Event", "Step", "WFD name/Service name", "State");
+    System.out.println(separator('-', 100));
+    while (true) {
+      boolean        initial = lastWorkflowId == 0;
+      List<Workflow> wflist  = initial ? Workflow.findAll(bpName, startTime, false, showSystemWorkflows)
+          : Workflow.findNewer(lastWorkflowId, bpName, startTime, showSystemWorkflows);
+      // oldest first
+      for (int i = wflist.size() - 1; i >= 0; i--) {
+        Workflow wf = wflist.get(i);
+        lastWorkflowId = Math.max(lastWorkflowId, wf.getWorkFlowId());
+        if (!showOnlyFailed || isFailed(wf)) {
+          printWatchEvent(wf, "NEW");
+        }
+        // with the initial listing, only waiting workflows are known to be active
+        if (!initial || isWaiting(wf)) {
+          active.put(wf.getWorkFlowId(), wf);
+          idlePolls.put(wf.getWorkFlowId(), 0);
+        }
+      }
+      if (!initial && !active.isEmpty()) {
+        for (Workflow wf : Workflow.findAll(new ArrayList<>(active.keySet()))) {
+          Workflow prev = active.put(wf.getWorkFlowId(), wf);
+          if (wf.getLastStepId() > prev.getLastStepId()) {
+            if (!showOnlyFailed) {
+              printWatchSteps(wf, prev.getLastStepId());
+            }
+            idlePolls.put(wf.getWorkFlowId(), 0);
+          } else {
+            idlePolls.merge(wf.getWorkFlowId(), 1, Integer::sum);
+          }
+          if (isFailed(wf) && !isFailed(prev)) {
+            printWatchEvent(wf, "FAILED");
+          }
+        }
+        // stop watching workflows without progress
+        active.values().removeIf(wf -> !isWaiting(wf) && idlePolls.get(wf.getWorkFlowId()) >= WATCH_IDLE_POLLS);
+        idlePolls.keySet().retainAll(active.keySet());
+      }
+      if (lastWorkflowId == 0) {
+        // nothing found yet, use -1 as high-watermark to switch to polling
+        lastWorkflowId = -1;
+      }
+      LOG.log(Level.FINER, "Watch: lastWorkflowId={0}, active workflows={1}", new Object[] { lastWorkflowId, active.size() });
+      try {
+        Thread.sleep(interval * 1000L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void printWatchEvent(Workflow wf, String event) {
+    System.out.format("%-8s %-2s %-12d %-6s %-5d %-50.50s %s%n", FMT_HHMMSS.format(new Date()), (isFailed(wf) ? NOK : OK), wf.getWorkFlowId(), event,
+        wf.getLastStepId(), wf.getWfdName() + "/" + wf.getWfdVersion(), wf.getExeState());
+  }
+
+  private void printWatchSteps(Workflow wf, int afterStepId) throws ApiException {
+    // steps not yet counted by the workflow query are shown with the next poll
+    try (Stream<WorkFlowMonitor> steps = WorkFlowMonitor.stream(wf.getWorkFlowId(), afterStepId + 1, wf.getLastStepId(), false)) {
+      steps.forEach(s -> System.out.format("%-8s %-2s %-12d %-6s %-5d %-50.50s %s%n", FMT_HHMMSS.format(new Date()),
+          (s.getExeState() == ExecState.SUCCESS ? OK : NOK), s.getWorkFlowId(), "STEP", s.getStepId(), s.getStepName(), s.getExeState()));
+    } catch (UncheckedApiException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static boolean isWaiting(Workflow wf) {
+    return wf.getExeState() == ExecState.WAITING || wf.getExeState() == ExecState.WAITING_FOR_IO;
+  }
+
+  private static boolean isFailed(Workflow wf) {
+    return wf.getExeState() != ExecState.SUCCESS && !isWaiting(wf);
+  }
+
   private void show(long workflowId, boolean detail) throws ApiException {
     LOG.log(Level.FINEST, "Enter show(): workflowId={0}, detail={1}", new Object[] { workflowId, detail });
     Workflow wf = Workflow.find(workflowId, detail);
@@ -743,18 +896,18 @@ public class WorkflowUtil extends AbstractConsoleApp {
       width = 160;
     }
     System.out.println(separator('-', width));
+    int chunk = wf.isLazySteps() ? SHOW_STEP_CHUNK : Math.max(1, wf.getNumberOfSteps());
     for (int stepId = 0; stepId < wf.getNumberOfSteps(); stepId++) {
+      if (!getProcessDataForSteps.isEmpty() && stepId % chunk == 0) {
+        prefetchProcessData(wf, stepId, stepId + chunk - 1);
+      }
       WorkFlowMonitor s = wf.getWfStep(stepId);
       if (bpmlSrc == null) {
         System.out.format("%-2s %-4s %-3s %-50.50s %-8s %-8s %-12.12s %-3s %s%n", (s.getExeState() == ExecState.SUCCESS ? OK : NOK), s.getStepId(),
             s.getActivityInfoId(), s.getStepName(), FMT_HHMMSS.format(s.getStartTime()), FMT_HHMMSS.format(s.getEndTime()), s.getExeState(), s.getBasicStatus(),
             s.getAdvStatus());
       } else {
-        BPML bpml = bpmlSrc.get(s.getWfdKey());
-        if (bpml == null) {
-          WorkflowDefinition wfd = WorkflowDefinition.find(s.getWfdName(), s.getWfdVersion());
-          bpml = BPML.parse(wfd.getBusinessProcess());
-        }
+        BPML bpml = bpmlSrc.get(s.getWfdName(), s.getWfdVersion());
         System.out.format("%-2s %-4s %-8s %-8s %-12.12s %-3s %-50.50s %-30.30s %-3s %s%n", (s.getExeState() == ExecState.SUCCESS ? OK : NOK), s.getStepId(),
             FMT_HHMMSS.format(s.getStartTime()), FMT_HHMMSS.format(s.getEndTime()), s.getExeState(), s.getActivityInfoId(),
             bpml.getActivityDescription(s.getActivityInfoId()), bpml.getActivityLocation(s.getActivityInfoId(), wf.getWfdName()), s.getBasicStatus(),
@@ -772,10 +925,27 @@ public class WorkflowUtil extends AbstractConsoleApp {
         wf.getWfdVersion(), wf.getStepsCounted(), errorCount);
   }
 
+  // load ProcessData of steps to show in batches instead of one request per step
+  private void prefetchProcessData(Workflow wf, int fromStepId, int toStepId) throws ApiException {
+    Set<WorkFlowMonitor> pdSteps = new LinkedHashSet<>();
+    for (WorkFlowMonitor s : wf.getWfSteps(fromStepId, toStepId)) {
+      pdSteps.addAll(getProcessDataSteps(s, wf));
+    }
+    WorkFlowMonitor.prefetchProcessData(pdSteps);
+  }
+
   private void checkProcessDataFor(WorkFlowMonitor s, Workflow wf) throws ApiException {
-    String spec = null;
+    for (WorkFlowMonitor pdStep : getProcessDataSteps(s, wf)) {
+      getProcessDataFor(pdStep);
+    }
+  }
+
+  // steps to show ProcessData for when step s is shown (--pd spec)
+  private List<WorkFlowMonitor> getProcessDataSteps(WorkFlowMonitor s, Workflow wf) throws ApiException {
+    List<WorkFlowMonitor> result = new ArrayList<>();
+    String                spec   = null;
     if (getProcessDataForSteps.contains("*") || getProcessDataForSteps.contains(String.valueOf(s.getStepId()))) {
-      getProcessDataFor(s);
+      result.add(s);
     } else if (s.getExeState() != ExecState.SUCCESS) {
       spec = getProcessDataForSteps.stream().filter(e -> e.startsWith("!")).map(e -> "!".equals(e) ? "-1" : e.substring(1)).findFirst().orElse(null);
     } else if (s.getStepId() == wf.getLastStepId()) {
@@ -784,25 +954,29 @@ public class WorkflowUtil extends AbstractConsoleApp {
     if (spec != null) {
       int o = Integer.parseInt(spec);
       for (int i = (o > 0 ? s.getStepId() : s.getStepId() + o + 1); i <= (o > 0 ? Math.max(s.getStepId() + o, wf.getLastStepId()) : s.getStepId()); i++) {
-        getProcessDataFor(wf.getWfStep(i));
+        result.add(wf.getWfStep(i));
       }
     }
+    return result;
   }
 
   private void getProcessDataFor(WorkFlowMonitor s) throws ApiException {
     if (s == null)
       return;
     if (outdir == null) {
-      if (s.getProcessData() != null) {
-        System.out.format("----- ProcessData step %d: -----%n%s%n----- END ProcessData step %d -----%n", s.getStepId(), s.getProcessData(), s.getStepId());
+      if (s.hasProcessData()) {
+        // formatted directly to the console
+        System.out.format("----- ProcessData step %d: -----%n", s.getStepId());
+        s.writeProcessData(new BufferedWriter(new OutputStreamWriter(System.out)));
+        System.out.format("----- END ProcessData step %d -----%n", s.getStepId());
       }
       if (s.getStatusRpt() != null) {
         System.out.format("----- Status_Report step %d: -----%n%s%n----- END Status_Report step %d -----%n", s.getStepId(), s.getStatusRpt(), s.getStepId());
       }
     } else {
       File outfile = new File(outdir, String.format("ProcessData-%d.xml", s.getStepId()));
-      try (OutputStream os = new FileOutputStream(outfile)) {
-        os.write(s.getProcessData().getBytes());
+      try (Writer wr = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outfile), StandardCharsets.UTF_8))) {
+        s.writeProcessData(wr);
       } catch (IOException e) {
         throw new ApiException(e);
       }
@@ -825,6 +999,32 @@ public class WorkflowUtil extends AbstractConsoleApp {
     _execute(wfdName, wfdVersion, null, data, filename, showDetails);
   }
 
+  private void loadTest(String wfdName, int wfdVersion, int runs, int concurrency, int rampUp) throws ApiException {
+    LOG.log(Level.FINEST, "Enter loadTest(): wfdName={0}, wfdVersion={1}, runs={2}, concurrency={3}, rampUp={4}",
+        new Object[] { wfdName, wfdVersion, runs, concurrency, rampUp });
+    WorkflowDefinition wfd = WorkflowDefinition.find(wfdName, wfdVersion);
+    if (wfd == null) {
+      System.out.format("WFD %s (version: %s) not found!%n", wfdName, (wfdVersion > 0 ? wfdVersion : "default"));
+      setRc(1);
+      return;
+    }
+    LoadTest lt = new LoadTest(wfd, runs, concurrency, rampUp);
+    if (cfg.hasProperty(Props.PROP_PRIMARY_DOCUMENT)) {
+      lt.setPrimaryDocument(new File(cfg.getString(Props.PROP_PRIMARY_DOCUMENT)));
+    } else if (cfg.hasProperty(Props.PROP_DATA)) {
+      lt.setData(cfg.getString(Props.PROP_DATA));
+    }
+    lt.setFilename(cfg.getProperty(Props.PROP_FILENAME));
+    lt.setTemplate(cfg.getBoolean(Props.PROP_LT_TEMPLATE));
+    System.out.format("Execute %s (version: %s) %d times, concurrency: %d...%n", wfdName, (wfdVersion > 0 ? wfdVersion : "default"), runs, concurrency);
+    lt.run();
+    System.out.println();
+    lt.printReport(System.out);
+    if (lt.getFailed() > 0) {
+      setRc(1);
+    }
+  }
+
   private void _execute(String wfdName, int wfdVersion, File primDocFile, byte[] data, String filename, boolean showDetails) throws ApiException {
     LOG.log(Level.FINEST, "Enter execute(): wfdName={0}, wfdVersion={1}, primDocFile={2}, data.length={3}, filename{4}, showDetails={5}",
         new Object[] { wfdName, wfdVersion, primDocFile, (data == null ? "-" : data.length), filename, showDetails });
@@ -839,7 +1039,7 @@ public class WorkflowUtil extends AbstractConsoleApp {
     Workflow wf = primDocFile == null ? wfd.execute(data, filename) : wfd.execute(primDocFile, filename);
     System.out.format(" workflow ID %s:%n%n", wf.getWorkFlowId());
     if (bpmlSrc != null) {
-      bpmlSrc.put(wfd.getId(), BPML.parse(wfd.getBusinessProcess()));
+      bpmlSrc.get(wfd);
       parseWfd(wfd);
     }
 
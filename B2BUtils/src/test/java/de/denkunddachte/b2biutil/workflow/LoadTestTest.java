@@ -0,0 +1,63 @@
+package de.denkunddachte.b2biutil.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class LoadTestTest {
+
+  private static List<Long> range(int from, int to) {
+    List<Long> result = new ArrayList<>();
+    for (long i = from; i <= to; i++) {
+      result.add(i);
+    }
+    return result;
+  }
+
+  @Test
+  void testPercentileNearestRank() {
+    List<Long> values = range(1, 100);
+    assertEquals(50, LoadTest.percentile(values, 50));
+    assertEquals(90, LoadTest.percentile(values, 90));
+    assertEquals(95, LoadTest.percentile(values, 95));
+    assertEquals(99, LoadTest.percentile(values, 99));
+    assertEquals(100, LoadTest.percentile(values, 100));
+    assertEquals(1, LoadTest.percentile(values, 0));
+  }
+
+  @Test
+  void testPercentileSmallSamples() {
+    assertEquals(7, LoadTest.percentile(Collections.singletonList(7L), 50));
+    assertEquals(7, LoadTest.percentile(Collections.singletonList(7L), 99));
+    List<Long> values = Arrays.asList(15L, 20L, 35L, 40L, 50L);
+    // rank = ceil(p/100 * n)
+    assertEquals(20, LoadTest.percentile(values, 30));
+    assertEquals(20, LoadTest.percentile(values, 40));
+    assertEquals(35, LoadTest.percentile(values, 50));
+    assertEquals(50, LoadTest.percentile(values, 90));
+    assertEquals(50, LoadTest.percentile(values, 99));
+  }
+
+  @Test
+  void testPrintLatency() {
+    ByteArrayOutputStream bos    = new ByteArrayOutputStream();
+    List<Long>            values = range(1, 10);
+    Collections.reverse(values);
+    try (PrintStream out = new PrintStream(bos, true)) {
+      LoadTest.printLatency(out, "client", values);
+      LoadTest.printLatency(out, "server", new ArrayList<>());
+    }
+    String[] lines = new String(bos.toByteArray(), StandardCharsets.UTF_8).split("\\R");
+    // min, avg, p50, p90, p95, p99, max
+    assertEquals(String.format("%-16s: %8d %8d %8d %8d %8d %8d %8d", "client", 1, 5, 5, 9, 10, 10, 10), lines[0]);
+    assertEquals(String.format("%-16s: -", "server"), lines[1]);
+  }
+}